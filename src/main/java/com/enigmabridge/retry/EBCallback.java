@@ -18,4 +18,20 @@ public interface EBCallback<Result, Error> {
      * @param abort true if should terminate.
      */
     void onFail(EBRetryJobError<Error> error, boolean abort);
+
+    /**
+     * Deadline of the whole operation the job should respect, e.g., for its own IO timeouts.
+     * @return deadline or null if there is none
+     */
+    default EBRetryDeadline getDeadline() {
+        return null;
+    }
+
+    /**
+     * Cancellation token of the attempt. Job may use it to stop in-flight work once the attempt is not needed.
+     * @return token or null if the attempt cannot be cancelled
+     */
+    default EBRetryCancellationToken getCancellationToken() {
+        return null;
+    }
 }
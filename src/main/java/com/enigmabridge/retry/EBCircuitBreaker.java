@@ -0,0 +1,585 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker with closed, open and half-open states, typically one instance per downstream service,
+ * shared by all threads calling it.
+ * <p>
+ * In the closed state outcomes of the calls are recorded to a ring buffer sliding window. Once at least
+ * {@code minimumCalls} calls are recorded and either the failure rate or the slow call rate reaches its
+ * threshold, circuit opens. In the open state all calls are rejected. After {@code openDurationMillis}
+ * circuit transitions to half-open and permits {@code halfOpenCalls} trial calls. If all of them succeed,
+ * circuit closes, any failure opens it again.
+ * </p>
+ * <p>
+ * The whole state is kept in a single atomic word updated with CAS: two top bits hold the state,
+ * the rest holds the open timestamp (open state) or the number of issued permits and successes (half-open).
+ * </p>
+ * <p>
+ * Used with retries via {@link EBRetryStrategyCircuitBreaker}.
+ * </p>
+ */
+public class EBCircuitBreaker {
+    /**
+     * The default failure rate threshold in percent.
+     */
+    public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    /**
+     * The default slow call rate threshold in percent, 100 % effectively disables it.
+     */
+    public static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 100;
+    /**
+     * The default duration after which the call is considered slow (1 minute).
+     */
+    public static final int DEFAULT_SLOW_CALL_DURATION_MILLIS = 60000;
+    /**
+     * The default size of the sliding window, in calls.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+    /**
+     * The default minimal number of calls in the window before rates are evaluated.
+     */
+    public static final int DEFAULT_MINIMUM_CALLS = 10;
+    /**
+     * The default time the circuit stays open (1 minute).
+     */
+    public static final int DEFAULT_OPEN_DURATION_MILLIS = 60000;
+    /**
+     * The default number of trial calls in the half-open state.
+     */
+    public static final int DEFAULT_HALF_OPEN_CALLS = 5;
+
+    protected static final String FIELD_NAME = "name";
+    protected static final String FIELD_FAILURE_RATE_THRESHOLD = "failRate";
+    protected static final String FIELD_SLOW_CALL_RATE_THRESHOLD = "slowRate";
+    protected static final String FIELD_SLOW_CALL_DURATION_MILLIS = "slowMillis";
+    protected static final String FIELD_WINDOW_SIZE = "window";
+    protected static final String FIELD_MINIMUM_CALLS = "minCalls";
+    protected static final String FIELD_OPEN_DURATION_MILLIS = "openMillis";
+    protected static final String FIELD_HALF_OPEN_CALLS = "halfOpenCalls";
+
+    /**
+     * Circuit breaker state.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // State word layout.
+    private static final long ST_CLOSED = 0L;
+    private static final long ST_OPEN = 1L;
+    private static final long ST_HALF_OPEN = 2L;
+    private static final int STATE_SHIFT = 62;
+    private static final long PAYLOAD_MASK = (1L << STATE_SHIFT) - 1;
+    private static final int HALF_OPEN_SUCCESS_SHIFT = 31;
+    private static final long HALF_OPEN_PERMITS_MASK = (1L << HALF_OPEN_SUCCESS_SHIFT) - 1;
+
+    // Outcome codes in the window.
+    private static final int OUTCOME_PRESENT = 1;
+    private static final int OUTCOME_FAILURE = 2;
+    private static final int OUTCOME_SLOW = 4;
+
+    private static final ConcurrentMap<String, EBCircuitBreaker> REGISTRY = new ConcurrentHashMap<String, EBCircuitBreaker>();
+    private static final long BASE_NANOS = System.nanoTime();
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final int slowCallDurationMillis;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int openDurationMillis;
+    private final int halfOpenCalls;
+    private final long slowCallDurationNanos;
+
+    private final AtomicLong state = new AtomicLong(ST_CLOSED << STATE_SHIFT);
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicIntegerArray window;
+    private final AtomicInteger totalCalls = new AtomicInteger();
+    private final AtomicInteger failedCalls = new AtomicInteger();
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    public EBCircuitBreaker(String name) {
+        this(new Builder().setName(name));
+    }
+
+    public EBCircuitBreaker(JSONObject json) {
+        this(new Builder().setJSON(json));
+    }
+
+    protected EBCircuitBreaker(Builder builder) {
+        name = builder.name;
+        failureRateThreshold = builder.failureRateThreshold;
+        slowCallRateThreshold = builder.slowCallRateThreshold;
+        slowCallDurationMillis = builder.slowCallDurationMillis;
+        windowSize = builder.windowSize;
+        minimumCalls = builder.minimumCalls;
+        openDurationMillis = builder.openDurationMillis;
+        halfOpenCalls = builder.halfOpenCalls;
+        if (failureRateThreshold <= 0 || failureRateThreshold > 100
+                || slowCallRateThreshold <= 0 || slowCallRateThreshold > 100
+                || slowCallDurationMillis <= 0
+                || windowSize <= 0
+                || minimumCalls <= 0
+                || openDurationMillis <= 0
+                || halfOpenCalls <= 0) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        slowCallDurationNanos = slowCallDurationMillis * 1000000L;
+        window = new AtomicIntegerArray(windowSize);
+    }
+
+    /**
+     * Returns shared circuit breaker registered under the builder name, creates it if there is none.
+     * Breaker is shared by all retry strategies referring to the same downstream name.
+     *
+     * @param builder configuration of the breaker
+     * @return shared circuit breaker
+     */
+    public static EBCircuitBreaker getOrCreate(Builder builder) {
+        if (builder.name == null) {
+            return builder.build();
+        }
+
+        final EBCircuitBreaker existing = REGISTRY.get(builder.name);
+        if (existing != null) {
+            return existing;
+        }
+
+        final EBCircuitBreaker created = builder.build();
+        final EBCircuitBreaker raced = REGISTRY.putIfAbsent(builder.name, created);
+        return raced != null ? raced : created;
+    }
+
+    /**
+     * Returns shared circuit breaker by its name, null if there is none.
+     * @param name name of the breaker
+     * @return breaker or null
+     */
+    public static EBCircuitBreaker get(String name) {
+        return REGISTRY.get(name);
+    }
+
+    /**
+     * Asks for a permission to execute a call. Each permitted call has to be followed
+     * by {@link #onSuccess(long)}, {@link #onError(long)} or {@link #releasePermission()}.
+     *
+     * @return true if call can be executed, false if circuit is open
+     */
+    public boolean tryAcquirePermission() {
+        for (;;) {
+            final long word = state.get();
+            final long st = word >>> STATE_SHIFT;
+            if (st == ST_CLOSED) {
+                return true;
+            }
+
+            if (st == ST_OPEN) {
+                if (nowMillis() - (word & PAYLOAD_MASK) < openDurationMillis) {
+                    return false;
+                }
+
+                // Open duration elapsed, first caller switches to half-open and takes the first permit.
+                if (state.compareAndSet(word, (ST_HALF_OPEN << STATE_SHIFT) | 1L)) {
+                    return true;
+                }
+                continue;
+            }
+
+            final long permits = word & HALF_OPEN_PERMITS_MASK;
+            if (permits >= halfOpenCalls) {
+                return false;
+            }
+            if (state.compareAndSet(word, word + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the permission of a call which ended without an outcome, e.g., it was cancelled.
+     * Half-open trial permit is given back so another trial call can be made.
+     */
+    public void releasePermission() {
+        for (;;) {
+            final long word = state.get();
+            if ((word >>> STATE_SHIFT) != ST_HALF_OPEN) {
+                return;
+            }
+
+            // Only permits not yet confirmed by a success can be returned.
+            final long permits = word & HALF_OPEN_PERMITS_MASK;
+            final long successes = (word & PAYLOAD_MASK) >>> HALF_OPEN_SUCCESS_SHIFT;
+            if (permits <= successes) {
+                return;
+            }
+            if (state.compareAndSet(word, word - 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records successful call.
+     * @param durationNanos duration of the call
+     */
+    public void onSuccess(long durationNanos) {
+        record(false, durationNanos >= slowCallDurationNanos);
+    }
+
+    /**
+     * Records failed call.
+     * @param durationNanos duration of the call
+     */
+    public void onError(long durationNanos) {
+        record(true, durationNanos >= slowCallDurationNanos);
+    }
+
+    /**
+     * Returns number of milliseconds until the open circuit may switch to half-open, 0 if circuit is not open.
+     * @return milliseconds
+     */
+    public long getRemainingOpenMillis() {
+        final long word = state.get();
+        if ((word >>> STATE_SHIFT) != ST_OPEN) {
+            return 0;
+        }
+
+        return Math.max(0, openDurationMillis - (nowMillis() - (word & PAYLOAD_MASK)));
+    }
+
+    public State getState() {
+        final long st = state.get() >>> STATE_SHIFT;
+        return st == ST_CLOSED ? State.CLOSED : (st == ST_OPEN ? State.OPEN : State.HALF_OPEN);
+    }
+
+    /**
+     * Forces the circuit to the closed state and clears the window.
+     */
+    public void reset() {
+        state.set(ST_CLOSED << STATE_SHIFT);
+        clearWindow();
+    }
+
+    private void record(boolean failure, boolean slow) {
+        for (;;) {
+            final long word = state.get();
+            final long st = word >>> STATE_SHIFT;
+            if (st == ST_OPEN) {
+                // Late result of the call permitted before opening.
+                return;
+            }
+
+            if (st == ST_HALF_OPEN) {
+                if (failure || (slow && slowCallRateThreshold < 100)) {
+                    if (state.compareAndSet(word, open())) {
+                        return;
+                    }
+                    continue;
+                }
+
+                final long successes = ((word & PAYLOAD_MASK) >>> HALF_OPEN_SUCCESS_SHIFT) + 1;
+                if (successes >= halfOpenCalls) {
+                    if (state.compareAndSet(word, ST_CLOSED << STATE_SHIFT)) {
+                        clearWindow();
+                        return;
+                    }
+                } else if (state.compareAndSet(word, word + (1L << HALF_OPEN_SUCCESS_SHIFT))) {
+                    return;
+                }
+                continue;
+            }
+
+            recordClosed(word, failure, slow);
+            return;
+        }
+    }
+
+    private void recordClosed(long word, boolean failure, boolean slow) {
+        final int outcome = OUTCOME_PRESENT | (failure ? OUTCOME_FAILURE : 0) | (slow ? OUTCOME_SLOW : 0);
+        final int idx = (int) (cursor.getAndIncrement() % windowSize);
+        final int old = window.getAndSet(idx, outcome);
+
+        final int total = (old & OUTCOME_PRESENT) == 0 ? totalCalls.incrementAndGet() : totalCalls.get();
+        final int failed = failedCalls.addAndGet(bit(outcome, OUTCOME_FAILURE) - bit(old, OUTCOME_FAILURE));
+        final int slowed = slowCalls.addAndGet(bit(outcome, OUTCOME_SLOW) - bit(old, OUTCOME_SLOW));
+
+        if (total < minimumCalls) {
+            return;
+        }
+
+        if (failed * 100L >= (long) failureRateThreshold * total
+                || slowed * 100L >= (long) slowCallRateThreshold * total) {
+            state.compareAndSet(word, open());
+        }
+    }
+
+    private void clearWindow() {
+        for (int i = 0; i < windowSize; i++) {
+            window.set(i, 0);
+        }
+
+        totalCalls.set(0);
+        failedCalls.set(0);
+        slowCalls.set(0);
+    }
+
+    private static int bit(int outcome, int flag) {
+        return (outcome & flag) != 0 ? 1 : 0;
+    }
+
+    private static long open() {
+        return (ST_OPEN << STATE_SHIFT) | (nowMillis() & PAYLOAD_MASK);
+    }
+
+    private static long nowMillis() {
+        return (System.nanoTime() - BASE_NANOS) / 1000000L;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public int getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public int getSlowCallDurationMillis() {
+        return slowCallDurationMillis;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public int getOpenDurationMillis() {
+        return openDurationMillis;
+    }
+
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    public JSONObject toJSON(JSONObject json) {
+        if (json == null) {
+            json = new JSONObject();
+        }
+
+        if (name != null) {
+            json.put(FIELD_NAME, name);
+        }
+        if (failureRateThreshold != DEFAULT_FAILURE_RATE_THRESHOLD) {
+            json.put(FIELD_FAILURE_RATE_THRESHOLD, failureRateThreshold);
+        }
+        if (slowCallRateThreshold != DEFAULT_SLOW_CALL_RATE_THRESHOLD) {
+            json.put(FIELD_SLOW_CALL_RATE_THRESHOLD, slowCallRateThreshold);
+        }
+        if (slowCallDurationMillis != DEFAULT_SLOW_CALL_DURATION_MILLIS) {
+            json.put(FIELD_SLOW_CALL_DURATION_MILLIS, slowCallDurationMillis);
+        }
+        if (windowSize != DEFAULT_WINDOW_SIZE) {
+            json.put(FIELD_WINDOW_SIZE, windowSize);
+        }
+        if (minimumCalls != DEFAULT_MINIMUM_CALLS) {
+            json.put(FIELD_MINIMUM_CALLS, minimumCalls);
+        }
+        if (openDurationMillis != DEFAULT_OPEN_DURATION_MILLIS) {
+            json.put(FIELD_OPEN_DURATION_MILLIS, openDurationMillis);
+        }
+        if (halfOpenCalls != DEFAULT_HALF_OPEN_CALLS) {
+            json.put(FIELD_HALF_OPEN_CALLS, halfOpenCalls);
+        }
+
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "EBCircuitBreaker{" +
+                "name='" + name + '\'' +
+                ", state=" + getState() +
+                ", failureRateThreshold=" + failureRateThreshold +
+                ", slowCallRateThreshold=" + slowCallRateThreshold +
+                ", windowSize=" + windowSize +
+                '}';
+    }
+
+    /**
+     * Builder for {@link EBCircuitBreaker}.
+     */
+    public static class Builder {
+        String name;
+        int failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+        int slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+        int slowCallDurationMillis = DEFAULT_SLOW_CALL_DURATION_MILLIS;
+        int windowSize = DEFAULT_WINDOW_SIZE;
+        int minimumCalls = DEFAULT_MINIMUM_CALLS;
+        int openDurationMillis = DEFAULT_OPEN_DURATION_MILLIS;
+        int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+
+        public Builder() {
+        }
+
+        public EBCircuitBreaker build() {
+            return new EBCircuitBreaker(this);
+        }
+
+        /**
+         * Builds the breaker or returns existing shared one with the same name.
+         * @return circuit breaker
+         */
+        public EBCircuitBreaker getOrCreate() {
+            return EBCircuitBreaker.getOrCreate(this);
+        }
+
+        /**
+         * Sets name of the breaker, typically the name of the downstream service.
+         * Breakers with a name are shared, see {@link EBCircuitBreaker#getOrCreate(Builder)}.
+         *
+         * @param name name of the breaker
+         * @return this
+         */
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Sets failure rate in percent, when reached circuit opens. The default value is
+         * {@link #DEFAULT_FAILURE_RATE_THRESHOLD}.
+         *
+         * @param failureRateThreshold percent in range (0, 100]
+         * @return this
+         */
+        public Builder setFailureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets slow call rate in percent, when reached circuit opens. The default value is
+         * {@link #DEFAULT_SLOW_CALL_RATE_THRESHOLD}.
+         *
+         * @param slowCallRateThreshold percent in range (0, 100]
+         * @return this
+         */
+        public Builder setSlowCallRateThreshold(int slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets duration after which the call is considered slow. The default value is
+         * {@link #DEFAULT_SLOW_CALL_DURATION_MILLIS}.
+         *
+         * @param slowCallDurationMillis milliseconds
+         * @return this
+         */
+        public Builder setSlowCallDurationMillis(int slowCallDurationMillis) {
+            this.slowCallDurationMillis = slowCallDurationMillis;
+            return this;
+        }
+
+        /**
+         * Sets number of last calls the rates are computed from. The default value is
+         * {@link #DEFAULT_WINDOW_SIZE}.
+         *
+         * @param windowSize number of calls
+         * @return this
+         */
+        public Builder setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Sets minimal number of calls recorded before rates are evaluated. The default value is
+         * {@link #DEFAULT_MINIMUM_CALLS}.
+         *
+         * @param minimumCalls number of calls
+         * @return this
+         */
+        public Builder setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Sets time the circuit stays open before trial calls are permitted. The default value is
+         * {@link #DEFAULT_OPEN_DURATION_MILLIS}.
+         *
+         * @param openDurationMillis milliseconds
+         * @return this
+         */
+        public Builder setOpenDurationMillis(int openDurationMillis) {
+            this.openDurationMillis = openDurationMillis;
+            return this;
+        }
+
+        /**
+         * Sets number of trial calls permitted in the half-open state. The default value is
+         * {@link #DEFAULT_HALF_OPEN_CALLS}.
+         *
+         * @param halfOpenCalls number of calls
+         * @return this
+         */
+        public Builder setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * Reads serialized settings from the JSON
+         *
+         * @param json json to use
+         * @return this
+         */
+        public Builder setJSON(JSONObject json) {
+            if (json == null) {
+                return this;
+            }
+            if (json.has(FIELD_NAME)) {
+                name = json.getString(FIELD_NAME);
+            }
+            if (json.has(FIELD_FAILURE_RATE_THRESHOLD)) {
+                failureRateThreshold = EBUtils.getAsInteger(json, FIELD_FAILURE_RATE_THRESHOLD, 10);
+            }
+            if (json.has(FIELD_SLOW_CALL_RATE_THRESHOLD)) {
+                slowCallRateThreshold = EBUtils.getAsInteger(json, FIELD_SLOW_CALL_RATE_THRESHOLD, 10);
+            }
+            if (json.has(FIELD_SLOW_CALL_DURATION_MILLIS)) {
+                slowCallDurationMillis = EBUtils.getAsInteger(json, FIELD_SLOW_CALL_DURATION_MILLIS, 10);
+            }
+            if (json.has(FIELD_WINDOW_SIZE)) {
+                windowSize = EBUtils.getAsInteger(json, FIELD_WINDOW_SIZE, 10);
+            }
+            if (json.has(FIELD_MINIMUM_CALLS)) {
+                minimumCalls = EBUtils.getAsInteger(json, FIELD_MINIMUM_CALLS, 10);
+            }
+            if (json.has(FIELD_OPEN_DURATION_MILLIS)) {
+                openDurationMillis = EBUtils.getAsInteger(json, FIELD_OPEN_DURATION_MILLIS, 10);
+            }
+            if (json.has(FIELD_HALF_OPEN_CALLS)) {
+                halfOpenCalls = EBUtils.getAsInteger(json, FIELD_HALF_OPEN_CALLS, 10);
+            }
+
+            return this;
+        }
+    }
+}
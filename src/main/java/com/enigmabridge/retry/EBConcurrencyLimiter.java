@@ -0,0 +1,439 @@
+package com.enigmabridge.retry;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive concurrency limiter capping the number of in-flight attempts, including retries,
+ * typically one instance per downstream service.
+ * <p>
+ * The limit is estimated with AIMD (additive increase, multiplicative decrease). A failed attempt,
+ * or an attempt slower than the latency threshold, decreases the limit by the backoff ratio. A successful
+ * attempt increases the limit by one if the limiter was at least half utilized.
+ * </p>
+ * <p>
+ * Attempts over the limit are queued up to {@code maxQueueSize} and dispatched when a permit is released,
+ * or rejected if the queue is full. Rejected attempts are failed without being dispatched,
+ * so retries stop amplifying the overload. Queued attempts are dispatched on the executor,
+ * never on the thread releasing the permit, which is typically completing another attempt.
+ * </p>
+ */
+public class EBConcurrencyLimiter {
+    /**
+     * The default initial limit.
+     */
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    /**
+     * The default minimal limit.
+     */
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    /**
+     * The default maximal limit.
+     */
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    /**
+     * The default multiplicative decrease ratio.
+     */
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    /**
+     * The default latency threshold, 0 means latency is not taken into account.
+     */
+    public static final int DEFAULT_LATENCY_THRESHOLD_MILLIS = 0;
+    /**
+     * The default maximal number of queued attempts, 0 means attempts over the limit are rejected.
+     */
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 0;
+
+    private static final ConcurrentMap<String, EBConcurrencyLimiter> REGISTRY = new ConcurrentHashMap<String, EBConcurrencyLimiter>();
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final int latencyThresholdMillis;
+    private final long latencyThresholdNanos;
+    private final int maxQueueSize;
+    private final Executor executor;
+
+    // Current estimated limit, double bits.
+    private final AtomicLong limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger drainWip = new AtomicInteger();
+
+    public EBConcurrencyLimiter(String name) {
+        this(new Builder().setName(name));
+    }
+
+    protected EBConcurrencyLimiter(Builder builder) {
+        name = builder.name;
+        minLimit = builder.minLimit;
+        maxLimit = builder.maxLimit;
+        backoffRatio = builder.backoffRatio;
+        latencyThresholdMillis = builder.latencyThresholdMillis;
+        maxQueueSize = builder.maxQueueSize;
+        executor = builder.executor != null ? builder.executor : EBRetryExecutors.getDefaultExecutor();
+        if (minLimit <= 0
+                || maxLimit < minLimit
+                || builder.initialLimit < minLimit || builder.initialLimit > maxLimit
+                || backoffRatio <= 0 || backoffRatio >= 1
+                || latencyThresholdMillis < 0
+                || maxQueueSize < 0) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        latencyThresholdNanos = latencyThresholdMillis * 1000000L;
+        limit = new AtomicLong(Double.doubleToLongBits(builder.initialLimit));
+    }
+
+    /**
+     * Returns shared limiter registered under the builder name, creates it if there is none.
+     *
+     * @param builder configuration of the limiter
+     * @return shared limiter
+     */
+    public static EBConcurrencyLimiter getOrCreate(Builder builder) {
+        if (builder.name == null) {
+            return builder.build();
+        }
+
+        final EBConcurrencyLimiter existing = REGISTRY.get(builder.name);
+        if (existing != null) {
+            return existing;
+        }
+
+        final EBConcurrencyLimiter created = builder.build();
+        final EBConcurrencyLimiter raced = REGISTRY.putIfAbsent(builder.name, created);
+        return raced != null ? raced : created;
+    }
+
+    /**
+     * Returns shared limiter by its name, null if there is none.
+     * @param name name of the limiter
+     * @return limiter or null
+     */
+    public static EBConcurrencyLimiter get(String name) {
+        return REGISTRY.get(name);
+    }
+
+    /**
+     * Executes the attempt if limit allows, queues it if the queue is not full.
+     * The attempt holds a permit when executed, it has to be released with {@link #release(long, boolean)}.
+     *
+     * @param attempt attempt to run
+     * @return true if the attempt was executed or queued, false if rejected
+     */
+    public boolean execute(Runnable attempt) {
+        if (tryAcquire()) {
+            attempt.run();
+            return true;
+        }
+
+        if (maxQueueSize <= 0) {
+            return false;
+        }
+
+        for (;;) {
+            final int size = queued.get();
+            if (size >= maxQueueSize) {
+                return false;
+            }
+            if (queued.compareAndSet(size, size + 1)) {
+                break;
+            }
+        }
+
+        queue.add(attempt);
+
+        // Permit might have been released meanwhile.
+        drain();
+        return true;
+    }
+
+    /**
+     * Removes attempt from the queue, e.g., when it timed out or was cancelled while waiting for a permit.
+     *
+     * @param attempt queued attempt
+     * @return true if the attempt was removed and will not be executed
+     */
+    public boolean remove(Runnable attempt) {
+        if (!queue.remove(attempt)) {
+            return false;
+        }
+
+        queued.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Tries to acquire a permit without queueing.
+     * @return true if permit was acquired
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            final int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases the permit of the finished attempt and updates the limit estimate.
+     *
+     * @param latencyNanos duration of the attempt
+     * @param failed true if the attempt failed
+     */
+    public void release(long latencyNanos, boolean failed) {
+        final boolean drop = failed || (latencyThresholdNanos > 0 && latencyNanos > latencyThresholdNanos);
+        final int inFlightNow = inFlight.getAndDecrement();
+        for (;;) {
+            final long bits = limit.get();
+            final double current = Double.longBitsToDouble(bits);
+            double next = current;
+            if (drop) {
+                next = Math.max(minLimit, current * backoffRatio);
+            } else if (inFlightNow * 2 >= current) {
+                next = Math.min(maxLimit, current + 1);
+            }
+
+            if (next == current || limit.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                break;
+            }
+        }
+
+        drain();
+    }
+
+    /**
+     * Releases the permit without updating the limit estimate, e.g., when attempt was not dispatched.
+     */
+    public void releaseUnused() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Dispatches queued attempts while permits are available.
+     * Only one thread drains at a time, nested calls from dispatched attempts just mark another pass.
+     */
+    private void drain() {
+        if (drainWip.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        for (;;) {
+            while (!queue.isEmpty() && tryAcquire()) {
+                final Runnable attempt = queue.poll();
+                if (attempt == null) {
+                    inFlight.decrementAndGet();
+                    break;
+                }
+
+                queued.decrementAndGet();
+                dispatch(attempt);
+            }
+
+            missed = drainWip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Runs dequeued attempt on the executor. If the executor rejects it, attempt runs on this thread
+     * so its permit is not lost.
+     *
+     * @param attempt attempt holding a permit
+     */
+    private void dispatch(Runnable attempt) {
+        try {
+            executor.execute(attempt);
+        } catch (RejectedExecutionException e) {
+            attempt.run();
+        }
+    }
+
+    /**
+     * Current limit estimate.
+     * @return limit
+     */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public int getLatencyThresholdMillis() {
+        return latencyThresholdMillis;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public String toString() {
+        return "EBConcurrencyLimiter{" +
+                "name='" + name + '\'' +
+                ", limit=" + getLimit() +
+                ", inFlight=" + getInFlight() +
+                ", queued=" + getQueued() +
+                '}';
+    }
+
+    /**
+     * Builder for {@link EBConcurrencyLimiter}.
+     */
+    public static class Builder {
+        String name;
+        int initialLimit = DEFAULT_INITIAL_LIMIT;
+        int minLimit = DEFAULT_MIN_LIMIT;
+        int maxLimit = DEFAULT_MAX_LIMIT;
+        double backoffRatio = DEFAULT_BACKOFF_RATIO;
+        int latencyThresholdMillis = DEFAULT_LATENCY_THRESHOLD_MILLIS;
+        int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+        Executor executor;
+
+        public Builder() {
+        }
+
+        public EBConcurrencyLimiter build() {
+            return new EBConcurrencyLimiter(this);
+        }
+
+        /**
+         * Builds the limiter or returns existing shared one with the same name.
+         * @return limiter
+         */
+        public EBConcurrencyLimiter getOrCreate() {
+            return EBConcurrencyLimiter.getOrCreate(this);
+        }
+
+        /**
+         * Sets name of the limiter, typically the name of the downstream service.
+         * @param name name of the limiter
+         * @return this
+         */
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Sets the initial limit. The default value is {@link #DEFAULT_INITIAL_LIMIT}.
+         * @param initialLimit initial limit
+         * @return this
+         */
+        public Builder setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Sets the minimal limit. The default value is {@link #DEFAULT_MIN_LIMIT}.
+         * @param minLimit minimal limit, {@code > 0}
+         * @return this
+         */
+        public Builder setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Sets the maximal limit. The default value is {@link #DEFAULT_MAX_LIMIT}.
+         * @param maxLimit maximal limit
+         * @return this
+         */
+        public Builder setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Sets ratio the limit is multiplied with on a failed or slow attempt.
+         * The default value is {@link #DEFAULT_BACKOFF_RATIO}. Must fall in the range {@code 0 < ratio < 1}.
+         *
+         * @param backoffRatio ratio
+         * @return this
+         */
+        public Builder setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Sets latency after which a successful attempt is treated as a drop.
+         * The default value is {@link #DEFAULT_LATENCY_THRESHOLD_MILLIS}, i.e., disabled.
+         *
+         * @param latencyThresholdMillis milliseconds
+         * @return this
+         */
+        public Builder setLatencyThresholdMillis(int latencyThresholdMillis) {
+            this.latencyThresholdMillis = latencyThresholdMillis;
+            return this;
+        }
+
+        /**
+         * Sets maximal number of attempts waiting for a permit.
+         * The default value is {@link #DEFAULT_MAX_QUEUE_SIZE}, i.e., attempts over the limit are rejected.
+         *
+         * @param maxQueueSize queue size
+         * @return this
+         */
+        public Builder setMaxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Sets executor dispatching queued attempts once a permit is released.
+         * The default is the shared {@link EBRetryExecutors#getDefaultExecutor()}.
+         *
+         * @param executor executor
+         * @return this
+         */
+        public Builder setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+    }
+}
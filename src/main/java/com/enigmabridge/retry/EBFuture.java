@@ -1,14 +1,19 @@
 package com.enigmabridge.retry;
 
+import java.util.concurrent.Future;
+
 /**
- * Future object, similar to {@link java.util.concurrent.Future}
+ * Future object, extending {@link java.util.concurrent.Future}
  *
  * Used in async job invocations. Can be used to detect if task is running or
  * finished. Caller can cancel the task or skip current backoff waiting interval.
+ * Result can be obtained with blocking {@link #get()}, failed retry is reported as
+ * {@link java.util.concurrent.ExecutionException} with {@link EBRetryException} cause
+ * carrying the last job error.
  *
  * Created by dusanklinec on 21.07.16.
  */
-public interface EBFuture<Result, Error> {
+public interface EBFuture<Result, Error> extends Future<Result> {
     /**
      * Returns true if async task is still running.
      * @return true if running
@@ -24,6 +29,7 @@ public interface EBFuture<Result, Error> {
     /**
      * Triggers cancellation of the task.
      * Does not interrupt currently running job, disables invocation of the next attempt.
+     * Pending backoff wait is cancelled immediately.
      */
     void cancel();
 
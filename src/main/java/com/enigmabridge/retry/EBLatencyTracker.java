@@ -0,0 +1,86 @@
+package com.enigmabridge.retry;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks latencies of the recent attempts in a ring buffer and estimates their percentiles.
+ * <p>
+ * Recording is lock-free. Percentiles are computed from a sorted snapshot of the buffer,
+ * the snapshot is recomputed only after a tenth of the buffer has been overwritten.
+ * </p>
+ */
+public class EBLatencyTracker {
+    /**
+     * The default number of samples kept.
+     */
+    public static final int DEFAULT_SIZE = 1024;
+
+    private final AtomicLongArray samples;
+    private final AtomicLong cursor = new AtomicLong();
+    private final int refreshSamples;
+
+    // Sorted snapshot and the cursor it was taken at.
+    private volatile long[] snapshot = new long[0];
+    private volatile long snapshotCursor = 0;
+
+    public EBLatencyTracker() {
+        this(DEFAULT_SIZE);
+    }
+
+    public EBLatencyTracker(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        this.samples = new AtomicLongArray(size);
+        this.refreshSamples = Math.max(1, size / 10);
+    }
+
+    /**
+     * Records latency of a finished attempt.
+     * @param latencyNanos latency in nanoseconds
+     */
+    public void record(long latencyNanos) {
+        final long idx = cursor.getAndIncrement();
+        samples.set((int) (idx % samples.length()), latencyNanos);
+    }
+
+    /**
+     * Number of samples recorded, at most the size of the buffer.
+     * @return number of samples
+     */
+    public int getSampleCount() {
+        return (int) Math.min(cursor.get(), samples.length());
+    }
+
+    /**
+     * Returns the latency percentile of the recent samples.
+     *
+     * @param percentile percentile in range (0, 1], e.g., 0.95
+     * @return latency in milliseconds, -1 if there are no samples
+     */
+    public long getPercentileMillis(double percentile) {
+        long[] sorted = snapshot;
+        final long current = cursor.get();
+        if (current - snapshotCursor >= refreshSamples || (sorted.length == 0 && current > 0)) {
+            final int count = (int) Math.min(current, samples.length());
+            sorted = new long[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = samples.get(i);
+            }
+
+            Arrays.sort(sorted);
+            snapshot = sorted;
+            snapshotCursor = current;
+        }
+
+        if (sorted.length == 0) {
+            return -1;
+        }
+
+        final int idx = Math.min(sorted.length - 1, Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1));
+        return sorted[idx] / 1000000L;
+    }
+}
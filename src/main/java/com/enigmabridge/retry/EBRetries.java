@@ -0,0 +1,226 @@
+package com.enigmabridge.retry;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Static blocking retry API for lambdas and method references.
+ * <pre>{@code
+ * String body = EBRetries.call(strategy, () -> client.get(url));
+ * }</pre>
+ * <p>
+ * The first attempt runs directly on the calling thread and allocates nothing. Retry state - the strategy
+ * copy and the error wrapper - is created only after the first failure. The shared strategy passed in
+ * is used as a prototype only, it is never modified.
+ * </p>
+ * <p>
+ * Any {@link Exception} thrown by the callable fails the attempt, errors are not caught.
+ * Strategies with per-attempt permission, i.e., overriding {@link EBRetryStrategy#onAttempt()} such as
+ * {@link EBRetryStrategyCircuitBreaker}, skip the fast path so the first attempt is permitted as well.
+ * Strategies not allowing any attempt fail with {@link EBRetryFailedException} without calling the callable.
+ * </p>
+ */
+public class EBRetries {
+    // Strategy classes overriding onAttempt(), resolved once per class.
+    private static final ClassValue<Boolean> PER_ATTEMPT_PERMISSION = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("onAttempt").getDeclaringClass() != EBRetryStrategy.class;
+            } catch (NoSuchMethodException e) {
+                return true;
+            }
+        }
+    };
+
+    private EBRetries() {
+    }
+
+    /**
+     * Calls the callable, retries it on exception according to the strategy.
+     *
+     * @param strategy strategy prototype, not modified
+     * @param callable call to retry
+     * @param <T> result type
+     * @return result of the first successful attempt
+     * @throws EBRetryException if all attempts failed or the waiting thread was interrupted
+     */
+    public static <T> T call(EBRetryStrategy strategy, Callable<T> callable) throws EBRetryException {
+        if (hasPerAttemptPermission(strategy) || !shouldStart(strategy)){
+            return callRetry(strategy.copy(), callable, null);
+        }
+
+        // Fast path, no allocation on success.
+        try {
+            return callable.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EBRetryFailedException("Interrupted", e);
+        } catch (Exception e) {
+            final EBRetryStrategy state = strategy.copy();
+            state.onFail();
+            return callRetry(state, callable, e);
+        }
+    }
+
+    /**
+     * Runs the runnable, retries it on exception according to the strategy.
+     *
+     * @param strategy strategy prototype, not modified
+     * @param runnable action to retry
+     * @throws EBRetryException if all attempts failed or the waiting thread was interrupted
+     */
+    public static void run(EBRetryStrategy strategy, final Runnable runnable) throws EBRetryException {
+        if (hasPerAttemptPermission(strategy) || !shouldStart(strategy)){
+            callRetry(strategy.copy(), new RunnableCallable(runnable), null);
+            return;
+        }
+
+        // Fast path, no allocation on success.
+        try {
+            runnable.run();
+        } catch (RuntimeException e) {
+            final EBRetryStrategy state = strategy.copy();
+            state.onFail();
+            callRetry(state, new RunnableCallable(runnable), e);
+        }
+    }
+
+    /**
+     * Calls the callable, retries it on exception according to the shared immutable policy.
+     * Only the small {@link EBRetryState} is allocated, after the first failure.
+     *
+     * @param policy shared policy
+     * @param callable call to retry
+     * @param <T> result type
+     * @return result of the first successful attempt
+     * @throws EBRetryException if all attempts failed or the waiting thread was interrupted
+     */
+    public static <T> T call(EBRetryPolicy policy, Callable<T> callable) throws EBRetryException {
+        if (!policy.shouldStart()){
+            return callRetry(new EBRetryStrategyPolicy(policy), callable, null);
+        }
+
+        // Fast path, no allocation on success.
+        try {
+            return callable.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EBRetryFailedException("Interrupted", e);
+        } catch (Exception e) {
+            final EBRetryStrategy state = new EBRetryStrategyPolicy(policy);
+            state.onFail();
+            return callRetry(state, callable, e);
+        }
+    }
+
+    /**
+     * Runs the runnable, retries it on exception according to the shared immutable policy.
+     *
+     * @param policy shared policy
+     * @param runnable action to retry
+     * @throws EBRetryException if all attempts failed or the waiting thread was interrupted
+     */
+    public static void run(EBRetryPolicy policy, final Runnable runnable) throws EBRetryException {
+        if (!policy.shouldStart()){
+            callRetry(new EBRetryStrategyPolicy(policy), new RunnableCallable(runnable), null);
+            return;
+        }
+
+        // Fast path, no allocation on success.
+        try {
+            runnable.run();
+        } catch (RuntimeException e) {
+            final EBRetryStrategy state = new EBRetryStrategyPolicy(policy);
+            state.onFail();
+            callRetry(state, new RunnableCallable(runnable), e);
+        }
+    }
+
+    /**
+     * @return true if the strategy has to permit every attempt, including the first one
+     */
+    static boolean hasPerAttemptPermission(EBRetryStrategy strategy) {
+        return PER_ATTEMPT_PERMISSION.get(strategy.getClass());
+    }
+
+    /**
+     * Returns whether a fresh copy of the strategy makes the first attempt. Policy backed strategies are
+     * answered by the policy, so the elapsed time of a long-lived prototype does not matter.
+     */
+    static boolean shouldStart(EBRetryStrategy strategy) {
+        if (strategy instanceof EBRetryStrategyPolicy){
+            return ((EBRetryStrategyPolicy) strategy).getPolicy().shouldStart();
+        } else if (strategy instanceof EBRetryStrategyBackoff){
+            return ((EBRetryStrategyBackoff) strategy).getPolicy().shouldStart();
+        }
+        return strategy.shouldContinue();
+    }
+
+    /**
+     * Retry loop after the first failure, or from the first attempt if {@code lastException} is null.
+     */
+    private static <T> T callRetry(EBRetryStrategy state, Callable<T> callable, Exception lastException) throws EBRetryException {
+        while (state.shouldContinue()) {
+            if (lastException != null) {
+                sleep(state.getWaitMilli(), lastException);
+            }
+
+            if (!state.onAttempt()) {
+                lastException = new EBRetryAttemptRejectedException("Attempt rejected by " + state.getName());
+                state.onFail();
+                continue;
+            }
+
+            try {
+                final T result = callable.call();
+                state.onSuccess();
+                return result;
+
+            } catch (InterruptedException e) {
+                state.onFail();
+                Thread.currentThread().interrupt();
+                throw new EBRetryFailedException("Interrupted", e);
+
+            } catch (Exception e) {
+                lastException = e;
+                state.onFail();
+            }
+        }
+
+        throw new EBRetryFailedException("Retry failed", lastException, new EBRetryJobErrorThr(lastException), null);
+    }
+
+    private static void sleep(long waitMilli, Exception lastException) throws EBRetryException {
+        if (waitMilli <= 0) {
+            return;
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMilli);
+        for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new EBRetryFailedException("Interrupted", lastException);
+            }
+        }
+    }
+
+    /**
+     * Adapts runnable to the callable, created only when the runnable is retried.
+     */
+    private static class RunnableCallable implements Callable<Void> {
+        private final Runnable runnable;
+
+        RunnableCallable(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public Void call() {
+            runnable.run();
+            return null;
+        }
+    }
+}
@@ -3,11 +3,24 @@ package com.enigmabridge.retry;
 import org.json.JSONObject;
 
 import java.util.LinkedList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.BiConsumer;
 import java.util.List;
 
 /**
  * Very simple base retry implementation.
- * Ideally, new retry should be associated with the job. No reuse.
+ * Ideally, new retry should be associated with the job.
+ * Finished retry can be reused, new run resets its state in place, see {@link EBRetryPool}.
  *
  * Created by dusanklinec on 21.07.16.
  */
@@ -15,8 +28,36 @@ public class EBRetry<Result, Error> implements EBCallback<Result,Error> {
     protected static final String FIELD_STRATEGY_TYPE = "strategy";
     protected static final String FIELD_STRATEGY_DATA = "strategyConf";
 
+    // Lifecycle states. Terminal states are ST_SUCCEEDED and higher.
+    // Not started or reset.
+    protected static final int ST_IDLE = 0;
+    // Attempt round in flight.
+    protected static final int ST_RUNNING = 1;
+    // Round result is being recorded by the thread that completed the round.
+    protected static final int ST_COMPLETING = 2;
+    // Backoff wait before the next attempt.
+    protected static final int ST_WAITING = 3;
+    protected static final int ST_SUCCEEDED = 4;
+    protected static final int ST_FAILED = 5;
+    protected static final int ST_CANCELLED = 6;
+    protected static final int ST_ABORTED = 7;
+
+    // State word holds the lifecycle state in the low bits and the run generation in the rest.
+    // Generation is incremented by reset(), so futures and wait tasks of a finished run
+    // cannot act on a later run of the same, e.g., pooled, instance.
+    protected static final int ST_BITS = 3;
+    protected static final int ST_MASK = (1 << ST_BITS) - 1;
+    protected static final int ANY_GENERATION = -1;
+
+    @SuppressWarnings("rawtypes")
+    protected static final AtomicIntegerFieldUpdater<EBRetry> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(EBRetry.class, "state");
+
+    // State word, changed only by CAS transitions. Result fields are published by the state write.
+    protected volatile int state = ST_IDLE;
+
     // Current number of attempts
-    protected int attempts = 0;
+    protected volatile int attempts = 0;
 
     // Retry strategy to use.
     protected EBRetryStrategy retryStrategy = new EBRetryStrategySimple(0);
@@ -27,17 +68,98 @@ public class EBRetry<Result, Error> implements EBCallback<Result,Error> {
     // Current job being executed
     protected EBRetryJob<Result, Error> job;
 
-    // Did job already signalized success / fail?
-    protected volatile boolean signalized = false;
-    protected volatile boolean running = false;
-    protected volatile boolean cancel = false;
-    protected volatile boolean abort = false;
-
     // Milliseconds for waiting.
     protected volatile long waitingUntilMilli;
 
+    // Scheduler for async backoff waits, shared by default.
+    protected EBRetryScheduler scheduler;
+
+    // Pending backoff wait in async run.
+    protected volatile WaitTask pendingWait;
+
+    // Shared retry budget, optional.
+    protected EBRetryBudget budget;
+
+    // True if retry was stopped by the exhausted budget.
+    protected volatile boolean budgetExhausted = false;
+
+    // Concurrency limiter for attempts, optional.
+    protected EBConcurrencyLimiter limiter;
+
+    // Hedging policy, optional.
+    protected EBRetryHedging hedging;
+
+    // Current attempt round - primary attempt and its hedges.
+    protected volatile Round currentRound;
+
+    // Timeout of one attempt in milliseconds, 0 = no timeout.
+    protected long attemptTimeoutMillis = 0;
+
+    // Deadline of the whole run, optional.
+    protected EBRetryDeadline deadline;
+
+    // Deadline of the current run, the tighter of the configured one and the caller's one.
+    protected volatile EBRetryDeadline effectiveDeadline;
+
+    // True if retry was stopped by the deadline.
+    protected volatile boolean deadlineExceeded = false;
+
+    // Latency of the last finished attempt, estimate for the next one.
+    protected volatile long lastAttemptNanos = 0;
+
+    // Executor for retried attempts in async runs, null uses the shared default one.
+    protected Executor executor;
+
+    // Wait strategy for blocking runs.
+    protected EBRetryWaitStrategy waitStrategy = EBRetryWaitStrategyPark.INSTANCE;
+
+    // Thread blocked in runSync, signalled on state change.
+    protected volatile Thread waiter;
+
+    // Blocking run waits for job to signalize the result.
+    protected final EBRetryWaitStrategy.Condition signalizedCondition = new EBRetryWaitStrategy.Condition() {
+        @Override
+        public boolean isMet() {
+            final int st = stateOf(state);
+            return st != ST_RUNNING && st != ST_COMPLETING;
+        }
+
+        @Override
+        public long getWaitNanos() {
+            return -1;
+        }
+    };
+
+    // Blocking run waits for backoff interval to pass. If waitingUntilMilli is reset or modified, it is taken into account.
+    protected final EBRetryWaitStrategy.Condition backoffCondition = new EBRetryWaitStrategy.Condition() {
+        @Override
+        public boolean isMet() {
+            final long until = waitingUntilMilli;
+            return stateOf(state) != ST_WAITING || until <= 0 || System.currentTimeMillis() >= until;
+        }
+
+        @Override
+        public long getWaitNanos() {
+            return Math.max(0, waitingUntilMilli - System.currentTimeMillis()) * 1000000L;
+        }
+    };
+
+    // Future completed on finish, if started by runAsync.
+    protected volatile RetryFuture future;
+
+    // Future completed on finish, if started by runAsyncCompletable.
+    protected volatile CompletableFuture<Result> completableFuture;
+
+    // If true, failed runs report stackless exceptions without retry reference.
+    protected boolean stacklessExceptions = false;
+
+    // Outcome of runSyncOutcome(), reused.
+    protected EBRetryOutcome<Result, Error> outcome;
+
+    // True if released to the EBRetryPool, no run can be started.
+    protected volatile boolean released = false;
+
     // State from the last signalization
-    protected boolean lastWasSuccess = false;
     protected boolean startedAsBlocking = false;
     protected Result lastResult;
     protected EBRetryJobError<Error> lastError;
@@ -64,6 +186,7 @@ public class EBRetry<Result, Error> implements EBCallback<Result,Error> {
     }
 
     public EBFuture<Result, Error> runAsync(EBRetryJob<Result, Error> job){
+        checkReusable();
         this.job = job;
         return runAsync();
     }
@@ -73,160 +196,520 @@ public class EBRetry<Result, Error> implements EBCallback<Result,Error> {
      * @return future for manipulating async job
      */
     public EBFuture<Result, Error> runAsync(){
-        startedAsBlocking = false;
-        reset();
+        prepareRun(false);
+        final RetryFuture future = new RetryFuture(generationOf(state));
+        this.future = future;
+        onFirstAttempt();
+        if (!casState(ST_IDLE, ST_RUNNING)){
+            // Cancelled before the first attempt.
+            future.complete(null, getFailException(ST_CANCELLED), true);
+            return future;
+        }
+
         runAsyncInternal();
+        return future;
+    }
 
-        return new EBFuture<Result, Error>() {
-            @Override
-            public boolean isRunning() {
-                return running;
-            }
+    public CompletableFuture<Result> runAsyncCompletable(EBRetryJob<Result, Error> job){
+        checkReusable();
+        this.job = job;
+        return runAsyncCompletable();
+    }
 
-            @Override
-            public boolean isDone() {
-                return !running;
-            }
+    /**
+     * Runs the job asynchronously, result is provided as a {@link CompletableFuture}.
+     * Future is completed with the result on success, exceptionally with {@link EBRetryException} on fail.
+     * Cancelling the returned future cancels the retry - pending backoff wait and further attempts.
+     *
+     * @return future completed when the retry finishes
+     */
+    public CompletableFuture<Result> runAsyncCompletable(){
+        final CompletableFuture<Result> future = new CompletableFuture<Result>();
+        prepareRun(false);
+        final int generation = generationOf(state);
+        completableFuture = future;
+        onFirstAttempt();
+        if (!casState(ST_IDLE, ST_RUNNING)){
+            // Cancelled before the first attempt.
+            future.cancel(false);
+            return future;
+        }
 
+        future.whenComplete(new BiConsumer<Result, Throwable>() {
             @Override
-            public void cancel() {
-                cancel = true;
+            public void accept(Result result, Throwable throwable) {
+                // Cancels only the run the future belongs to, not a later run of a reused instance.
+                if (future.isCancelled()) {
+                    tryCancel(generation);
+                }
             }
+        });
 
-            @Override
-            public void runNow() {
-                waitingUntilMilli = 0;
-            }
-        };
+        runAsyncInternal();
+        return future;
+    }
+
+    /**
+     * Detects reuse of the running or released retry.
+     * @throws IllegalStateException on misuse
+     */
+    protected void checkReusable(){
+        if (released){
+            throw new IllegalStateException("Retry was released to the pool");
+        }
+        if (isRunning()){
+            throw new IllegalStateException("Retry is running");
+        }
+    }
+
+    /**
+     * Resets the state before a new run.
+     * @param blocking true if started by {@link #runSync()}
+     */
+    protected void prepareRun(boolean blocking){
+        checkReusable();
+        reset();
+        startedAsBlocking = blocking;
+        effectiveDeadline = EBRetryDeadline.min(deadline, EBRetryDeadline.current());
     }
 
+    /**
+     * Starts new attempt round. Called in {@link #ST_RUNNING} state.
+     */
     protected void runAsyncInternal(){
-        signalized = false;
-        running = true;
-        job.runAsync(this);
+        final Round round = new Round();
+        currentRound = round;
+
+        // Local rejection, strategy is not asked for the attempt permission.
+        final EBRetryDeadline dl = effectiveDeadline;
+        if (dl != null && dl.isExpired()){
+            deadlineExceeded = true;
+            onFail(new EBRetryJobError<Error>(new EBRetryAttemptRejectedException("Deadline exceeded")), false);
+            return;
+        }
+
+        dispatchAttempt(round, false);
+        round.scheduleHedge();
+    }
+
+    /**
+     * Dispatches new attempt of the round, through the concurrency limiter if set.
+     *
+     * @param round attempt round
+     * @param hedge true if this is a speculative hedge
+     */
+    protected void dispatchAttempt(Round round, boolean hedge){
+        final EBConcurrencyLimiter lim = limiter;
+
+        // Hedges are only speculative, never queued.
+        if (hedge && lim != null && !lim.tryAcquire()){
+            return;
+        }
+
+        final Attempt attempt = new Attempt(round, lim);
+        round.addAttempt(attempt, hedge);
+
+        // Armed before queueing, so time spent waiting for the limiter permit is bounded as well.
+        attempt.armTimeout();
+
+        if (lim == null || hedge){
+            attempt.run();
+
+        } else if (!lim.execute(attempt)){
+            attempt.onFail(new EBRetryJobError<Error>(new EBRetryAttemptRejectedException("Attempt rejected by concurrency limiter")), false);
+        }
+    }
+
+    /**
+     * Attempt called back with success. First success completes the round.
+     *
+     * @param attempt attempt
+     * @param result result of the attempt
+     */
+    protected void onAttemptSuccess(Attempt attempt, Result result){
+        final long latency = attempt.release(false);
+        lastAttemptNanos = latency;
+        final EBRetryHedging hedg = hedging;
+        if (hedg != null){
+            hedg.recordLatency(latency);
+        }
+
+        if (attempt.round.complete(attempt)){
+            onRoundSuccess(attempt, result);
+        } else {
+            attempt.abandonPermit();
+        }
+    }
+
+    /**
+     * Attempt called back with fail. Round fails once all its attempts failed, or immediately on abort.
+     *
+     * @param attempt attempt
+     * @param error error of the attempt
+     * @param abort true if attempt requested abort
+     */
+    protected void onAttemptFail(Attempt attempt, EBRetryJobError<Error> error, boolean abort){
+        lastAttemptNanos = attempt.release(true);
+        final Round round = attempt.round;
+        if (round.onAttemptFinished() > 0 && !abort){
+            // Other attempts of the round are still running, the round outcome is reported by the last one.
+            attempt.abandonPermit();
+            return;
+        }
+
+        if (round.complete(attempt)){
+            onRoundFail(attempt, error, abort);
+        } else {
+            attempt.abandonPermit();
+        }
     }
 
     /**
      * Blocking version of the run.
+     * Waiting thread does not hold any monitor while blocked, so calling it from a virtual thread
+     * does not pin the carrier thread.
+     *
      * @return Result of the sync operation
      * @throws EBRetryException retry failed
      */
     public Result runSync() throws EBRetryException {
-        reset();
+        try {
+            runSyncBlocking();
+        } catch (InterruptedException e) {
+            throw new EBRetryFailedException("Interrupted", e);
+        }
+
+        // State read publishes the result.
+        if (isSucceeded()){
+            return lastResult;
+        } else {
+            throw getFailException();
+        }
+    }
+
+    /**
+     * Blocking run returning the outcome instead of throwing an exception.
+     * The returned outcome is owned by the retry and overwritten by the next outcome run.
+     * If the waiting thread is interrupted, the retry is cancelled and the interrupt flag is kept set.
+     *
+     * @return outcome of the run
+     */
+    public EBRetryOutcome<Result, Error> runSyncOutcome() {
+        EBRetryOutcome<Result, Error> out = outcome;
+        if (out == null){
+            out = new EBRetryOutcome<Result, Error>();
+            outcome = out;
+        }
+
+        return runSyncOutcome(out);
+    }
+
+    /**
+     * Blocking run returning the outcome instead of throwing an exception.
+     *
+     * @param out outcome object to fill, may be reused by the caller
+     * @return filled outcome
+     */
+    public EBRetryOutcome<Result, Error> runSyncOutcome(EBRetryOutcome<Result, Error> out) {
+        try {
+            runSyncBlocking();
+        } catch (InterruptedException e) {
+            // Retry was cancelled, outcome says so.
+        }
+
+        final int st = stateOf(state);
+        final EBRetryOutcome.Status status;
+        switch (st){
+            case ST_SUCCEEDED:
+                status = EBRetryOutcome.Status.SUCCEEDED;
+                break;
+            case ST_ABORTED:
+                status = EBRetryOutcome.Status.ABORTED;
+                break;
+            case ST_CANCELLED:
+                status = EBRetryOutcome.Status.CANCELLED;
+                break;
+            default:
+                status = EBRetryOutcome.Status.FAILED;
+                break;
+        }
+
+        return out.set(status, lastResult, lastError, attempts, budgetExhausted, deadlineExceeded);
+    }
+
+    /**
+     * Runs the blocking loop on the calling thread.
+     * @throws InterruptedException if the waiting was interrupted, retry is cancelled, interrupt flag is restored
+     */
+    protected void runSyncBlocking() throws InterruptedException {
+        prepareRun(true);
+        waiter = Thread.currentThread();
+        try {
+            runSyncLoop();
+        } catch (InterruptedException e) {
+            // Nobody waits for the result anymore.
+            cancel();
+            Thread.currentThread().interrupt();
+            throw e;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Builds exception describing why the retry did not succeed.
+     * @return aborted, cancelled or failed exception
+     */
+    protected EBRetryException getFailException() {
+        return getFailException(stateOf(state));
+    }
+
+    /**
+     * Builds exception describing why the retry did not succeed.
+     * @param st terminal state
+     * @return aborted, cancelled or failed exception
+     */
+    protected EBRetryException getFailException(int st) {
+        if (stacklessExceptions){
+            return getStacklessFailException(st);
+        }
+        if (st == ST_ABORTED){
+            return new EBRetryAbortedException(lastError, this);
+        }
+        if (st == ST_CANCELLED){
+            return new EBRetryCancelledException("Cancelled");
+        }
+        if (budgetExhausted){
+            return new EBRetryBudgetExhaustedException("Retry budget exhausted", lastError, this);
+        }
+        if (deadlineExceeded){
+            return new EBRetryDeadlineExceededException("Deadline exceeded", lastError, this);
+        }
+
+        return new EBRetryFailedException(lastError, this);
+    }
+
+    /**
+     * Stackless variant of {@link #getFailException(int)}, without reference to the retry.
+     * @param st terminal state
+     * @return aborted, cancelled or failed exception
+     */
+    protected EBRetryException getStacklessFailException(int st) {
+        if (st == ST_ABORTED){
+            return EBRetryAbortedException.stackless("Aborted", lastError);
+        }
+        if (st == ST_CANCELLED){
+            return EBRetryCancelledException.stackless("Cancelled", null);
+        }
+        if (budgetExhausted){
+            return EBRetryBudgetExhaustedException.stackless("Retry budget exhausted", lastError);
+        }
+        if (deadlineExceeded){
+            return EBRetryDeadlineExceededException.stackless("Deadline exceeded", lastError);
+        }
+
+        return EBRetryFailedException.stackless("Failed", lastError);
+    }
+
+    /**
+     * Attempt loop of the blocking run.
+     * Round callbacks move the state to {@link #ST_WAITING} if the strategy allows another attempt,
+     * the loop then checks the deadline and the budget, waits and starts the next round.
+     *
+     * @throws InterruptedException if waiting was interrupted
+     */
+    protected void runSyncLoop() throws InterruptedException {
+        // Strategy may not allow any attempt at all.
+        final int first = retryStrategy.shouldContinue() ? ST_RUNNING : ST_FAILED;
+        if (!casState(ST_IDLE, first) || first != ST_RUNNING){
+            return;
+        }
+
+        onFirstAttempt();
+
+        for(;;){
+            runAsyncInternal();
+
+            // Wait until tasks signalizes the result.
+            // If task is actually blocking, it signalizes result before returning control
+            // thus no waiting is made.
+            waitStrategy.await(signalizedCondition);
+            if (stateOf(state) != ST_WAITING){
+                // Terminal state.
+                return;
+            }
 
-        running = true;
-        startedAsBlocking = true;
-        for(int i = 0; retryStrategy.shouldContinue() && !cancel && !abort; i++){
             // Ask strategy if we are going to wait.
             final long waitMilli = retryStrategy.getWaitMilli();
             waitingUntilMilli = waitMilli > 0 ? System.currentTimeMillis() + waitMilli : 0;
 
+            // Retries have to fit the deadline and be allowed by the budget.
+            if (!checkDeadline(waitMilli) || !acquireRetry()){
+                finish(ST_WAITING, ST_FAILED, null, lastError, null);
+                return;
+            }
+
             // Signalize the job it is about to retry.
             // Job can read waiting until milli or adjust it.
-            if (i > 0){
-                job.onRetry(this);
-            }
+            job.onRetry(this);
 
             // Wait. If waitingUntilMilli is reset or modified, no waiting is done here.
-            while(!cancel && !abort && waitingUntilMilli > 0 && System.currentTimeMillis() < waitingUntilMilli){
-                try {
-                    Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    throw new EBRetryFailedException("Interrupted", e);
-                }
-            }
-
-            // Run the async job. Result will be signalized to the onSuccess, onFail callbacks on completion.
-            if (!cancel && !abort) {
-                runAsyncInternal();
+            waitStrategy.await(backoffCondition);
+            if (!casState(ST_WAITING, ST_RUNNING)){
+                // Cancelled while waiting.
+                return;
             }
+        }
+    }
 
-            // Wait until tasks signalizes the result.
-            // If task is actually blocking, it signalizes result before returning control
-            // thus no waiting is made.
-            while(!signalized && !cancel && !abort){
-                try {
-                    Thread.sleep(0, 100);
-                } catch (InterruptedException e) {
-                    throw new EBRetryFailedException("Waiting interrupted", e);
-                }
-            }
+    /**
+     * Job calls this callback.
+     * Attempts are started with their own callback, calling this directly completes the current attempt round.
+     *
+     * @param result result of the job
+     */
+    @Override
+    public void onSuccess(Result result) {
+        final Round round = currentRound;
+        if (round == null){
+            onRoundSuccess(null, result);
+            return;
+        }
 
-            // Success? break. On fail, loop repeats.
-            if (lastWasSuccess){
-                break;
+        // Outcome reported directly is the outcome of the primary attempt.
+        final Attempt prim = round.primary;
+        if (round.complete(prim)){
+            if (prim != null){
+                prim.cancelAttempt(false);
             }
+            onRoundSuccess(prim, result);
         }
+    }
 
-        if (abort){
-            throw new EBRetryAbortedException(lastError, this);
-        }
-        if (cancel){
-            throw new EBRetryCancelledException("Cancelled");
+    /**
+     * Job calls this callback.
+     * Attempts are started with their own callback, calling this directly completes the current attempt round.
+     *
+     * @param error error causing the job to fail
+     * @param abort if true abort the call.
+     */
+    @Override
+    public void onFail(EBRetryJobError<Error> error, boolean abort) {
+        final Round round = currentRound;
+        if (round == null){
+            onRoundFail(null, error, abort);
+            return;
         }
 
-        // If job is actually blocking, it signalized callback before exiting thus lets check if it is so.
-        if (lastWasSuccess && !cancel){
-            return lastResult;
-        } else {
-            throw new EBRetryFailedException(lastError, this);
+        // Outcome reported directly is the outcome of the primary attempt.
+        final Attempt prim = round.primary;
+        if (round.complete(prim)){
+            if (prim != null){
+                prim.cancelAttempt(false);
+            }
+            onRoundFail(prim, error, abort);
         }
     }
 
     /**
-     * Job calls this callback.
+     * Attempt round finished with success.
+     * @param reporter attempt reporting the outcome, may be null
      * @param result result of the job
      */
-    @Override
-    public void onSuccess(Result result) {
-        signalized = true;
-        lastWasSuccess = true;
+    protected void onRoundSuccess(Attempt reporter, Result result) {
+        // Duplicate callback or the retry was cancelled meanwhile, outcome is not recorded.
+        if (!casState(ST_RUNNING, ST_COMPLETING)){
+            if (reporter != null){
+                reporter.abandonPermit();
+            }
+            return;
+        }
+
+        // Strategy records the outcome with the permit of the reporting attempt.
+        if (reporter != null){
+            reporter.consumePermit();
+        }
+
         lastResult = result;
         lastError = null;
-        running = false;
         retryStrategy.onSuccess();
-        notifyListenerSuccess(result);
+
+        // Volatile write publishes the state above to the waiting thread.
+        finish(ST_COMPLETING, ST_SUCCEEDED, result, null, null);
     }
 
     /**
-     * Job calls this callback.
+     * Attempt round finished with fail.
+     * @param reporter attempt reporting the outcome, may be null
      * @param error error causing the job to fail
      * @param abort if true abort the call.
      */
-    @Override
-    public void onFail(EBRetryJobError<Error> error, boolean abort) {
-        signalized = true;
-        lastWasSuccess = false;
+    protected void onRoundFail(Attempt reporter, EBRetryJobError<Error> error, boolean abort) {
+        // Duplicate callback or the retry was cancelled meanwhile, outcome is not recorded.
+        if (!casState(ST_RUNNING, ST_COMPLETING)){
+            if (reporter != null){
+                reporter.abandonPermit();
+            }
+            return;
+        }
+
+        // Strategy records the outcome with the permit of the reporting attempt.
+        // Attempts rejected locally or by the strategy hold no permit and are not recorded as failures.
+        if (reporter != null){
+            reporter.consumePermit();
+        }
+
         lastError = error;
         lastResult = null;
         attempts += 1;
-        running = false;
         retryStrategy.onFail();
 
+        final int next;
+        long waitMilli = 0;
         if (abort){
-            this.abort = true;
-            notifyListenerFailed(error);
-            return;
+            next = ST_ABORTED;
+        } else if (!retryStrategy.shouldContinue()){
+            next = ST_FAILED;
+        } else if (startedAsBlocking){
+            // Blocking run checks the deadline and the budget in its loop.
+            next = ST_WAITING;
+        } else {
+            // Ask strategy if we are going to wait.
+            // Retry has to fit the deadline and be allowed by the budget.
+            waitMilli = retryStrategy.getWaitMilli();
+            if (!checkDeadline(waitMilli) || !acquireRetry()){
+                next = ST_FAILED;
+            } else {
+                waitingUntilMilli = waitMilli > 0 ? System.currentTimeMillis() + waitMilli : 0;
+                next = ST_WAITING;
+            }
         }
 
-        if (retryStrategy.shouldContinue() || cancel){
-            notifyListenerFailed(error);
+        // Volatile write publishes the state above to the waiting thread.
+        if (next != ST_WAITING){
+            finish(ST_COMPLETING, next, null, error, null);
+            return;
+        }
 
-        } else if (!startedAsBlocking) {
-            // Future-Extension: Notifier can be provided. NotifyMeIn(milli). for now - wait in separate thread.
-            // Ask strategy if we are going to wait.
-            final long waitMilli = retryStrategy.getWaitMilli();
-            waitingUntilMilli = waitMilli > 0 ? System.currentTimeMillis() + waitMilli : 0;
+        // Only this thread can leave the completing state, generation is stable.
+        final int waitingWord = (state & ~ST_MASK) | ST_WAITING;
+        state = waitingWord;
+        signalWaiter();
 
+        if (!startedAsBlocking) {
             // Signalize the job it is about to retry.
             // Job can read waiting until milli or adjust it.
             job.onRetry(this);
 
-            // Start new waiting thread, signalizing onWaitFinished when done.
-            if (waitingUntilMilli > 0) {
-                new WaitThread(this).start();
+            // Schedule onWaitFinished on the shared scheduler.
+            final long untilMilli = waitingUntilMilli;
+            final long delayMilli = untilMilli > 0 ? untilMilli - System.currentTimeMillis() : 0;
+            if (delayMilli > 0) {
+                final WaitTask wait = new WaitTask(waitingWord);
+                pendingWait = wait;
+                wait.schedule(delayMilli);
             } else {
-                onWaitFinished();
+                onWaitFinished(waitingWord);
             }
         }
     }
@@ -235,28 +718,171 @@ public class EBRetry<Result, Error> implements EBCallback<Result,Error> {
      * Called in async run - when waiting was finished.
      */
     public void onWaitFinished() {
-        if (cancel){
-            notifyListenerFailed(null);
+        final int word = state;
+        if (stateOf(word) == ST_WAITING){
+            onWaitFinished(word);
+        }
+    }
+
+    /**
+     * Waiting of the given run finished, starts the next attempt on the executor.
+     * @param waitingWord state word of the waiting run
+     */
+    protected void onWaitFinished(int waitingWord) {
+        // Cancelled while waiting, already notified, or the instance was reused for a later run.
+        final int runningWord = (waitingWord & ~ST_MASK) | ST_RUNNING;
+        if (!STATE_UPDATER.compareAndSet(this, waitingWord, runningWord)){
             return;
         }
 
-        runAsyncInternal();
+        // Attempt may block, never run it on the scheduler thread unless asked to.
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (state == runningWord){
+                    runAsyncInternal();
+                }
+            }
+        });
     }
 
-    public int getAttempts() {
-        return attempts;
+    /**
+     * Cancels the retry. Cancellation token of the running attempt is cancelled, its later callbacks are ignored,
+     * next attempt is not started. If async run is waiting in a backoff interval, waiting is terminated immediately.
+     */
+    public void cancel() {
+        tryCancel(ANY_GENERATION);
     }
 
-    public void reset(){
-        attempts = 0;
-        signalized = false;
-        lastWasSuccess = false;
-        lastResult = null;
-        lastError = null;
-        running = false;
-        cancel = false;
-        abort = false;
-        retryStrategy.reset();
+    /**
+     * Cancels the retry, see {@link #cancel()}.
+     * @return true if this call moved the retry to the cancelled state, false if it was already finished
+     */
+    protected boolean tryCancel() {
+        return tryCancel(ANY_GENERATION);
+    }
+
+    /**
+     * Cancels the given run of the retry, see {@link #cancel()}.
+     *
+     * @param generation generation of the run to cancel, {@link #ANY_GENERATION} for the current one
+     * @return true if this call moved the run to the cancelled state, false if it was already finished
+     */
+    protected boolean tryCancel(int generation) {
+        for(;;){
+            final int word = state;
+            if (generation != ANY_GENERATION && generationOf(word) != generation){
+                // Run already finished, the instance was reset for a later one.
+                return false;
+            }
+
+            switch (stateOf(word)){
+                case ST_IDLE:
+                    if (finishRun(word, ST_CANCELLED, null, null, null)){
+                        return true;
+                    }
+                    break;
+
+                case ST_RUNNING:
+                    // Attempt in flight is abandoned, it is not reported to the strategy as a failure.
+                    if (finishRun(word, ST_CANCELLED, null, null, currentRound)){
+                        return true;
+                    }
+                    break;
+
+                case ST_COMPLETING:
+                    // Round result is being recorded, short window.
+                    Thread.yield();
+                    break;
+
+                case ST_WAITING:
+                    // Cleared first, a run continuing after a lost race clears it by itself.
+                    waitingUntilMilli = 0;
+                    final WaitTask task = pendingWait;
+                    if (finishRun(word, ST_CANCELLED, null, null, null)){
+                        if (task != null){
+                            task.cancel();
+                        }
+                        return true;
+                    }
+                    break;
+
+                default:
+                    // Already finished.
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Skips current backoff waiting interval, if any.
+     */
+    public void runNow() {
+        runNow(ANY_GENERATION);
+    }
+
+    /**
+     * Skips backoff waiting interval of the given run, if it is waiting.
+     * @param generation generation of the run, {@link #ANY_GENERATION} for the current one
+     */
+    protected void runNow(int generation) {
+        if (generation != ANY_GENERATION && generationOf(state) != generation){
+            return;
+        }
+
+        waitingUntilMilli = 0;
+        signalWaiter();
+
+        // Wait task is bound to its run, stale task never skips the wait of a later run.
+        final WaitTask task = pendingWait;
+        if (task != null
+                && (generation == ANY_GENERATION || generationOf(task.word) == generation)
+                && task.cancel()){
+            task.schedule(0);
+        }
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Resets the retry and the retry strategy state in place, so the instance can be reused.
+     * @throws IllegalStateException if the retry is running
+     */
+    public void reset(){
+        for(;;){
+            final int word = state;
+            final int st = stateOf(word);
+            if (st == ST_RUNNING || st == ST_COMPLETING || st == ST_WAITING){
+                throw new IllegalStateException("Retry is running");
+            }
+
+            // New generation detaches futures and wait tasks of the previous run.
+            final int next = (((word >>> ST_BITS) + 1) << ST_BITS) | ST_IDLE;
+            if (STATE_UPDATER.compareAndSet(this, word, next)){
+                break;
+            }
+        }
+
+        final WaitTask wait = pendingWait;
+        if (wait != null){
+            wait.cancel();
+            pendingWait = null;
+        }
+
+        waitingUntilMilli = 0;
+        currentRound = null;
+        attempts = 0;
+        lastResult = null;
+        lastError = null;
+        budgetExhausted = false;
+        deadlineExceeded = false;
+        effectiveDeadline = null;
+        lastAttemptNanos = 0;
+        future = null;
+        completableFuture = null;
+        retryStrategy.reset();
     }
 
     public void addListener(EBRetryListener<Result, Error> listener) {
@@ -271,20 +897,308 @@ public class EBRetry<Result, Error> implements EBCallback<Result,Error> {
         this.job = job;
     }
 
+    /**
+     * Records the first attempt to the budget.
+     */
+    protected void onFirstAttempt() {
+        if (budget != null) {
+            budget.onFirstAttempt();
+        }
+    }
+
+    /**
+     * Asks the budget whether the retry is allowed.
+     * @return true if retry can proceed
+     */
+    protected boolean acquireRetry() {
+        if (budget == null || budget.tryRetry()) {
+            return true;
+        }
+
+        budgetExhausted = true;
+        return false;
+    }
+
+    /**
+     * Checks whether next attempt fits the deadline.
+     * Attempt is skipped if remaining time is shorter than the backoff wait plus the expected attempt latency,
+     * estimated by the latency of the last attempt.
+     *
+     * @param waitMilli backoff wait before the attempt
+     * @return true if attempt can proceed
+     */
+    protected boolean checkDeadline(long waitMilli) {
+        final EBRetryDeadline dl = effectiveDeadline;
+        if (dl == null){
+            return true;
+        }
+
+        final long neededNanos = Math.max(0, waitMilli) * 1000000L + lastAttemptNanos;
+        if (dl.getRemainingNanos() > neededNanos){
+            return true;
+        }
+
+        deadlineExceeded = true;
+        return false;
+    }
+
+    /**
+     * Wakes up thread blocked in {@link #runSync()}, if any.
+     */
+    protected void signalWaiter() {
+        final Thread thread = waiter;
+        if (thread != null) {
+            waitStrategy.signal(thread);
+        }
+    }
+
+    public EBRetryWaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Sets wait strategy used by {@link #runSync()}.
+     * Default is {@link EBRetryWaitStrategyPark}.
+     *
+     * @param waitStrategy wait strategy
+     */
+    public void setWaitStrategy(EBRetryWaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    public Executor getExecutor() {
+        return executor == null ? EBRetryExecutors.getDefaultExecutor() : executor;
+    }
+
+    /**
+     * Sets executor for retried attempts and hedges in async runs.
+     * If null (default), shared {@link EBRetryExecutors#getDefaultExecutor()} is used.
+     * Scheduler threads only run timer callbacks.
+     *
+     * @param executor executor to use
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Configures scheduler and executor for the given execution mode.
+     *
+     * @param mode execution mode
+     */
+    public void setExecutionMode(EBRetryExecutionMode mode) {
+        switch (mode) {
+            case VIRTUAL_THREAD:
+                this.executor = EBRetryExecutors.getVirtualThreadExecutor();
+                break;
+            case DIRECT:
+                this.executor = EBRetryExecutors.getDirectExecutor();
+                break;
+            default:
+                this.executor = null;
+                break;
+        }
+    }
+
+    public EBRetryScheduler getScheduler() {
+        return scheduler == null ? EBRetrySchedulerExecutor.getDefault() : scheduler;
+    }
+
+    /**
+     * Sets scheduler used for backoff waits in async runs.
+     * If not set, shared {@link EBRetrySchedulerExecutor#getDefault()} is used.
+     *
+     * @param scheduler scheduler to use
+     */
+    public void setScheduler(EBRetryScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
     public long getWaitingUntilMilli() {
         return waitingUntilMilli;
     }
 
+    /**
+     * @return true if attempt is in flight or the retry waits for the next attempt
+     */
     public boolean isRunning() {
-        return running;
+        return isRunningState(stateOf(state));
+    }
+
+    /**
+     * @return true if the retry finished, successfully or not
+     */
+    public boolean isDone() {
+        return stateOf(state) >= ST_SUCCEEDED;
+    }
+
+    public boolean isSucceeded() {
+        return stateOf(state) == ST_SUCCEEDED;
     }
 
     public boolean isCancelled() {
-        return cancel;
+        return stateOf(state) == ST_CANCELLED;
     }
 
     public boolean isAborted() {
-        return abort;
+        return stateOf(state) == ST_ABORTED;
+    }
+
+    /**
+     * @param word state word
+     * @return lifecycle state of the state word
+     */
+    protected static int stateOf(int word) {
+        return word & ST_MASK;
+    }
+
+    /**
+     * @param word state word
+     * @return run generation of the state word
+     */
+    protected static int generationOf(int word) {
+        return word >>> ST_BITS;
+    }
+
+    /**
+     * @param st lifecycle state
+     * @return true if attempt is in flight or the retry waits for the next attempt
+     */
+    protected static boolean isRunningState(int st) {
+        return st == ST_RUNNING || st == ST_COMPLETING || st == ST_WAITING;
+    }
+
+    /**
+     * Moves the current run from the expected lifecycle state to the new one.
+     *
+     * @param expected expected lifecycle state
+     * @param update new lifecycle state
+     * @return true if the transition succeeded
+     */
+    protected boolean casState(int expected, int update) {
+        final int word = state;
+        return stateOf(word) == expected && STATE_UPDATER.compareAndSet(this, word, (word & ~ST_MASK) | update);
+    }
+
+    /**
+     * Returns true if the retry was stopped because the shared budget was exhausted,
+     * not because the retry strategy gave up.
+     * @return true if budget was exhausted
+     */
+    public boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    public EBConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Sets adaptive concurrency limiter, typically shared per downstream service.
+     * Attempts over the limit are queued or failed without being dispatched.
+     *
+     * @param limiter limiter, null for no limit
+     */
+    public void setLimiter(EBConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /**
+     * Cancellation token of the primary attempt of the current round.
+     * Attempts are started with their own callback providing their own token.
+     *
+     * @return token or null if no attempt is running
+     */
+    @Override
+    public EBRetryCancellationToken getCancellationToken() {
+        final Round round = currentRound;
+        final Attempt prim = round != null ? round.primary : null;
+        return prim != null ? prim.token : null;
+    }
+
+    /**
+     * Deadline of the current run, the tighter of the configured deadline
+     * and the deadline of the caller, if any.
+     *
+     * @return deadline or null
+     */
+    @Override
+    public EBRetryDeadline getDeadline() {
+        final EBRetryDeadline dl = effectiveDeadline;
+        return dl != null ? dl : deadline;
+    }
+
+    /**
+     * Sets deadline of the whole operation, across all attempts and backoff waits.
+     * If the run is started in the context of another deadline, e.g., from a job of an outer retry,
+     * the tighter one is used.
+     *
+     * @param deadline deadline, null for no deadline
+     */
+    public void setDeadline(EBRetryDeadline deadline) {
+        this.deadline = deadline;
+    }
+
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+
+    public boolean isStacklessExceptions() {
+        return stacklessExceptions;
+    }
+
+    /**
+     * If set, failed runs report stackless exceptions without reference to the retry.
+     * Useful when failures are frequent, e.g., the backend is down, and stack walking is expensive.
+     *
+     * @param stacklessExceptions true to use stackless exceptions
+     */
+    public void setStacklessExceptions(boolean stacklessExceptions) {
+        this.stacklessExceptions = stacklessExceptions;
+    }
+
+    public long getAttemptTimeoutMillis() {
+        return attemptTimeoutMillis;
+    }
+
+    /**
+     * Sets timeout of one attempt. Attempt not calling back in time is failed as retryable
+     * with {@link EBRetryAttemptTimeoutException}, its late callbacks are ignored.
+     * Timeouts are driven by the retry scheduler.
+     *
+     * @param attemptTimeoutMillis timeout in milliseconds, 0 for no timeout
+     */
+    public void setAttemptTimeoutMillis(long attemptTimeoutMillis) {
+        if (attemptTimeoutMillis < 0){
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+        this.attemptTimeoutMillis = attemptTimeoutMillis;
+    }
+
+    public EBRetryHedging getHedging() {
+        return hedging;
+    }
+
+    /**
+     * Sets hedging policy. If the attempt does not call back within the hedge delay,
+     * speculative duplicate attempt is launched.
+     *
+     * @param hedging hedging policy, null to disable hedging
+     */
+    public void setHedging(EBRetryHedging hedging) {
+        this.hedging = hedging;
+    }
+
+    public EBRetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets retry budget, may be shared by multiple retry instances.
+     * @param budget budget, null for no budget
+     */
+    public void setBudget(EBRetryBudget budget) {
+        this.budget = budget;
     }
 
     public JSONObject toJSON(JSONObject json) {
@@ -293,7 +1207,7 @@ public class EBRetry<Result, Error> implements EBCallback<Result,Error> {
         }
 
         json.put(FIELD_STRATEGY_TYPE, retryStrategy.getName());
-        json.put(FIELD_STRATEGY_DATA, retryStrategy.toJSON(null));
+        json.put(FIELD_STRATEGY_DATA, EBRetryStrategyRegistry.getDefault().toJSON(retryStrategy, null));
         return json;
     }
 
@@ -308,6 +1222,75 @@ public class EBRetry<Result, Error> implements EBCallback<Result,Error> {
         retryStrategy = EBRetryStrategyFactory.getByName(type, config);
     }
 
+    /**
+     * Moves the retry to the terminal state, notifies listeners and completes futures.
+     * Futures of the run are read before the state transition as the instance may be reused right after it.
+     *
+     * @param expected expected current state
+     * @param terminal terminal state
+     * @param result result on success
+     * @param error error on fail
+     * @param abandon round to complete after the transition, may be null
+     * @return true if the transition succeeded
+     */
+    protected boolean finish(int expected, int terminal, Result result, EBRetryJobError<Error> error, Round abandon){
+        final int word = state;
+        return stateOf(word) == expected && finishRun(word, terminal, result, error, abandon);
+    }
+
+    /**
+     * Moves the run identified by the state word to the terminal state, see {@link #finish}.
+     *
+     * @param word expected state word, lifecycle state and generation
+     * @param terminal terminal state
+     * @param result result on success
+     * @param error error on fail
+     * @param abandon round to complete after the transition, may be null
+     * @return true if the transition succeeded
+     */
+    protected boolean finishRun(int word, int terminal, Result result, EBRetryJobError<Error> error, Round abandon){
+        // Futures are set before the run leaves the idle state, the word read by the caller pins the run.
+        final RetryFuture retryFuture = future;
+        final CompletableFuture<Result> compFuture = completableFuture;
+        final EBRetryException exception = terminal == ST_SUCCEEDED || (retryFuture == null && compFuture == null)
+                ? null
+                : getFailException(terminal);
+
+        if (!STATE_UPDATER.compareAndSet(this, word, (word & ~ST_MASK) | terminal)){
+            return false;
+        }
+
+        if (abandon != null){
+            abandon.complete(null);
+        }
+
+        signalWaiter();
+        if (terminal == ST_SUCCEEDED){
+            notifyListenerSuccess(result);
+            if (retryFuture != null){
+                retryFuture.complete(result, null, false);
+            }
+            if (compFuture != null){
+                compFuture.complete(result);
+            }
+
+        } else {
+            final boolean cancelled = terminal == ST_CANCELLED;
+            notifyListenerFailed(error);
+            if (retryFuture != null){
+                retryFuture.complete(null, exception, cancelled);
+            }
+            if (compFuture != null){
+                if (cancelled){
+                    compFuture.cancel(false);
+                } else {
+                    compFuture.completeExceptionally(exception);
+                }
+            }
+        }
+        return true;
+    }
+
     protected void notifyListenerSuccess(Result result){
         for (EBRetryListener<Result, Error> listener : listeners) {
             listener.onSuccess(result, this);
@@ -320,9 +1303,488 @@ public class EBRetry<Result, Error> implements EBCallback<Result,Error> {
         }
     }
 
+    /**
+     * One invocation of the job, the callback passed to {@link EBRetryJob#runAsync(EBCallback)}.
+     * Only the first callback of the attempt is taken into account, duplicate and late callbacks are dropped.
+     */
+    protected class Attempt implements EBCallback<Result, Error>, Runnable {
+        protected final Round round;
+        protected final EBConcurrencyLimiter limiter;
+        protected final EBRetryJob<Result, Error> attemptJob = job;
+        protected final AtomicBoolean finished = new AtomicBoolean(false);
+        protected final AtomicBoolean strategyPermit = new AtomicBoolean(false);
+        protected final EBRetryCancellationToken token = new EBRetryCancellationToken();
+        protected volatile long startNanos;
+        protected volatile boolean permit;
+        protected volatile boolean dispatched;
+        protected volatile EBRetryScheduledTask timeoutTask;
+
+        public Attempt(Round round, EBConcurrencyLimiter limiter) {
+            this.round = round;
+            this.limiter = limiter;
+        }
+
+        /**
+         * Runs the job. If limiter is set, attempt holds its permit.
+         */
+        @Override
+        public void run() {
+            startNanos = System.nanoTime();
+            permit = limiter != null;
+            dispatched = true;
+
+            // Timed out or cancelled while waiting in the limiter queue.
+            if (finished.get()){
+                releaseUnused();
+                return;
+            }
+
+            // Attempt may have waited in the limiter queue, do not dispatch it if no longer needed.
+            if (round.isCompleted() || stateOf(state) != ST_RUNNING){
+                releaseUnused();
+                onFail(new EBRetryJobError<Error>(new EBRetryAttemptRejectedException("Cancelled")), false);
+                return;
+            }
+
+            // Strategy may reject the attempt, e.g., open circuit. Fail fast without running the job.
+            // Asked only after the local checks passed, so local rejections never take a permit.
+            if (!retryStrategy.onAttempt()){
+                releaseUnused();
+                onFail(new EBRetryJobError<Error>(new EBRetryAttemptRejectedException("Attempt rejected by " + retryStrategy.getName())), false);
+                return;
+            }
+
+            strategyPermit.set(true);
+            if (finished.get()){
+                // Abandoned meanwhile, e.g., the retry was cancelled.
+                abandonPermit();
+                return;
+            }
+
+            final EBRetryDeadline dl = effectiveDeadline;
+            if (dl == null){
+                attemptJob.runAsync(this);
+                return;
+            }
+
+            // Nested retries started by the job inherit the deadline.
+            final EBRetryDeadline previous = EBRetryDeadline.attach(dl);
+            try {
+                attemptJob.runAsync(this);
+            } finally {
+                EBRetryDeadline.restore(previous);
+            }
+        }
+
+        /**
+         * Arms the attempt timeout, capped by the deadline. Called before the attempt is dispatched or queued.
+         */
+        protected void armTimeout() {
+            final EBRetryDeadline dl = effectiveDeadline;
+            long timeout = attemptTimeoutMillis;
+            if (dl != null){
+                final long remaining = Math.max(1, dl.getRemainingMillis());
+                timeout = timeout > 0 ? Math.min(timeout, remaining) : remaining;
+            }
+
+            if (timeout <= 0){
+                return;
+            }
+
+            final long timeoutMillis = timeout;
+            timeoutTask = getScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onTimeout(timeoutMillis);
+                }
+            }, timeout);
+
+            // Finished before the timer was set, e.g., rejected by the limiter.
+            if (finished.get()){
+                cancelTimeout();
+            }
+        }
+
+        @Override
+        public void onSuccess(Result result) {
+            if (finished.compareAndSet(false, true)){
+                cancelTimeout();
+                onAttemptSuccess(this, result);
+            }
+        }
+
+        @Override
+        public void onFail(EBRetryJobError<Error> error, boolean abort) {
+            if (finished.compareAndSet(false, true)){
+                cancelTimeout();
+                onAttemptFail(this, error, abort);
+            }
+        }
+
+        /**
+         * Attempt did not call back in time. Fails the attempt as retryable, later callbacks are dropped.
+         */
+        protected void onTimeout(long timeoutMillis) {
+            if (!finished.compareAndSet(false, true)){
+                return;
+            }
+
+            dequeue();
+            cancelJobAttempt();
+            token.cancel();
+            onAttemptFail(this, new EBRetryJobError<Error>(
+                    new EBRetryAttemptTimeoutException("Attempt timed out after " + timeoutMillis + " ms")), false);
+        }
+
+        @Override
+        public EBRetryDeadline getDeadline() {
+            return effectiveDeadline;
+        }
+
+        @Override
+        public EBRetryCancellationToken getCancellationToken() {
+            return token;
+        }
+
+        protected void cancelTimeout() {
+            final EBRetryScheduledTask task = timeoutTask;
+            if (task != null){
+                task.cancel();
+            }
+        }
+
+        protected void cancelJobAttempt() {
+            if (attemptJob instanceof EBRetryJobCancellable){
+                ((EBRetryJobCancellable<Result, Error>) attemptJob).cancelAttempt(this);
+            }
+        }
+
+        /**
+         * Cancels losing attempt, its later callbacks are ignored.
+         * @param releasePermit true to return the strategy permit, false if the outcome is reported with it
+         */
+        protected void cancelAttempt(boolean releasePermit) {
+            if (!finished.compareAndSet(false, true)){
+                return;
+            }
+
+            cancelTimeout();
+            dequeue();
+            releaseUnused();
+            if (releasePermit){
+                abandonPermit();
+            }
+            cancelJobAttempt();
+            token.cancel();
+        }
+
+        /**
+         * Removes finished attempt still waiting in the limiter queue, so it does not occupy the queue.
+         */
+        protected void dequeue() {
+            if (!dispatched && limiter != null){
+                limiter.remove(this);
+            }
+        }
+
+        /**
+         * Returns the strategy permit of the attempt, if held, e.g., the open circuit half-open permit.
+         */
+        protected void abandonPermit() {
+            if (strategyPermit.compareAndSet(true, false)){
+                retryStrategy.onAttemptAbandoned();
+            }
+        }
+
+        /**
+         * Strategy permit of the attempt is used to record the round outcome.
+         */
+        protected void consumePermit() {
+            strategyPermit.set(false);
+        }
+
+        /**
+         * Releases the limiter permit, if held, without updating the limit estimate.
+         */
+        protected void releaseUnused() {
+            if (permit){
+                permit = false;
+                limiter.releaseUnused();
+            }
+        }
+
+        /**
+         * Releases the limiter permit, if held.
+         * @param failed true if attempt failed
+         * @return latency of the attempt in nanoseconds
+         */
+        protected long release(boolean failed) {
+            final long latency = System.nanoTime() - startNanos;
+            if (permit){
+                permit = false;
+                limiter.release(latency, failed);
+            }
+            return latency;
+        }
+    }
+
+    /**
+     * One attempt round: primary attempt and its speculative hedges.
+     * Round is completed exactly once, by the first success, by the abort, or when all attempts failed.
+     */
+    protected class Round implements Runnable {
+        protected final AtomicBoolean completed = new AtomicBoolean(false);
+        protected final AtomicInteger pending = new AtomicInteger(0);
+        protected volatile Attempt primary;
+        protected final List<Attempt> hedges = new CopyOnWriteArrayList<Attempt>();
+        protected volatile EBRetryScheduledTask hedgeTask;
+        protected int hedgeCount = 0;
+
+        protected void addAttempt(Attempt attempt, boolean hedge) {
+            pending.incrementAndGet();
+            if (!hedge){
+                primary = attempt;
+                final EBRetryHedging hedg = hedging;
+                if (hedg != null){
+                    hedg.onPrimaryAttempt();
+                }
+                return;
+            }
+
+            hedges.add(attempt);
+
+            // Round completed before the hedge was listed, complete() did not see it.
+            if (isCompleted()){
+                attempt.cancelAttempt(true);
+            }
+        }
+
+        /**
+         * @return number of attempts still running
+         */
+        protected int onAttemptFinished() {
+            return pending.decrementAndGet();
+        }
+
+        protected boolean isCompleted() {
+            return completed.get();
+        }
+
+        /**
+         * Completes the round, cancels pending hedge and losing attempts.
+         *
+         * @param winner attempt completing the round, may be null
+         * @return true if completed by this call
+         */
+        protected boolean complete(Attempt winner) {
+            if (!completed.compareAndSet(false, true)){
+                return false;
+            }
+
+            final EBRetryScheduledTask task = hedgeTask;
+            if (task != null){
+                task.cancel();
+            }
+
+            final Attempt prim = primary;
+            if (prim != null && prim != winner){
+                prim.cancelAttempt(true);
+            }
+
+            for (Attempt attempt : hedges) {
+                if (attempt != winner){
+                    attempt.cancelAttempt(true);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Schedules next hedge if hedging is enabled.
+         */
+        protected void scheduleHedge() {
+            final EBRetryHedging hedg = hedging;
+            if (hedg == null || hedgeCount >= hedg.getMaxHedges() || isCompleted()){
+                return;
+            }
+
+            hedgeTask = getScheduler().schedule(this, hedg.getDelayMillis());
+        }
+
+        /**
+         * Hedge delay elapsed without the round being completed.
+         */
+        @Override
+        public void run() {
+            final EBRetryHedging hedg = hedging;
+            if (hedg == null || isCompleted() || stateOf(state) != ST_RUNNING || hedgeCount >= hedg.getMaxHedges()){
+                return;
+            }
+            if (!hedg.tryHedge()){
+                return;
+            }
+
+            hedgeCount += 1;
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    dispatchAttempt(Round.this, true);
+                }
+            });
+
+            scheduleHedge();
+        }
+    }
+
+    /**
+     * Backoff wait of one async run, scheduled on the scheduler.
+     * Bound to the state word of the waiting run, so it never wakes up a later run of a reused instance.
+     */
+    protected class WaitTask implements Runnable, EBRetryScheduledTask {
+        protected final int word;
+        protected volatile EBRetryScheduledTask handle;
+
+        public WaitTask(int word) {
+            this.word = word;
+        }
+
+        /**
+         * Schedules the wait. If the run stopped waiting meanwhile, the timer is cancelled right away.
+         * @param delayMilli delay in milliseconds
+         */
+        protected void schedule(long delayMilli) {
+            final EBRetryScheduledTask task = getScheduler().schedule(this, delayMilli);
+            handle = task;
+            if (state != word){
+                task.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            onWaitFinished(word);
+        }
+
+        @Override
+        public boolean cancel() {
+            final EBRetryScheduledTask task = handle;
+            return task != null && task.cancel();
+        }
+
+        @Override
+        public boolean isDone() {
+            final EBRetryScheduledTask task = handle;
+            return task != null && task.isDone();
+        }
+    }
+
+    /**
+     * Future returned by {@link #runAsync()}.
+     * Blocking {@link #get()} waits on a latch released by the terminal success / fail notification.
+     */
+    protected class RetryFuture implements EBFuture<Result, Error> {
+        protected final int generation;
+        protected final CountDownLatch latch = new CountDownLatch(1);
+        protected final AtomicBoolean completed = new AtomicBoolean(false);
+        protected volatile boolean cancelled;
+        protected Result result;
+        protected EBRetryException exception;
+
+        /**
+         * @param generation generation of the run the future belongs to
+         */
+        public RetryFuture(int generation) {
+            this.generation = generation;
+        }
+
+        /**
+         * Completes the future, only the first completion is taken into account.
+         *
+         * @param result result on success
+         * @param exception exception on fail
+         * @param cancelled true if retry was cancelled
+         * @return true if completed by this call
+         */
+        protected boolean complete(Result result, EBRetryException exception, boolean cancelled) {
+            if (!completed.compareAndSet(false, true)) {
+                return false;
+            }
+
+            this.result = result;
+            this.exception = exception;
+            this.cancelled = cancelled;
+            latch.countDown();
+            return true;
+        }
+
+        @Override
+        public boolean isRunning() {
+            final int word = state;
+            return generationOf(word) == generation && isRunningState(stateOf(word));
+        }
+
+        @Override
+        public boolean isDone() {
+            return latch.getCount() == 0;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void cancel() {
+            tryCancel(generation);
+        }
+
+        /**
+         * Cancels the retry. Running attempt is not interrupted, its cancellation token is cancelled.
+         * @return true if this call cancelled the retry, false if it was already finished
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            // Terminal transition completes this future.
+            return tryCancel(generation);
+        }
+
+        @Override
+        public void runNow() {
+            EBRetry.this.runNow(generation);
+        }
+
+        @Override
+        public Result get() throws InterruptedException, ExecutionException {
+            latch.await();
+            return report();
+        }
+
+        @Override
+        public Result get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!latch.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+
+            return report();
+        }
+
+        protected Result report() throws ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (exception != null) {
+                throw new ExecutionException(exception);
+            }
+
+            return result;
+        }
+    }
+
     /**
      * Simple notify me in thread.
+     * @deprecated async waits are scheduled on {@link EBRetryScheduler}, see {@link #setScheduler(EBRetryScheduler)}.
      */
+    @Deprecated
     public static class WaitThread extends Thread {
         protected EBRetry retry;
 
@@ -0,0 +1,17 @@
+package com.enigmabridge.retry;
+
+/**
+ * Job error cause used when the attempt was cancelled through its {@link EBRetryCancellationToken}.
+ */
+public class EBRetryAttemptCancelledException extends EBRetryJobException {
+    public EBRetryAttemptCancelledException() {
+    }
+
+    public EBRetryAttemptCancelledException(String message) {
+        super(message);
+    }
+
+    public EBRetryAttemptCancelledException(String message, Object error) {
+        super(message, error);
+    }
+}
@@ -0,0 +1,18 @@
+package com.enigmabridge.retry;
+
+/**
+ * Job error cause used when the attempt was not executed at all, e.g., circuit breaker is open.
+ * Such attempts are failed fast by the retry mechanism without invoking the job.
+ */
+public class EBRetryAttemptRejectedException extends EBRetryJobException {
+    public EBRetryAttemptRejectedException() {
+    }
+
+    public EBRetryAttemptRejectedException(String message) {
+        super(message);
+    }
+
+    public EBRetryAttemptRejectedException(String message, Object error) {
+        super(message, error);
+    }
+}
@@ -0,0 +1,18 @@
+package com.enigmabridge.retry;
+
+/**
+ * Job error cause used when the attempt did not call back within the attempt timeout.
+ * Timed out attempt is failed as retryable, its late callbacks are ignored.
+ */
+public class EBRetryAttemptTimeoutException extends EBRetryJobException {
+    public EBRetryAttemptTimeoutException() {
+    }
+
+    public EBRetryAttemptTimeoutException(String message) {
+        super(message);
+    }
+
+    public EBRetryAttemptTimeoutException(String message, Object error) {
+        super(message, error);
+    }
+}
@@ -0,0 +1,862 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact versioned binary form of the retry strategy - its type, configuration and execution state.
+ * Suitable for persisting large number of pending retries, much smaller and faster than the JSON form.
+ * <p>
+ * Layout: version byte, strategy name, flags, configuration, optional state. Built-in providers write
+ * the configuration in binary with default values omitted, providers without a binary codec
+ * (see {@link EBRetryStrategyProvider#writeBinary(EBRetryStrategy, DataOutput)}) are stored as JSON.
+ * Integers are stored as variable length, signed ones zig-zag encoded.
+ * </p>
+ * <p>
+ * State holds the number of failed attempts, the current interval, the previous wait and the elapsed time.
+ * The elapsed time is restored relative to the time of decoding. Position of the seeded random generator
+ * is not stored, the restored state gets a new generator split from the seeded policy.
+ * State of a strategy wrapped by {@link EBRetryStrategyCircuitBreaker} is the state of its delegate.
+ * </p>
+ * <p>
+ * Decoded policies are interned in the {@link EBRetryPolicyCache} of the registry, so many restored
+ * retries with the same configuration share one policy instance.
+ * </p>
+ */
+public class EBRetryBinaryCodec {
+    /**
+     * Current version of the format.
+     */
+    public static final int VERSION = 1;
+
+    private static final int FLAG_BINARY_CONFIG = 1;
+    private static final int FLAG_JSON_CONFIG = 2;
+    private static final int FLAG_STATE = 4;
+
+    /**
+     * Strings longer than this are read from a stream in chunks, the declared length is not trusted.
+     */
+    private static final int STRING_CHUNK = 8192;
+
+    private EBRetryBinaryCodec() {
+    }
+
+    /**
+     * Serializes the strategy using the default registry.
+     *
+     * @param strategy strategy
+     * @return bytes
+     */
+    public static byte[] toBytes(EBRetryStrategy strategy) {
+        // Encoded through a buffer, grown on overflow. Most strategies fit the initial one.
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        for (;;) {
+            try {
+                write(strategy, buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Deserializes the strategy using the default registry.
+     *
+     * @param bytes bytes produced by {@link #toBytes(EBRetryStrategy)}
+     * @return strategy
+     * @throws IOException if the data is malformed
+     */
+    public static EBRetryStrategy fromBytes(byte[] bytes) throws IOException {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Writes the strategy to the buffer, directly, without an intermediate array.
+     *
+     * @param strategy strategy
+     * @param buffer target buffer
+     * @throws java.nio.BufferOverflowException if the buffer is too small, the position is not changed
+     */
+    public static void write(EBRetryStrategy strategy, ByteBuffer buffer) {
+        write(strategy, buffer, EBRetryStrategyRegistry.getDefault());
+    }
+
+    /**
+     * Writes the strategy to the buffer, directly, without an intermediate array.
+     *
+     * @param strategy strategy
+     * @param buffer target buffer
+     * @param registry registry of the strategy providers
+     * @throws java.nio.BufferOverflowException if the buffer is too small, the position is not changed
+     */
+    public static void write(EBRetryStrategy strategy, ByteBuffer buffer, EBRetryStrategyRegistry registry) {
+        final int start = buffer.position();
+        final ByteBufferOutput out = new ByteBufferOutput(buffer);
+        try {
+            final String name = strategy.getName();
+            final EBRetryStrategyProvider provider = registry.get(name);
+
+            out.writeByte(VERSION);
+            writeString(out, name);
+
+            // Flags are known once the configuration is written, patched afterwards.
+            final int flagsPosition = buffer.position();
+            out.writeByte(0);
+
+            int flags = FLAG_JSON_CONFIG;
+            if (provider != null && provider.writeBinary(strategy, out)) {
+                flags = FLAG_BINARY_CONFIG;
+            } else {
+                buffer.position(flagsPosition + 1);
+                writeString(out, jsonConfig(strategy, provider).toString());
+            }
+
+            buffer.put(flagsPosition, (byte) (flags | stateFlag(strategy)));
+            writeStateOf(out, strategy);
+
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            throw e;
+        } catch (IOException e) {
+            buffer.position(start);
+            throw new IllegalStateException("Serialization failed", e);
+        }
+    }
+
+    /**
+     * Reads the strategy from the buffer, directly, advances the position.
+     *
+     * @param buffer buffer
+     * @return strategy
+     * @throws IOException if the data is malformed, the position is not changed
+     */
+    public static EBRetryStrategy read(ByteBuffer buffer) throws IOException {
+        return read(buffer, EBRetryStrategyRegistry.getDefault());
+    }
+
+    /**
+     * Reads the strategy from the buffer, directly, advances the position.
+     *
+     * @param buffer buffer
+     * @param registry registry of the strategy providers
+     * @return strategy
+     * @throws IOException if the data is malformed, the position is not changed
+     */
+    public static EBRetryStrategy read(ByteBuffer buffer, EBRetryStrategyRegistry registry) throws IOException {
+        final int start = buffer.position();
+        try {
+            return read(new ByteBufferInput(buffer), registry);
+        } catch (IOException e) {
+            buffer.position(start);
+            throw e;
+        } catch (RuntimeException e) {
+            buffer.position(start);
+            throw e;
+        }
+    }
+
+    public static void write(EBRetryStrategy strategy, DataOutput out) throws IOException {
+        write(strategy, out, EBRetryStrategyRegistry.getDefault());
+    }
+
+    public static EBRetryStrategy read(DataInput in) throws IOException {
+        return read(in, EBRetryStrategyRegistry.getDefault());
+    }
+
+    /**
+     * Writes the strategy.
+     *
+     * @param strategy strategy
+     * @param out output
+     * @param registry registry of the strategy providers
+     * @throws IOException on write error
+     */
+    public static void write(EBRetryStrategy strategy, DataOutput out, EBRetryStrategyRegistry registry) throws IOException {
+        final String name = strategy.getName();
+        final EBRetryStrategyProvider provider = registry.get(name);
+
+        // Configuration is serialized first so the flags are known.
+        final ByteArrayOutputStream config = new ByteArrayOutputStream(32);
+        final DataOutputStream configOut = new DataOutputStream(config);
+        int flags = FLAG_JSON_CONFIG;
+        if (provider != null && provider.writeBinary(strategy, configOut)) {
+            flags = FLAG_BINARY_CONFIG;
+        } else {
+            config.reset();
+            writeString(configOut, jsonConfig(strategy, provider).toString());
+        }
+
+        out.writeByte(VERSION);
+        writeString(out, name);
+        out.writeByte(flags | stateFlag(strategy));
+        configOut.flush();
+        out.write(config.toByteArray());
+        writeStateOf(out, strategy);
+    }
+
+    private static JSONObject jsonConfig(EBRetryStrategy strategy, EBRetryStrategyProvider provider) {
+        return provider != null ? provider.toJSON(strategy, null) : strategy.toJSON(null);
+    }
+
+    private static int stateFlag(EBRetryStrategy strategy) {
+        final EBRetryStrategy holder = stateHolder(strategy);
+        return stateOf(holder) != null || holder instanceof EBRetryStrategySimple ? FLAG_STATE : 0;
+    }
+
+    private static void writeStateOf(DataOutput out, EBRetryStrategy strategy) throws IOException {
+        final EBRetryStrategy holder = stateHolder(strategy);
+        final EBRetryState state = stateOf(holder);
+        if (state != null) {
+            writeState(out, state);
+        } else if (holder instanceof EBRetryStrategySimple) {
+            writeSimpleState(out, ((EBRetryStrategySimple) holder).attempts);
+        }
+    }
+
+    /**
+     * Reads the strategy.
+     *
+     * @param in input
+     * @param registry registry of the strategy providers
+     * @return strategy
+     * @throws IOException if the data is malformed or the strategy is unknown
+     */
+    public static EBRetryStrategy read(DataInput in, EBRetryStrategyRegistry registry) throws IOException {
+        final int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+
+        final String name = readString(in);
+        final int flags = in.readUnsignedByte();
+        final EBRetryStrategy strategy;
+        try {
+            if ((flags & FLAG_BINARY_CONFIG) != 0) {
+                final EBRetryStrategyProvider provider = registry.get(name);
+                if (provider == null) {
+                    throw new IOException("Unknown strategy type " + name);
+                }
+
+                final int configPosition = in instanceof ByteBufferInput ? ((ByteBufferInput) in).buffer.position() : -1;
+                strategy = intern(provider.readBinary(in), provider, registry.getCache(), in, configPosition);
+
+            } else if ((flags & FLAG_JSON_CONFIG) != 0) {
+                strategy = registry.fromJSON(name, new JSONObject(readString(in)));
+
+            } else {
+                throw new IOException("Invalid flags");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid configuration of " + name, e);
+        }
+
+        if ((flags & FLAG_STATE) != 0) {
+            final EBRetryStrategy holder = stateHolder(strategy);
+            final EBRetryState state = stateOf(holder);
+            if (state != null) {
+                readState(in, state);
+            } else if (holder instanceof EBRetryStrategySimple) {
+                ((EBRetryStrategySimple) holder).attempts = readSimpleState(in);
+            } else {
+                throw new IOException("Strategy has no state");
+            }
+        }
+
+        return strategy;
+    }
+
+    /**
+     * Replaces the decoded policy by the interned one, keyed by the binary configuration.
+     * Configuration read from a buffer is copied from it, otherwise the policy is encoded again.
+     *
+     * @param decoded decoded strategy
+     * @param provider provider which decoded the strategy
+     * @param cache policy cache, may be null
+     * @param in input the configuration was read from
+     * @param configPosition buffer position of the configuration, -1 if not read from a buffer
+     * @return strategy backed by the interned policy
+     */
+    private static EBRetryStrategy intern(EBRetryStrategy decoded, EBRetryStrategyProvider provider,
+                                          EBRetryPolicyCache cache, DataInput in, int configPosition) throws IOException {
+        final EBRetryPolicy policy = policyOf(decoded);
+        if (cache == null || policy == null) {
+            return decoded;
+        }
+
+        final byte[] config;
+        if (configPosition >= 0) {
+            final ByteBuffer buffer = ((ByteBufferInput) in).buffer;
+            config = new byte[buffer.position() - configPosition];
+            for (int i = 0; i < config.length; i++) {
+                config[i] = buffer.get(configPosition + i);
+            }
+        } else {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream(32);
+            if (!provider.writeBinary(decoded, new DataOutputStream(bos))) {
+                return decoded;
+            }
+            config = bos.toByteArray();
+        }
+
+        final EBRetryPolicy interned = cache.intern(provider, config, policy);
+        return interned == policy ? decoded : provider.fromPolicy(interned);
+    }
+
+    /**
+     * Returns the strategy holding the execution state, the delegate of the circuit breaker.
+     * @param strategy strategy
+     * @return state holder
+     */
+    static EBRetryStrategy stateHolder(EBRetryStrategy strategy) {
+        while (strategy instanceof EBRetryStrategyCircuitBreaker) {
+            strategy = ((EBRetryStrategyCircuitBreaker) strategy).getDelegate();
+        }
+        return strategy;
+    }
+
+    /**
+     * Returns policy of the policy backed strategy.
+     * @param strategy strategy
+     * @return policy or null
+     */
+    static EBRetryPolicy policyOf(EBRetryStrategy strategy) {
+        if (strategy instanceof EBRetryStrategyPolicy) {
+            return ((EBRetryStrategyPolicy) strategy).getPolicy();
+        } else if (strategy instanceof EBRetryStrategyBackoff) {
+            return ((EBRetryStrategyBackoff) strategy).getPolicy();
+        }
+        return null;
+    }
+
+    static EBRetryState stateOf(EBRetryStrategy strategy) {
+        if (strategy instanceof EBRetryStrategyPolicy) {
+            return ((EBRetryStrategyPolicy) strategy).getState();
+        } else if (strategy instanceof EBRetryStrategyBackoff) {
+            return ((EBRetryStrategyBackoff) strategy).getState();
+        }
+        return null;
+    }
+
+    // State
+
+    private static void writeState(DataOutput out, EBRetryState state) throws IOException {
+        writeVarLong(out, zigZag(state.attempts));
+        writeVarLong(out, zigZag(state.intervalMillis));
+        writeVarLong(out, zigZag(state.prevWaitMillis));
+        writeVarLong(out, Math.max(0, state.getElapsedTimeMillis()));
+        if (state instanceof EBRetryPolicyComposite.State) {
+            final EBRetryPolicyComposite.State composite = (EBRetryPolicyComposite.State) state;
+            writeVarLong(out, composite.stage);
+            writeVarLong(out, composite.states.length);
+            for (EBRetryState sub : composite.states) {
+                writeState(out, sub);
+            }
+        }
+    }
+
+    private static void readState(DataInput in, EBRetryState state) throws IOException {
+        state.attempts = (int) unZigZag(readVarLong(in));
+        state.intervalMillis = (int) unZigZag(readVarLong(in));
+        state.prevWaitMillis = unZigZag(readVarLong(in));
+        state.startNanos = System.nanoTime() - readVarLong(in) * 1000000L;
+        if (state instanceof EBRetryPolicyComposite.State) {
+            final EBRetryPolicyComposite.State composite = (EBRetryPolicyComposite.State) state;
+            final long stage = readVarLong(in);
+            final long count = readVarLong(in);
+            if (count != composite.states.length || stage < 0 || stage >= count) {
+                throw new IOException("State does not match the policy");
+            }
+
+            composite.stage = (int) stage;
+            for (EBRetryState sub : composite.states) {
+                readState(in, sub);
+            }
+        }
+    }
+
+    private static void writeSimpleState(DataOutput out, int attempts) throws IOException {
+        writeVarLong(out, zigZag(attempts));
+    }
+
+    private static int readSimpleState(DataInput in) throws IOException {
+        return (int) unZigZag(readVarLong(in));
+    }
+
+    // Built-in configurations. Enum ordinals are part of the format, append new values only.
+
+    private static final int BO_INITIAL = 1;
+    private static final int BO_RAND = 2;
+    private static final int BO_MULT = 4;
+    private static final int BO_MAX_INTERVAL = 8;
+    private static final int BO_MAX_ELAPSED = 16;
+    private static final int BO_MAX_ATTEMPTS = 32;
+    private static final int BO_JITTER = 64;
+    private static final int BO_SEED = 128;
+
+    static void writeBackoff(DataOutput out, EBRetryPolicyBackoff p) throws IOException {
+        int mask = 0;
+        mask |= p.getInitialIntervalMillis() != EBRetryStrategyBackoff.DEFAULT_INITIAL_INTERVAL_MILLIS ? BO_INITIAL : 0;
+        mask |= p.getRandomizationFactor() != EBRetryStrategyBackoff.DEFAULT_RANDOMIZATION_FACTOR ? BO_RAND : 0;
+        mask |= p.getMultiplier() != EBRetryStrategyBackoff.DEFAULT_MULTIPLIER ? BO_MULT : 0;
+        mask |= p.getMaxIntervalMillis() != EBRetryStrategyBackoff.DEFAULT_MAX_INTERVAL_MILLIS ? BO_MAX_INTERVAL : 0;
+        mask |= p.getMaxElapsedTimeMillis() != EBRetryStrategyBackoff.DEFAULT_MAX_ELAPSED_TIME_MILLIS ? BO_MAX_ELAPSED : 0;
+        mask |= p.getMaxAttempts() != EBRetryStrategyBackoff.DEFAULT_MAX_ATTEMPTS ? BO_MAX_ATTEMPTS : 0;
+        mask |= p.getJitter() != EBRetryStrategyBackoff.DEFAULT_JITTER ? BO_JITTER : 0;
+        mask |= p.getSeed() != null ? BO_SEED : 0;
+
+        out.writeByte(mask);
+        if ((mask & BO_INITIAL) != 0) writeVarLong(out, zigZag(p.getInitialIntervalMillis()));
+        if ((mask & BO_RAND) != 0) out.writeDouble(p.getRandomizationFactor());
+        if ((mask & BO_MULT) != 0) out.writeDouble(p.getMultiplier());
+        if ((mask & BO_MAX_INTERVAL) != 0) writeVarLong(out, zigZag(p.getMaxIntervalMillis()));
+        if ((mask & BO_MAX_ELAPSED) != 0) writeVarLong(out, zigZag(p.getMaxElapsedTimeMillis()));
+        if ((mask & BO_MAX_ATTEMPTS) != 0) writeVarLong(out, zigZag(p.getMaxAttempts()));
+        if ((mask & BO_JITTER) != 0) out.writeByte(p.getJitter().ordinal());
+        if ((mask & BO_SEED) != 0) out.writeLong(p.getSeed());
+    }
+
+    static EBRetryPolicyBackoff readBackoff(DataInput in) throws IOException {
+        final int mask = in.readUnsignedByte();
+        final EBRetryStrategyBackoff.Builder b = new EBRetryStrategyBackoff.Builder();
+        if ((mask & BO_INITIAL) != 0) b.setInitialIntervalMillis((int) unZigZag(readVarLong(in)));
+        if ((mask & BO_RAND) != 0) b.setRandomizationFactor(in.readDouble());
+        if ((mask & BO_MULT) != 0) b.setMultiplier(in.readDouble());
+        if ((mask & BO_MAX_INTERVAL) != 0) b.setMaxIntervalMillis((int) unZigZag(readVarLong(in)));
+        if ((mask & BO_MAX_ELAPSED) != 0) b.setMaxElapsedTimeMillis((int) unZigZag(readVarLong(in)));
+        if ((mask & BO_MAX_ATTEMPTS) != 0) b.setMaxAttempts((int) unZigZag(readVarLong(in)));
+        if ((mask & BO_JITTER) != 0) b.setJitter(readJitter(in));
+        if ((mask & BO_SEED) != 0) b.setSeed(in.readLong());
+        return b.buildPolicy();
+    }
+
+    private static final int IN_INITIAL = 1;
+    private static final int IN_MAX_INTERVAL = 2;
+    private static final int IN_MAX_ATTEMPTS = 4;
+    private static final int IN_MAX_ELAPSED = 8;
+    private static final int IN_JITTER = 16;
+    private static final int IN_RAND = 32;
+    private static final int IN_SEED = 64;
+    private static final int IN_PARAM = 128;
+
+    static void writeInterval(DataOutput out, EBRetryPolicyInterval p) throws IOException {
+        int mask = 0;
+        mask |= p.getInitialIntervalMillis() != EBRetryPolicyInterval.DEFAULT_INITIAL_INTERVAL_MILLIS ? IN_INITIAL : 0;
+        mask |= p.getMaxIntervalMillis() != EBRetryPolicyInterval.DEFAULT_MAX_INTERVAL_MILLIS ? IN_MAX_INTERVAL : 0;
+        mask |= p.getMaxAttempts() != EBRetryPolicyInterval.DEFAULT_MAX_ATTEMPTS ? IN_MAX_ATTEMPTS : 0;
+        mask |= p.getMaxElapsedTimeMillis() != EBRetryPolicyInterval.DEFAULT_MAX_ELAPSED_TIME_MILLIS ? IN_MAX_ELAPSED : 0;
+        mask |= p.getJitter() != EBRetryPolicyInterval.DEFAULT_JITTER ? IN_JITTER : 0;
+        mask |= p.getRandomizationFactor() != EBRetryPolicyInterval.DEFAULT_RANDOMIZATION_FACTOR ? IN_RAND : 0;
+        mask |= p.getSeed() != null ? IN_SEED : 0;
+        mask |= p instanceof EBRetryPolicyLinear || p instanceof EBRetryPolicyPolynomial ? IN_PARAM : 0;
+
+        out.writeByte(mask);
+        if ((mask & IN_INITIAL) != 0) writeVarLong(out, zigZag(p.getInitialIntervalMillis()));
+        if ((mask & IN_MAX_INTERVAL) != 0) writeVarLong(out, zigZag(p.getMaxIntervalMillis()));
+        if ((mask & IN_MAX_ATTEMPTS) != 0) writeVarLong(out, zigZag(p.getMaxAttempts()));
+        if ((mask & IN_MAX_ELAPSED) != 0) writeVarLong(out, zigZag(p.getMaxElapsedTimeMillis()));
+        if ((mask & IN_JITTER) != 0) out.writeByte(p.getJitter().ordinal());
+        if ((mask & IN_RAND) != 0) out.writeDouble(p.getRandomizationFactor());
+        if ((mask & IN_SEED) != 0) out.writeLong(p.getSeed());
+        if (p instanceof EBRetryPolicyLinear) {
+            writeVarLong(out, zigZag(((EBRetryPolicyLinear) p).getIncrementMillis()));
+        } else if (p instanceof EBRetryPolicyPolynomial) {
+            out.writeDouble(((EBRetryPolicyPolynomial) p).getExponent());
+        }
+    }
+
+    /**
+     * Reads configuration written by {@link #writeInterval(DataOutput, EBRetryPolicyInterval)}.
+     *
+     * @param in input
+     * @param linear true if the parameter is the increment of the linear policy, otherwise polynomial exponent
+     * @return builder to build the policy with
+     */
+    static EBRetryPolicyInterval.Builder readInterval(DataInput in, boolean linear) throws IOException {
+        final int mask = in.readUnsignedByte();
+        final EBRetryPolicyInterval.Builder b = new EBRetryPolicyInterval.Builder();
+        if ((mask & IN_INITIAL) != 0) b.setInitialIntervalMillis((int) unZigZag(readVarLong(in)));
+        if ((mask & IN_MAX_INTERVAL) != 0) b.setMaxIntervalMillis((int) unZigZag(readVarLong(in)));
+        if ((mask & IN_MAX_ATTEMPTS) != 0) b.setMaxAttempts((int) unZigZag(readVarLong(in)));
+        if ((mask & IN_MAX_ELAPSED) != 0) b.setMaxElapsedTimeMillis((int) unZigZag(readVarLong(in)));
+        if ((mask & IN_JITTER) != 0) b.setJitter(readJitter(in));
+        if ((mask & IN_RAND) != 0) b.setRandomizationFactor(in.readDouble());
+        if ((mask & IN_SEED) != 0) b.setSeed(in.readLong());
+        if ((mask & IN_PARAM) != 0) {
+            if (linear) {
+                b.setIncrementMillis((int) unZigZag(readVarLong(in)));
+            } else {
+                b.setExponent(in.readDouble());
+            }
+        }
+        return b;
+    }
+
+    private static final int SC_REPEAT_LAST = 1;
+    private static final int SC_JITTER = 2;
+    private static final int SC_SEED = 4;
+
+    static void writeSchedule(DataOutput out, EBRetrySchedule p) throws IOException {
+        final int size = p.getSize();
+        int flags = 0;
+        flags |= p.isRepeatLast() ? SC_REPEAT_LAST : 0;
+        flags |= p.getJitter() != EBRetrySchedule.DEFAULT_JITTER ? SC_JITTER : 0;
+        flags |= p.getSeed() != null ? SC_SEED : 0;
+
+        out.writeByte(flags);
+        writeVarLong(out, size);
+        for (int i = 1; i <= size; i++) {
+            writeVarLong(out, p.getBaseDelayMillis(i));
+        }
+
+        writeVarLong(out, zigZag(p.getMaxAttempts()));
+        writeVarLong(out, zigZag(p.getMaxElapsedTimeMillis()));
+        if ((flags & SC_JITTER) != 0) {
+            out.writeByte(p.getJitter().ordinal());
+            out.writeDouble(p.getRandomizationFactor());
+        }
+        if ((flags & SC_SEED) != 0) out.writeLong(p.getSeed());
+    }
+
+    static EBRetrySchedule readSchedule(DataInput in) throws IOException {
+        final int flags = in.readUnsignedByte();
+        final long size = readVarLong(in);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Invalid schedule size");
+        }
+
+        final EBRetrySchedule.Builder b = new EBRetrySchedule.Builder();
+        for (long i = 0; i < size; i++) {
+            b.addDelay((int) readVarLong(in));
+        }
+
+        b.setRepeatLast((flags & SC_REPEAT_LAST) != 0);
+        b.setMaxAttempts((int) unZigZag(readVarLong(in)));
+        b.setMaxElapsedTimeMillis((int) unZigZag(readVarLong(in)));
+        if ((flags & SC_JITTER) != 0) {
+            b.setJitter(readJitter(in));
+            b.setRandomizationFactor(in.readDouble());
+        }
+        if ((flags & SC_SEED) != 0) b.setSeed(in.readLong());
+        return b.build();
+    }
+
+    static void writeSimple(DataOutput out, int maxAttempts) throws IOException {
+        writeVarLong(out, zigZag(maxAttempts));
+    }
+
+    static int readSimple(DataInput in) throws IOException {
+        return (int) unZigZag(readVarLong(in));
+    }
+
+    private static EBRetryJitter readJitter(DataInput in) throws IOException {
+        final int ordinal = in.readUnsignedByte();
+        final EBRetryJitter[] values = EBRetryJitter.values();
+        if (ordinal >= values.length) {
+            throw new IOException("Unknown jitter " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    // Primitives
+
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes unsigned variable length integer, 7 bits per byte.
+     * @param out output
+     * @param value unsigned value
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        final long len = readVarLong(in);
+        if (len < 0 || len > Integer.MAX_VALUE
+                || (in instanceof ByteBufferInput && len > ((ByteBufferInput) in).remaining())) {
+            throw new IOException("Invalid string length");
+        }
+
+        if (len <= STRING_CHUNK || in instanceof ByteBufferInput) {
+            final byte[] bytes = new byte[(int) len];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Truncated stream fails on the end of input before the whole declared length is allocated.
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(STRING_CHUNK);
+        final byte[] chunk = new byte[STRING_CHUNK];
+        for (long left = len; left > 0; ) {
+            final int n = (int) Math.min(left, STRING_CHUNK);
+            in.readFully(chunk, 0, n);
+            bos.write(chunk, 0, n);
+            left -= n;
+        }
+        return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Big-endian {@link DataInput} reading the buffer directly, regardless of the buffer byte order.
+     */
+    static final class ByteBufferInput implements DataInput {
+        private final ByteBuffer buffer;
+
+        ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int remaining() {
+            return buffer.remaining();
+        }
+
+        private void require(int len) throws EOFException {
+            if (buffer.remaining() < len) {
+                throw new EOFException();
+            }
+        }
+
+        @Override
+        public void readFully(byte[] b) throws IOException {
+            readFully(b, 0, b.length);
+        }
+
+        @Override
+        public void readFully(byte[] b, int off, int len) throws IOException {
+            require(len);
+            buffer.get(b, off, len);
+        }
+
+        @Override
+        public int skipBytes(int n) {
+            final int skip = Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skip);
+            return skip;
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            return readByte() & 0xFF;
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            return (short) readUnsignedShort();
+        }
+
+        @Override
+        public int readUnsignedShort() throws IOException {
+            require(2);
+            return (buffer.get() & 0xFF) << 8 | (buffer.get() & 0xFF);
+        }
+
+        @Override
+        public char readChar() throws IOException {
+            return (char) readUnsignedShort();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            require(4);
+            return (buffer.get() & 0xFF) << 24 | (buffer.get() & 0xFF) << 16
+                    | (buffer.get() & 0xFF) << 8 | (buffer.get() & 0xFF);
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        @Override
+        public String readLine() {
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+
+            // Bytes as chars up to the line terminator, same as DataInputStream.
+            final StringBuilder sb = new StringBuilder();
+            while (buffer.hasRemaining()) {
+                final int c = buffer.get() & 0xFF;
+                if (c == '\n') {
+                    break;
+                }
+                if (c == '\r') {
+                    if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+                        buffer.get();
+                    }
+                    break;
+                }
+                sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            return DataInputStream.readUTF(this);
+        }
+    }
+
+    /**
+     * Big-endian {@link DataOutput} writing to the buffer directly, regardless of the buffer byte order.
+     * Throws {@link BufferOverflowException} if the buffer is too small.
+     */
+    private static final class ByteBufferOutput implements DataOutput {
+        private final ByteBuffer buffer;
+
+        ByteBufferOutput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b) {
+            buffer.put(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.put(b, off, len);
+        }
+
+        @Override
+        public void writeBoolean(boolean v) {
+            write(v ? 1 : 0);
+        }
+
+        @Override
+        public void writeByte(int v) {
+            write(v);
+        }
+
+        @Override
+        public void writeShort(int v) {
+            if (buffer.remaining() < 2) {
+                throw new BufferOverflowException();
+            }
+            buffer.put((byte) (v >>> 8));
+            buffer.put((byte) v);
+        }
+
+        @Override
+        public void writeChar(int v) {
+            writeShort(v);
+        }
+
+        @Override
+        public void writeInt(int v) {
+            if (buffer.remaining() < 4) {
+                throw new BufferOverflowException();
+            }
+            buffer.put((byte) (v >>> 24));
+            buffer.put((byte) (v >>> 16));
+            buffer.put((byte) (v >>> 8));
+            buffer.put((byte) v);
+        }
+
+        @Override
+        public void writeLong(long v) {
+            if (buffer.remaining() < 8) {
+                throw new BufferOverflowException();
+            }
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        @Override
+        public void writeFloat(float v) {
+            writeInt(Float.floatToIntBits(v));
+        }
+
+        @Override
+        public void writeDouble(double v) {
+            writeLong(Double.doubleToLongBits(v));
+        }
+
+        @Override
+        public void writeBytes(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                write(s.charAt(i));
+            }
+        }
+
+        @Override
+        public void writeChars(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                writeChar(s.charAt(i));
+            }
+        }
+
+        @Override
+        public void writeUTF(String s) throws IOException {
+            // Rare for the configuration, modified UTF-8 is produced by the stream.
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream(s.length() + 2);
+            new DataOutputStream(bos).writeUTF(s);
+            write(bos.toByteArray());
+        }
+    }
+}
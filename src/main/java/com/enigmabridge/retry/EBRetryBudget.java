@@ -0,0 +1,164 @@
+package com.enigmabridge.retry;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retry budget shared by any number of {@link EBRetry} instances, typically one per downstream service.
+ * <p>
+ * Retries are allowed only while their number stays below a configured percentage of first attempts
+ * made in the recent time window, plus a minimal number of retries per second, so retrying
+ * does not multiply the load on a struggling backend.
+ * </p>
+ * <p>
+ * Counts are kept in a sliding window of time buckets with {@link LongAdder} counters, bucket rotation is
+ * done with CAS. The hot path is lock-free and does not contend across cores. The limit is approximate,
+ * concurrent retries may overshoot it slightly.
+ * </p>
+ */
+public class EBRetryBudget {
+    /**
+     * The default ratio of retries to first attempts (20 %).
+     */
+    public static final double DEFAULT_RETRY_RATIO = 0.2;
+    /**
+     * The default minimal number of retries per second allowed regardless of the ratio.
+     */
+    public static final int DEFAULT_MIN_RETRIES_PER_SECOND = 10;
+    /**
+     * The default sliding window length in milliseconds.
+     */
+    public static final int DEFAULT_WINDOW_MILLIS = 10000;
+    /**
+     * The default number of buckets in the sliding window.
+     */
+    public static final int DEFAULT_BUCKETS = 10;
+
+    private final double retryRatio;
+    private final int minRetriesPerSecond;
+    private final int windowMillis;
+    private final long bucketNanos;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final long minRetries;
+
+    public EBRetryBudget() {
+        this(DEFAULT_RETRY_RATIO, DEFAULT_MIN_RETRIES_PER_SECOND);
+    }
+
+    public EBRetryBudget(double retryRatio, int minRetriesPerSecond) {
+        this(retryRatio, minRetriesPerSecond, DEFAULT_WINDOW_MILLIS, DEFAULT_BUCKETS);
+    }
+
+    /**
+     * @param retryRatio maximal ratio of retries to first attempts in the window, e.g., 0.2 for 20 %
+     * @param minRetriesPerSecond minimal number of retries per second allowed regardless of the ratio
+     * @param windowMillis length of the sliding window in milliseconds
+     * @param bucketCount number of buckets the window is split to
+     */
+    public EBRetryBudget(double retryRatio, int minRetriesPerSecond, int windowMillis, int bucketCount) {
+        if (retryRatio < 0
+                || minRetriesPerSecond < 0
+                || windowMillis <= 0
+                || bucketCount <= 0
+                || windowMillis < bucketCount) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        this.retryRatio = retryRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.windowMillis = windowMillis;
+        this.bucketNanos = windowMillis * 1000000L / bucketCount;
+        this.buckets = new AtomicReferenceArray<Bucket>(bucketCount);
+        this.minRetries = (long) minRetriesPerSecond * windowMillis / 1000L;
+    }
+
+    /**
+     * Records the first attempt of a job, deposits to the budget.
+     */
+    public void onFirstAttempt() {
+        currentBucket().firstAttempts.increment();
+    }
+
+    /**
+     * Tries to withdraw one retry from the budget.
+     *
+     * @return true if retry is allowed and was recorded, false if the budget is exhausted
+     */
+    public boolean tryRetry() {
+        final Bucket current = currentBucket();
+        final long epoch = current.epoch;
+
+        long firstAttempts = 0;
+        long retries = 0;
+        for (int i = 0, len = buckets.length(); i < len; i++) {
+            final Bucket bucket = buckets.get(i);
+            if (bucket != null && epoch - bucket.epoch < len) {
+                firstAttempts += bucket.firstAttempts.sum();
+                retries += bucket.retries.sum();
+            }
+        }
+
+        if (retries + 1 > minRetries + (long) (retryRatio * firstAttempts)) {
+            return false;
+        }
+
+        current.retries.increment();
+        return true;
+    }
+
+    /**
+     * Returns bucket for the current time, rotating stale bucket if needed.
+     * @return current bucket
+     */
+    private Bucket currentBucket() {
+        // nanoTime may be negative, floor keeps epochs monotonic and the index non-negative.
+        final long epoch = Math.floorDiv(System.nanoTime(), bucketNanos);
+        final int idx = (int) Math.floorMod(epoch, (long) buckets.length());
+        for (;;) {
+            final Bucket bucket = buckets.get(idx);
+            if (bucket != null && bucket.epoch >= epoch) {
+                // Current one, or already rotated forward by a thread with a later clock read.
+                return bucket;
+            }
+
+            final Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(idx, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    public double getRetryRatio() {
+        return retryRatio;
+    }
+
+    public int getMinRetriesPerSecond() {
+        return minRetriesPerSecond;
+    }
+
+    public int getWindowMillis() {
+        return windowMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryBudget{" +
+                "retryRatio=" + retryRatio +
+                ", minRetriesPerSecond=" + minRetriesPerSecond +
+                ", windowMillis=" + windowMillis +
+                '}';
+    }
+
+    /**
+     * Counters for one time slice of the window.
+     */
+    private static final class Bucket {
+        final long epoch;
+        final LongAdder firstAttempts = new LongAdder();
+        final LongAdder retries = new LongAdder();
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
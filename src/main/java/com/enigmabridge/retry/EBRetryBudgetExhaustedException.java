@@ -0,0 +1,39 @@
+package com.enigmabridge.retry;
+
+/**
+ * Exception thrown when calling sync job.
+ * Semantics: job failed and retry was not allowed by the shared {@link EBRetryBudget},
+ * although the retry strategy would continue.
+ * Underlying error is set.
+ */
+public class EBRetryBudgetExhaustedException extends EBRetryFailedException {
+    public EBRetryBudgetExhaustedException() {
+    }
+
+    public EBRetryBudgetExhaustedException(String message) {
+        super(message);
+    }
+
+    public EBRetryBudgetExhaustedException(Object error, EBRetry retry) {
+        super(error, retry);
+    }
+
+    public EBRetryBudgetExhaustedException(String message, Object error, EBRetry retry) {
+        super(message, error, retry);
+    }
+
+    protected EBRetryBudgetExhaustedException(String message, Object error, boolean writableStackTrace) {
+        super(message, error, writableStackTrace);
+    }
+
+    /**
+     * Stackless variant, stack trace is not captured and no retry is referenced.
+     *
+     * @param message message
+     * @param error underlying error, may be null
+     * @return exception
+     */
+    public static EBRetryBudgetExhaustedException stackless(String message, Object error) {
+        return new EBRetryBudgetExhaustedException(message, error, false);
+    }
+}
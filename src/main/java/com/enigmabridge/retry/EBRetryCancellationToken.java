@@ -0,0 +1,100 @@
+package com.enigmabridge.retry;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cooperative cancellation token of one job attempt, see {@link EBCallback#getCancellationToken()}.
+ * <p>
+ * {@link EBRetry} cancels the token when the attempt is no longer needed - retry was cancelled or aborted,
+ * attempt timed out or lost to a hedge. Running job can poll {@link #isCancelled()} or register
+ * a callback with {@link #onCancel(Runnable)} to stop in-flight work, e.g., close the socket.
+ * </p>
+ * <p>
+ * Each registered callback is invoked exactly once, on the cancelling thread,
+ * or immediately on the registering thread if the token is already cancelled.
+ * </p>
+ */
+public class EBRetryCancellationToken {
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final Queue<Runnable> callbacks = new ConcurrentLinkedQueue<Runnable>();
+
+    /**
+     * Cancels the token and runs registered callbacks.
+     * @return true if cancelled by this call
+     */
+    public boolean cancel() {
+        if (!cancelled.compareAndSet(false, true)){
+            return false;
+        }
+
+        runCallbacks();
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Throws if the token is cancelled. Convenient for jobs checking the token between blocking steps.
+     * @throws EBRetryAttemptCancelledException if cancelled
+     */
+    public void throwIfCancelled() throws EBRetryAttemptCancelledException {
+        if (cancelled.get()){
+            throw new EBRetryAttemptCancelledException("Cancelled");
+        }
+    }
+
+    /**
+     * Registers callback invoked on cancellation. If already cancelled, callback is invoked immediately.
+     *
+     * @param callback callback to run
+     */
+    public void onCancel(Runnable callback) {
+        if (callback == null){
+            throw new NullPointerException("callback");
+        }
+
+        callbacks.add(callback);
+        if (cancelled.get()){
+            runCallbacks();
+        }
+    }
+
+    /**
+     * Unregisters the callback, e.g., when the job finished.
+     * @param callback callback to remove
+     * @return true if removed before it was invoked
+     */
+    public boolean removeOnCancel(Runnable callback) {
+        return callbacks.remove(callback);
+    }
+
+    /**
+     * Each callback is polled exactly once, concurrent drains do not run it twice.
+     */
+    private void runCallbacks() {
+        for (;;) {
+            final Runnable callback = callbacks.poll();
+            if (callback == null){
+                break;
+            }
+
+            try {
+                callback.run();
+            } catch (Throwable t) {
+                final Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, t);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryCancellationToken{" +
+                "cancelled=" + isCancelled() +
+                '}';
+    }
+}
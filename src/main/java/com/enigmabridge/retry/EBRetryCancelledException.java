@@ -36,4 +36,19 @@ public class EBRetryCancelledException extends EBRetryException {
     public EBRetryCancelledException(Throwable cause, Object error, EBRetry retry) {
         super(cause, error, retry);
     }
+
+    protected EBRetryCancelledException(String message, Object error, boolean writableStackTrace) {
+        super(message, error, writableStackTrace);
+    }
+
+    /**
+     * Stackless variant, stack trace is not captured and no retry is referenced.
+     *
+     * @param message message
+     * @param error underlying error, may be null
+     * @return exception
+     */
+    public static EBRetryCancelledException stackless(String message, Object error) {
+        return new EBRetryCancelledException(message, error, false);
+    }
 }
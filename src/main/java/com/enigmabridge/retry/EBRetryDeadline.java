@@ -0,0 +1,116 @@
+package com.enigmabridge.retry;
+
+/**
+ * Absolute deadline of the whole operation, carried by {@link EBRetry} across attempts and nested retries.
+ * <p>
+ * The deadline is based on {@link System#nanoTime()}, thus immune to wall clock changes.
+ * While the job attempt is being started, the deadline is attached to the calling thread so nested
+ * {@link EBRetry} instances started from the job inherit it. Jobs can also read it from
+ * {@link EBCallback#getDeadline()}.
+ * </p>
+ */
+public class EBRetryDeadline {
+    private static final ThreadLocal<EBRetryDeadline> CURRENT = new ThreadLocal<EBRetryDeadline>();
+
+    private final long deadlineNanos;
+
+    protected EBRetryDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Deadline after given number of milliseconds from now.
+     * @param millis milliseconds
+     * @return deadline
+     */
+    public static EBRetryDeadline afterMillis(long millis) {
+        if (millis < 0){
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+        return new EBRetryDeadline(System.nanoTime() + millis * 1000000L);
+    }
+
+    /**
+     * Deadline at given {@link System#nanoTime()} value.
+     * @param deadlineNanos nano time
+     * @return deadline
+     */
+    public static EBRetryDeadline atNanos(long deadlineNanos) {
+        return new EBRetryDeadline(deadlineNanos);
+    }
+
+    /**
+     * Returns the tighter of the two deadlines, null-safe.
+     *
+     * @param a deadline, may be null
+     * @param b deadline, may be null
+     * @return earlier deadline or null if both are null
+     */
+    public static EBRetryDeadline min(EBRetryDeadline a, EBRetryDeadline b) {
+        if (a == null){
+            return b;
+        }
+        if (b == null){
+            return a;
+        }
+        return a.deadlineNanos - b.deadlineNanos <= 0 ? a : b;
+    }
+
+    /**
+     * Deadline attached to the current thread, null if none.
+     * @return deadline or null
+     */
+    public static EBRetryDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attaches the deadline to the current thread.
+     *
+     * @param deadline deadline to attach
+     * @return previously attached deadline, to be passed to {@link #restore(EBRetryDeadline)}
+     */
+    public static EBRetryDeadline attach(EBRetryDeadline deadline) {
+        final EBRetryDeadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        return previous;
+    }
+
+    /**
+     * Restores deadline attached to the current thread before {@link #attach(EBRetryDeadline)}.
+     * @param previous previous deadline, may be null
+     */
+    public static void restore(EBRetryDeadline previous) {
+        if (previous == null){
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    public long getRemainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    /**
+     * @return remaining milliseconds, negative if expired
+     */
+    public long getRemainingMillis() {
+        return getRemainingNanos() / 1000000L;
+    }
+
+    public boolean isExpired() {
+        return getRemainingNanos() <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryDeadline{" +
+                "remainingMillis=" + getRemainingMillis() +
+                '}';
+    }
+}
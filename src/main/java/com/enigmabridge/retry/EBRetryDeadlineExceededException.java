@@ -0,0 +1,39 @@
+package com.enigmabridge.retry;
+
+/**
+ * Exception thrown when calling sync job.
+ * Semantics: job failed and retry was not attempted as the remaining time to the {@link EBRetryDeadline}
+ * is shorter than the backoff wait plus the expected attempt latency.
+ * Underlying error is set.
+ */
+public class EBRetryDeadlineExceededException extends EBRetryFailedException {
+    public EBRetryDeadlineExceededException() {
+    }
+
+    public EBRetryDeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public EBRetryDeadlineExceededException(Object error, EBRetry retry) {
+        super(error, retry);
+    }
+
+    public EBRetryDeadlineExceededException(String message, Object error, EBRetry retry) {
+        super(message, error, retry);
+    }
+
+    protected EBRetryDeadlineExceededException(String message, Object error, boolean writableStackTrace) {
+        super(message, error, writableStackTrace);
+    }
+
+    /**
+     * Stackless variant, stack trace is not captured and no retry is referenced.
+     *
+     * @param message message
+     * @param error underlying error, may be null
+     * @return exception
+     */
+    public static EBRetryDeadlineExceededException stackless(String message, Object error) {
+        return new EBRetryDeadlineExceededException(message, error, false);
+    }
+}
@@ -57,6 +57,19 @@ public class EBRetryException extends Exception {
         this.retry = retry;
     }
 
+    /**
+     * Stackless exception. Stack trace is not captured and no retry is referenced,
+     * cheap to construct when failures are frequent.
+     *
+     * @param message message
+     * @param error error object
+     * @param writableStackTrace false for stackless exception
+     */
+    protected EBRetryException(String message, Object error, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.error = error;
+    }
+
     public Object getError() {
         return error;
     }
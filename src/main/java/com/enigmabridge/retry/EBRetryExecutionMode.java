@@ -0,0 +1,25 @@
+package com.enigmabridge.retry;
+
+/**
+ * Determines where async retry runs execute retried attempts.
+ */
+public enum EBRetryExecutionMode {
+    /**
+     * Backoff waits, hedges and timeouts are driven by the scheduler,
+     * retried attempts run on the shared pool of daemon threads, see {@link EBRetryExecutors#getDefaultExecutor()}.
+     */
+    SCHEDULER,
+
+    /**
+     * Retried attempts run directly on the scheduler thread which finished the backoff wait.
+     * Only for jobs which never block, a blocking job stalls the timers of all retries sharing the scheduler.
+     */
+    DIRECT,
+
+    /**
+     * Backoff waits are held by the shared scheduler without occupying any thread,
+     * retried attempts run on a new virtual thread each.
+     * On JDKs without virtual threads, a cached pool of daemon threads is used.
+     */
+    VIRTUAL_THREAD
+}
@@ -0,0 +1,132 @@
+package com.enigmabridge.retry;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executors used by the retry mechanism to run retried attempts.
+ * <p>
+ * Virtual threads are used if the runtime supports them (JDK 21+). They are looked up reflectively
+ * so the library still runs on older JDKs, where a cached pool of daemon platform threads is used instead.
+ * </p>
+ */
+public class EBRetryExecutors {
+    private static final String VIRTUAL_THREAD_PREFIX = "EBRetry-virtual-";
+
+    private static final String ATTEMPT_THREAD_PREFIX = "EBRetry-attempt-";
+
+    /**
+     * Returns shared executor for retried attempts, a cached pool of daemon platform threads.
+     * Attempts may block, so they are never run on the scheduler threads which drive backoff waits,
+     * hedges and timeouts of all retries.
+     *
+     * @return default executor for retried attempts
+     */
+    public static Executor getDefaultExecutor() {
+        return DefaultHolder.EXECUTOR;
+    }
+
+    /**
+     * Returns executor running the task on the calling thread.
+     * Retried attempts then run on the scheduler thread, suitable only for jobs which never block.
+     *
+     * @return direct executor
+     */
+    public static Executor getDirectExecutor() {
+        return DirectExecutor.INSTANCE;
+    }
+
+    /**
+     * Returns true if the runtime supports virtual threads.
+     * @return true if virtual threads are supported
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualHolder.FACTORY != null;
+    }
+
+    /**
+     * Returns factory creating virtual threads, null if virtual threads are not supported.
+     * @return virtual thread factory or null
+     */
+    public static ThreadFactory getVirtualThreadFactory() {
+        return VirtualHolder.FACTORY;
+    }
+
+    /**
+     * Returns shared executor starting a new virtual thread for each task.
+     * If virtual threads are not supported, shared cached pool of daemon threads is returned.
+     *
+     * @return executor for retried attempts
+     */
+    public static Executor getVirtualThreadExecutor() {
+        return VirtualHolder.EXECUTOR;
+    }
+
+    /**
+     * Creates virtual thread factory using reflection, equivalent to
+     * {@code Thread.ofVirtual().name(prefix, 0).factory()}.
+     *
+     * @return factory or null if not supported
+     */
+    static ThreadFactory createVirtualThreadFactory() {
+        try {
+            final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = ofVirtual.invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, VIRTUAL_THREAD_PREFIX, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lazy initialization holder for the default attempt executor.
+     */
+    private static class DefaultHolder {
+        static final ExecutorService EXECUTOR =
+                Executors.newCachedThreadPool(new EBRetrySchedulerExecutor.DaemonThreadFactory(ATTEMPT_THREAD_PREFIX));
+    }
+
+    /**
+     * Lazy initialization holder for virtual thread support.
+     */
+    private static class VirtualHolder {
+        static final ThreadFactory FACTORY = createVirtualThreadFactory();
+        static final Executor EXECUTOR = FACTORY != null
+                ? new ThreadPerTaskExecutor(FACTORY)
+                : getDefaultExecutor();
+    }
+
+    /**
+     * Runs the task on the calling thread.
+     */
+    protected enum DirectExecutor implements Executor {
+        INSTANCE;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+
+    /**
+     * Starts a new thread for each task.
+     */
+    protected static class ThreadPerTaskExecutor implements Executor {
+        protected final ThreadFactory threadFactory;
+
+        public ThreadPerTaskExecutor(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            threadFactory.newThread(command).start();
+        }
+    }
+}
@@ -39,4 +39,18 @@ public class EBRetryFailedException extends EBRetryException {
         super(cause, error, retry);
     }
 
+    protected EBRetryFailedException(String message, Object error, boolean writableStackTrace) {
+        super(message, error, writableStackTrace);
+    }
+
+    /**
+     * Stackless variant, stack trace is not captured and no retry is referenced.
+     *
+     * @param message message
+     * @param error underlying error, may be null
+     * @return exception
+     */
+    public static EBRetryFailedException stackless(String message, Object error) {
+        return new EBRetryFailedException(message, error, false);
+    }
 }
@@ -0,0 +1,206 @@
+package com.enigmabridge.retry;
+
+/**
+ * Hedging policy for {@link EBRetry}, shared by all retries of one call site.
+ * <p>
+ * If the attempt has not called back within the hedge delay, a speculative duplicate attempt is launched
+ * in parallel. The first success wins, callbacks of the losing attempts are ignored and the losing attempts
+ * are cancelled if the job implements {@link EBRetryJobCancellable}.
+ * </p>
+ * <p>
+ * Hedge delay is either fixed or the tracked latency percentile of successful attempts.
+ * Number of hedges per attempt is capped and each hedge has to be allowed by the hedging budget,
+ * so hedging cannot double the load.
+ * </p>
+ */
+public class EBRetryHedging {
+    /**
+     * The default fixed hedge delay in milliseconds.
+     */
+    public static final int DEFAULT_DELAY_MILLIS = 100;
+    /**
+     * The default maximal number of hedges per attempt.
+     */
+    public static final int DEFAULT_MAX_HEDGES = 1;
+    /**
+     * The default minimal number of samples before the percentile is used instead of the fixed delay.
+     */
+    public static final int DEFAULT_MIN_SAMPLES = 100;
+
+    private final int delayMillis;
+    private final double percentile;
+    private final int maxHedges;
+    private final int minSamples;
+    private final EBRetryBudget budget;
+    private final EBLatencyTracker tracker;
+
+    protected EBRetryHedging(Builder builder) {
+        delayMillis = builder.delayMillis;
+        percentile = builder.percentile;
+        maxHedges = builder.maxHedges;
+        minSamples = builder.minSamples;
+        budget = builder.budget;
+        tracker = builder.tracker != null ? builder.tracker : new EBLatencyTracker();
+        if (delayMillis < 0
+                || percentile < 0 || percentile > 1
+                || maxHedges < 0
+                || minSamples < 0) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+    }
+
+    /**
+     * Delay after which the hedge is launched.
+     * Tracked latency percentile if configured and enough samples are available, fixed delay otherwise.
+     *
+     * @return delay in milliseconds
+     */
+    public long getDelayMillis() {
+        if (percentile > 0 && tracker.getSampleCount() >= minSamples) {
+            final long millis = tracker.getPercentileMillis(percentile);
+            if (millis >= 0) {
+                return millis;
+            }
+        }
+
+        return delayMillis;
+    }
+
+    /**
+     * Records the primary attempt, deposits to the hedging budget.
+     */
+    public void onPrimaryAttempt() {
+        if (budget != null) {
+            budget.onFirstAttempt();
+        }
+    }
+
+    /**
+     * Asks the hedging budget whether the hedge can be launched.
+     * @return true if hedge is allowed
+     */
+    public boolean tryHedge() {
+        return budget == null || budget.tryRetry();
+    }
+
+    /**
+     * Records latency of the successful attempt.
+     * @param latencyNanos latency
+     */
+    public void recordLatency(long latencyNanos) {
+        tracker.record(latencyNanos);
+    }
+
+    public int getMaxHedges() {
+        return maxHedges;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public EBRetryBudget getBudget() {
+        return budget;
+    }
+
+    public EBLatencyTracker getTracker() {
+        return tracker;
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryHedging{" +
+                "delayMillis=" + delayMillis +
+                ", percentile=" + percentile +
+                ", maxHedges=" + maxHedges +
+                ", budget=" + budget +
+                '}';
+    }
+
+    /**
+     * Builder for {@link EBRetryHedging}.
+     */
+    public static class Builder {
+        int delayMillis = DEFAULT_DELAY_MILLIS;
+        double percentile = 0;
+        int maxHedges = DEFAULT_MAX_HEDGES;
+        int minSamples = DEFAULT_MIN_SAMPLES;
+        EBRetryBudget budget;
+        EBLatencyTracker tracker;
+
+        public Builder() {
+        }
+
+        public EBRetryHedging build() {
+            return new EBRetryHedging(this);
+        }
+
+        /**
+         * Sets fixed hedge delay. The default value is {@link #DEFAULT_DELAY_MILLIS}.
+         * Used also as a fallback until enough latency samples are tracked.
+         *
+         * @param delayMillis milliseconds
+         * @return this
+         */
+        public Builder setDelayMillis(int delayMillis) {
+            this.delayMillis = delayMillis;
+            return this;
+        }
+
+        /**
+         * Sets latency percentile used as the hedge delay, e.g., 0.95. 0 disables it (default).
+         *
+         * @param percentile percentile in range [0, 1]
+         * @return this
+         */
+        public Builder setPercentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Sets maximal number of hedges per attempt. The default value is {@link #DEFAULT_MAX_HEDGES}.
+         *
+         * @param maxHedges number of hedges
+         * @return this
+         */
+        public Builder setMaxHedges(int maxHedges) {
+            this.maxHedges = maxHedges;
+            return this;
+        }
+
+        /**
+         * Sets minimal number of latency samples before the percentile is used.
+         * The default value is {@link #DEFAULT_MIN_SAMPLES}.
+         *
+         * @param minSamples number of samples
+         * @return this
+         */
+        public Builder setMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /**
+         * Sets hedging budget. Each hedge withdraws a retry from it, each primary attempt deposits.
+         *
+         * @param budget hedging budget, null for no budget
+         * @return this
+         */
+        public Builder setBudget(EBRetryBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * Sets latency tracker, may be shared.
+         *
+         * @param tracker latency tracker
+         * @return this
+         */
+        public Builder setTracker(EBLatencyTracker tracker) {
+            this.tracker = tracker;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.enigmabridge.retry;
+
+/**
+ * Jitter algorithm applied to the backoff interval, see {@link EBRetryPolicyBackoff}.
+ * <ul>
+ * <li>{@link #NONE} - no randomization, the interval is used as is.</li>
+ * <li>{@link #PROPORTIONAL} - interval +/- randomization factor * interval, the default.</li>
+ * <li>{@link #FULL} - random value from [0, interval].</li>
+ * <li>{@link #EQUAL} - interval / 2 + random value from [0, interval / 2].</li>
+ * <li>{@link #DECORRELATED} - random value from [initial interval, 3 * previous wait], capped by the
+ * maximal interval. Does not use the multiplier.</li>
+ * </ul>
+ */
+public enum EBRetryJitter {
+    NONE("none"),
+    PROPORTIONAL("proportional"),
+    FULL("full"),
+    EQUAL("equal"),
+    DECORRELATED("decorrelated");
+
+    private final String name;
+
+    EBRetryJitter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name used in the JSON configuration
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Applies the stateless jitter to the interval.
+     *
+     * @param interval base interval in milliseconds
+     * @param randomizationFactor randomization factor, used by {@link #PROPORTIONAL}
+     * @param random random value from [0, 1)
+     * @return randomized interval in milliseconds
+     * @throws IllegalStateException for {@link #DECORRELATED}, which depends on the previous wait
+     */
+    public long apply(long interval, double randomizationFactor, double random) {
+        switch (this) {
+            case NONE:
+                return interval;
+            case PROPORTIONAL:
+                final double delta = randomizationFactor * interval;
+                return (long) (interval - delta + (random * (2 * delta + 1)));
+            case FULL:
+                return (long) (random * (interval + 1L));
+            case EQUAL:
+                return interval / 2 + (long) (random * (interval / 2 + 1L));
+            default:
+                throw new IllegalStateException("Jitter depends on the previous wait");
+        }
+    }
+
+    /**
+     * Returns jitter by its JSON name.
+     *
+     * @param name jitter name
+     * @return jitter
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static EBRetryJitter fromName(String name) {
+        for (EBRetryJitter jitter : values()) {
+            if (jitter.name.equalsIgnoreCase(name)) {
+                return jitter;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown jitter type");
+    }
+}
@@ -0,0 +1,14 @@
+package com.enigmabridge.retry;
+
+/**
+ * Retry job able to cancel its running attempt.
+ * Used to stop losing attempts when hedging, see {@link EBRetryHedging}.
+ */
+public interface EBRetryJobCancellable<Result, Error> extends EBRetryJob<Result, Error> {
+    /**
+     * Cancels the running attempt. Callbacks of the cancelled attempt are ignored.
+     *
+     * @param callback callback the attempt was started with in {@link #runAsync(EBCallback)}
+     */
+    void cancelAttempt(EBCallback<Result, Error> callback);
+}
@@ -0,0 +1,59 @@
+package com.enigmabridge.retry;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Retry job adapter for asynchronous operations returning {@link CompletionStage}.
+ * Each attempt calls the supplier, its stage completion is signalized to the retry mechanism.
+ * <p>
+ * Exceptionally completed stage is considered as a failed attempt, which can be retried.
+ * Throwable thrown by the supplier itself is considered as a fatal error, same as in {@link EBRetryJobSimpleSafe}.
+ * </p>
+ */
+public class EBRetryJobCompletionStage<Result> extends EBRetryJobSimple<Result, Throwable> {
+    protected final Supplier<? extends CompletionStage<Result>> supplier;
+
+    public EBRetryJobCompletionStage(Supplier<? extends CompletionStage<Result>> supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    public void runAsync(final EBCallback<Result, Throwable> callback) {
+        final CompletionStage<Result> stage;
+        try {
+            stage = supplier.get();
+        } catch(Throwable th){
+            callback.onFail(new EBRetryJobErrorThr(th), true);
+            return;
+        }
+
+        stage.whenComplete(new BiConsumer<Result, Throwable>() {
+            @Override
+            public void accept(Result result, Throwable throwable) {
+                if (throwable == null) {
+                    callback.onSuccess(result);
+                    return;
+                }
+
+                final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause()
+                        : throwable;
+                callback.onFail(new EBRetryJobErrorThr(cause), isFatal(cause));
+            }
+        });
+    }
+
+    /**
+     * Decides whether the error from the completed stage is fatal, i.e., should abort the retry.
+     * By default no error is fatal.
+     *
+     * @param throwable error the stage completed with
+     * @return true to abort the retry
+     */
+    protected boolean isFatal(Throwable throwable) {
+        return false;
+    }
+}
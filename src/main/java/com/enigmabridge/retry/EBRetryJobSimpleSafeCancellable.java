@@ -0,0 +1,60 @@
+package com.enigmabridge.retry;
+
+/**
+ * Simple retry job checking the cancellation token of the attempt.
+ * <p>
+ * The job body is not started if the attempt is already cancelled. {@link #onCancel(EBCallback)} is invoked
+ * when the attempt is cancelled while running, override it to stop in-flight work.
+ * Throwables thrown by the body of the cancelled attempt are not considered as fatal.
+ * Uncaught throwables of running attempts are considered as fatal errors, as in {@link EBRetryJobSimpleSafe}.
+ * </p>
+ */
+public abstract class EBRetryJobSimpleSafeCancellable<Result, Error> extends EBRetryJobSimpleSafe<Result, Error>
+        implements EBRetryJobCancellable<Result, Error> {
+
+    @Override
+    public void runAsync(final EBCallback<Result, Error> callback) {
+        final EBRetryCancellationToken token = callback.getCancellationToken();
+        if (token == null){
+            super.runAsync(callback);
+            return;
+        }
+
+        if (token.isCancelled()){
+            callback.onFail(new EBRetryJobError<Error>(new EBRetryAttemptCancelledException("Cancelled")), false);
+            return;
+        }
+
+        token.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                onCancel(callback);
+            }
+        });
+
+        try {
+            runAsyncNoException(callback);
+        } catch(Throwable th){
+            callback.onFail(new EBRetryJobError<Error>(th), !token.isCancelled());
+        }
+    }
+
+    /**
+     * Cancellation is signalled through the token, see {@link #onCancel(EBCallback)}.
+     * @param callback callback of the cancelled attempt
+     */
+    @Override
+    public void cancelAttempt(EBCallback<Result, Error> callback) {
+
+    }
+
+    /**
+     * Called when the attempt is cancelled. May be called from another thread while the attempt is running.
+     * Default implementation does nothing.
+     *
+     * @param callback callback of the cancelled attempt
+     */
+    protected void onCancel(EBCallback<Result, Error> callback) {
+
+    }
+}
@@ -0,0 +1,109 @@
+package com.enigmabridge.retry;
+
+/**
+ * Outcome of the blocking run, returned instead of throwing an exception, see {@link EBRetry#runSyncOutcome()}.
+ * <p>
+ * The outcome object is mutable and reusable, the retry fills the same instance on each run,
+ * so a failed run allocates no exception nor outcome object.
+ * </p>
+ */
+public class EBRetryOutcome<Result, Error> {
+    /**
+     * Final status of the run.
+     */
+    public enum Status {
+        SUCCEEDED,
+        FAILED,
+        ABORTED,
+        CANCELLED
+    }
+
+    protected Status status;
+    protected Result result;
+    protected EBRetryJobError<Error> error;
+    protected int attempts;
+    protected boolean budgetExhausted;
+    protected boolean deadlineExceeded;
+
+    /**
+     * Sets the outcome.
+     *
+     * @param status final status
+     * @param result result on success
+     * @param error last job error, may be null
+     * @param attempts number of failed attempts
+     * @param budgetExhausted true if retry was stopped by the retry budget
+     * @param deadlineExceeded true if retry was stopped by the deadline
+     * @return this
+     */
+    protected EBRetryOutcome<Result, Error> set(Status status, Result result, EBRetryJobError<Error> error,
+                                                int attempts, boolean budgetExhausted, boolean deadlineExceeded) {
+        this.status = status;
+        this.result = result;
+        this.error = error;
+        this.attempts = attempts;
+        this.budgetExhausted = budgetExhausted;
+        this.deadlineExceeded = deadlineExceeded;
+        return this;
+    }
+
+    /**
+     * Builds stackless exception corresponding to the failed outcome, for callers still wanting to throw.
+     * @return exception or null on success
+     */
+    public EBRetryException toException() {
+        switch (status) {
+            case SUCCEEDED:
+                return null;
+            case ABORTED:
+                return EBRetryAbortedException.stackless("Aborted", error);
+            case CANCELLED:
+                return EBRetryCancelledException.stackless("Cancelled", error);
+            default:
+                if (budgetExhausted) {
+                    return EBRetryBudgetExhaustedException.stackless("Retry budget exhausted", error);
+                }
+                if (deadlineExceeded) {
+                    return EBRetryDeadlineExceededException.stackless("Deadline exceeded", error);
+                }
+                return EBRetryFailedException.stackless("Failed", error);
+        }
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCEEDED;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Result getResult() {
+        return result;
+    }
+
+    public EBRetryJobError<Error> getError() {
+        return error;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryOutcome{" +
+                "status=" + status +
+                ", attempts=" + attempts +
+                ", error=" + error +
+                '}';
+    }
+}
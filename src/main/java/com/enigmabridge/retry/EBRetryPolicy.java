@@ -0,0 +1,44 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+/**
+ * Immutable, thread-safe retry policy. One policy instance serves all retries,
+ * per-execution data are kept in the small {@link EBRetryState} object.
+ * <p>
+ * {@link EBRetryStrategyPolicy} adapts the policy to the {@link EBRetryStrategy} interface.
+ * </p>
+ */
+public interface EBRetryPolicy {
+    String getName();
+
+    /**
+     * Creates state for a new execution.
+     * @return fresh state
+     */
+    EBRetryState newState();
+
+    /**
+     * Resets the state in place to the start of a new execution.
+     * @param state state to reset
+     */
+    void reset(EBRetryState state);
+
+    void onFail(EBRetryState state);
+    void onSuccess(EBRetryState state);
+    boolean shouldContinue(EBRetryState state);
+
+    /**
+     * Returns whether a new execution makes its first attempt, false e.g. if no attempts are allowed.
+     * Built-in policies answer without creating a state.
+     *
+     * @return true if the first attempt is made
+     */
+    default boolean shouldStart() {
+        return shouldContinue(newState());
+    }
+
+    long getWaitMilli(EBRetryState state);
+
+    JSONObject toJSON(JSONObject json);
+}
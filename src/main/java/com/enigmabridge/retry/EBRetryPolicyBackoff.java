@@ -0,0 +1,263 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable exponential backoff policy, shared by all retries.
+ * Configuration and the algorithm of {@link EBRetryStrategyBackoff}, per-execution data are kept
+ * in {@link EBRetryState}: current interval, number of attempts and the start time.
+ * <p>
+ * Build it with {@link EBRetryStrategyBackoff.Builder#buildPolicy()}.
+ * </p>
+ * <p>
+ * Random values are drawn from {@link ThreadLocalRandom}, without contention between threads.
+ * If the seed is set, each execution state gets its own {@link SplittableRandom} split from the seeded root,
+ * so the waits are reproducible, e.g., for load tests, while concurrent retries still spread apart.
+ * </p>
+ */
+public class EBRetryPolicyBackoff implements EBRetryPolicy {
+    private final int initialIntervalMillis;
+    private final double randomizationFactor;
+    private final double multiplier;
+    private final int maxIntervalMillis;
+    private final int maxAttempts;
+    private final int maxElapsedTimeMillis;
+    private final EBRetryJitter jitter;
+    private final Long seed;
+    private final EBRetryRandomSource randomSource;
+
+    public EBRetryPolicyBackoff() {
+        this(new EBRetryStrategyBackoff.Builder());
+    }
+
+    public EBRetryPolicyBackoff(JSONObject json) {
+        this(new EBRetryStrategyBackoff.Builder().setJSON(json));
+    }
+
+    protected EBRetryPolicyBackoff(EBRetryStrategyBackoff.Builder builder) {
+        initialIntervalMillis = builder.initialIntervalMillis;
+        randomizationFactor = builder.randomizationFactor;
+        multiplier = builder.multiplier;
+        maxIntervalMillis = builder.maxIntervalMillis;
+        maxElapsedTimeMillis = builder.maxElapsedTimeMillis;
+        maxAttempts = builder.maxAttempts;
+        jitter = builder.jitter;
+        seed = builder.seed;
+        randomSource = seed != null ? new EBRetryRandomSource(seed) : null;
+        if (jitter == null
+                || initialIntervalMillis <= 0
+                || (0 > randomizationFactor || randomizationFactor >= 1)
+                || multiplier < 1
+                || maxIntervalMillis < initialIntervalMillis
+                || maxElapsedTimeMillis <= 0) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return EBRetryStrategyBackoff.NAME;
+    }
+
+    @Override
+    public EBRetryState newState() {
+        final EBRetryState state = new EBRetryState();
+        reset(state);
+        return state;
+    }
+
+    @Override
+    public void reset(EBRetryState state) {
+        state.reset(initialIntervalMillis);
+        if (randomSource != null) {
+            randomSource.assign(state);
+        }
+    }
+
+    /**
+     * Returns randomized backoff interval for the current state, {@link BackOff#STOP} if the maximum
+     * elapsed time is over.
+     *
+     * @param state execution state
+     * @param inc if true, current interval is incremented
+     * @return backoff in milliseconds
+     */
+    public long nextBackOffMillis(EBRetryState state, boolean inc) {
+        // Make sure we have not gone over the maximum elapsed time.
+        if (state.getElapsedTimeMillis() > maxElapsedTimeMillis) {
+            return BackOff.STOP;
+        }
+
+        final long wait = jitter(state);
+        state.prevWaitMillis = wait;
+        if (inc) {
+            incrementCurrentInterval(state);
+        }
+
+        return wait;
+    }
+
+    /**
+     * Applies the jitter to the current interval.
+     *
+     * @param state execution state
+     * @return randomized interval in milliseconds
+     */
+    protected long jitter(EBRetryState state) {
+        if (jitter == EBRetryJitter.DECORRELATED) {
+            final long upper = Math.max(initialIntervalMillis, Math.min(maxIntervalMillis, state.prevWaitMillis * 3));
+            return initialIntervalMillis + (long) (random(state) * (upper - initialIntervalMillis + 1L));
+        }
+
+        return jitter.apply(state.intervalMillis, randomizationFactor, random(state));
+    }
+
+    /**
+     * @param state execution state
+     * @return random value from [0, 1)
+     */
+    protected double random(EBRetryState state) {
+        final SplittableRandom random = state.random;
+        return random != null ? random.nextDouble() : ThreadLocalRandom.current().nextDouble();
+    }
+
+    /**
+     * Increments the current interval by multiplying it with the multiplier.
+     * @param state execution state
+     */
+    protected void incrementCurrentInterval(EBRetryState state) {
+        // Check for overflow, if overflow is detected set the current interval to the max interval.
+        if (state.intervalMillis >= maxIntervalMillis / multiplier) {
+            state.intervalMillis = maxIntervalMillis;
+        } else {
+            state.intervalMillis *= multiplier;
+        }
+    }
+
+    @Override
+    public void onFail(EBRetryState state) {
+        state.attempts += 1;
+        incrementCurrentInterval(state);
+    }
+
+    @Override
+    public void onSuccess(EBRetryState state) {
+
+    }
+
+    @Override
+    public boolean shouldContinue(EBRetryState state) {
+        if (state.getElapsedTimeMillis() > maxElapsedTimeMillis) {
+            return false;
+        }
+
+        if (maxAttempts >= 0 && state.attempts >= maxAttempts) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean shouldStart() {
+        return maxAttempts != 0;
+    }
+
+    @Override
+    public long getWaitMilli(EBRetryState state) {
+        return nextBackOffMillis(state, false);
+    }
+
+    @Override
+    public JSONObject toJSON(JSONObject json) {
+        if (json == null) {
+            json = new JSONObject();
+        }
+
+        if (maxAttempts != EBRetryStrategyBackoff.DEFAULT_MAX_ATTEMPTS) {
+            json.put(EBRetryStrategyBackoff.FIELD_MAX_ATTEMPTS, maxAttempts);
+        }
+
+        if (maxElapsedTimeMillis != EBRetryStrategyBackoff.DEFAULT_MAX_ELAPSED_TIME_MILLIS) {
+            json.put(EBRetryStrategyBackoff.FIELD_MAX_ELAPSED_TIME_MILLIS, maxElapsedTimeMillis);
+        }
+
+        if (maxIntervalMillis != EBRetryStrategyBackoff.DEFAULT_MAX_INTERVAL_MILLIS) {
+            json.put(EBRetryStrategyBackoff.FIELD_MAX_INTERVAL_MILLIS, maxIntervalMillis);
+        }
+
+        if (multiplier != EBRetryStrategyBackoff.DEFAULT_MULTIPLIER) {
+            json.put(EBRetryStrategyBackoff.FIELD_MULTIPLIER, multiplier);
+        }
+
+        if (randomizationFactor != EBRetryStrategyBackoff.DEFAULT_RANDOMIZATION_FACTOR) {
+            json.put(EBRetryStrategyBackoff.FIELD_RANDOMIZATION_FACTOR, randomizationFactor);
+        }
+
+        if (initialIntervalMillis != EBRetryStrategyBackoff.DEFAULT_INITIAL_INTERVAL_MILLIS) {
+            json.put(EBRetryStrategyBackoff.FIELD_INITIAL_INTERVAL_MILLIS, initialIntervalMillis);
+        }
+
+        if (jitter != EBRetryStrategyBackoff.DEFAULT_JITTER) {
+            json.put(EBRetryStrategyBackoff.FIELD_JITTER, jitter.getName());
+        }
+
+        if (seed != null) {
+            json.put(EBRetryStrategyBackoff.FIELD_SEED, seed.longValue());
+        }
+
+        return json;
+    }
+
+    public int getInitialIntervalMillis() {
+        return initialIntervalMillis;
+    }
+
+    public double getRandomizationFactor() {
+        return randomizationFactor;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public int getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public int getMaxElapsedTimeMillis() {
+        return maxElapsedTimeMillis;
+    }
+
+    public EBRetryJitter getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return seed of the random generator, null if not seeded
+     */
+    public Long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryPolicyBackoff{" +
+                "initialIntervalMillis=" + initialIntervalMillis +
+                ", randomizationFactor=" + randomizationFactor +
+                ", multiplier=" + multiplier +
+                ", maxIntervalMillis=" + maxIntervalMillis +
+                ", maxAttempts=" + maxAttempts +
+                ", maxElapsedTimeMillis=" + maxElapsedTimeMillis +
+                ", jitter=" + jitter +
+                ", seed=" + seed +
+                '}';
+    }
+}
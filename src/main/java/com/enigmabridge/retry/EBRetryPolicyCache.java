@@ -0,0 +1,257 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache interning immutable policies parsed from the configuration.
+ * <p>
+ * Policies are keyed by the provider and the canonical form of the configuration, i.e., JSON with
+ * sorted keys, so equal configurations parse once and share one immutable policy instance. Restoring many
+ * persisted retries with a few distinct configurations parses each configuration once.
+ * </p>
+ * <p>
+ * Policies decoded by {@link EBRetryBinaryCodec} are interned by their binary configuration.
+ * </p>
+ * <p>
+ * Lookups do not lock. When the cache is full an arbitrary entry is evicted.
+ * Providers not backed by a policy are remembered and bypass the cache.
+ * </p>
+ */
+public class EBRetryPolicyCache {
+    /**
+     * The default maximal number of cached policies.
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private static final EBRetryPolicyCache DEFAULT = new EBRetryPolicyCache(DEFAULT_MAX_SIZE);
+
+    private final int maxSize;
+    private final ConcurrentMap<Key, EBRetryPolicy> cache = new ConcurrentHashMap<Key, EBRetryPolicy>();
+    private final Set<EBRetryStrategyProvider> noPolicy =
+            ConcurrentHashMap.<EBRetryStrategyProvider>newKeySet();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize maximal number of cached policies, {@code > 0}
+     */
+    public EBRetryPolicyCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns shared cache used by {@link EBRetryStrategyRegistry} and JSON constructors.
+     * @return default cache
+     */
+    public static EBRetryPolicyCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns interned policy for the configuration, parses it by the provider on a miss.
+     *
+     * @param provider provider parsing the configuration
+     * @param config configuration, may be null
+     * @return shared policy, null if the provider is not backed by a policy
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    public EBRetryPolicy get(EBRetryStrategyProvider provider, JSONObject config) {
+        if (provider == null) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        if (noPolicy.contains(provider)) {
+            return null;
+        }
+
+        final Key key = new Key(provider, canonical(config));
+        final EBRetryPolicy cached = cache.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        final EBRetryPolicy parsed = provider.policyFromJSON(config);
+        if (parsed == null) {
+            noPolicy.add(provider);
+            return null;
+        }
+
+        if (cache.size() >= maxSize) {
+            evictOne();
+        }
+
+        final EBRetryPolicy raced = cache.putIfAbsent(key, parsed);
+        return raced != null ? raced : parsed;
+    }
+
+    /**
+     * Returns interned policy equal to the policy decoded from the binary configuration.
+     *
+     * @param provider provider which decoded the policy
+     * @param config binary configuration of the policy, not modified afterwards
+     * @param policy decoded policy
+     * @return shared policy, the given one if there was none
+     */
+    public EBRetryPolicy intern(EBRetryStrategyProvider provider, byte[] config, EBRetryPolicy policy) {
+        if (provider == null || config == null || policy == null) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        final Key key = new Key(provider, config);
+        final EBRetryPolicy cached = cache.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        if (cache.size() >= maxSize) {
+            evictOne();
+        }
+
+        final EBRetryPolicy raced = cache.putIfAbsent(key, policy);
+        return raced != null ? raced : policy;
+    }
+
+    public void clear() {
+        cache.clear();
+        noPolicy.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private void evictOne() {
+        final Iterator<Key> it = cache.keySet().iterator();
+        if (it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Returns canonical form of the configuration, JSON with recursively sorted keys.
+     *
+     * @param config configuration, may be null
+     * @return canonical string
+     */
+    public static String canonical(JSONObject config) {
+        final StringBuilder sb = new StringBuilder(64);
+        writeCanonical(sb, config);
+        return sb.toString();
+    }
+
+    private static void writeCanonical(StringBuilder sb, Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            sb.append("null");
+
+        } else if (value instanceof JSONObject) {
+            final JSONObject json = (JSONObject) value;
+            final String[] keys = json.keySet().toArray(new String[json.length()]);
+            Arrays.sort(keys);
+
+            sb.append('{');
+            for (int i = 0; i < keys.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(JSONObject.quote(keys[i])).append(':');
+                writeCanonical(sb, json.opt(keys[i]));
+            }
+            sb.append('}');
+
+        } else if (value instanceof JSONArray) {
+            final JSONArray arr = (JSONArray) value;
+            sb.append('[');
+            for (int i = 0, len = arr.length(); i < len; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                writeCanonical(sb, arr.opt(i));
+            }
+            sb.append(']');
+
+        } else if (value instanceof String) {
+            sb.append(JSONObject.quote((String) value));
+
+        } else {
+            sb.append(value.toString());
+        }
+    }
+
+    /**
+     * Cache key, provider identity and the canonical or the binary configuration.
+     */
+    private static final class Key {
+        private final EBRetryStrategyProvider provider;
+        private final String config;
+        private final byte[] binary;
+        private final int hash;
+
+        Key(EBRetryStrategyProvider provider, String config) {
+            this.provider = provider;
+            this.config = config;
+            this.binary = null;
+            this.hash = 31 * System.identityHashCode(provider) + config.hashCode();
+        }
+
+        Key(EBRetryStrategyProvider provider, byte[] binary) {
+            this.provider = provider;
+            this.config = null;
+            this.binary = binary;
+            this.hash = 31 * System.identityHashCode(provider) + Arrays.hashCode(binary);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            final Key key = (Key) o;
+            if (provider != key.provider) return false;
+            return config != null ? config.equals(key.config) : Arrays.equals(binary, key.binary);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryPolicyCache{" +
+                "size=" + cache.size() +
+                ", maxSize=" + maxSize +
+                ", hits=" + hits.get() +
+                ", misses=" + misses.get() +
+                '}';
+    }
+}
@@ -0,0 +1,385 @@
+package com.enigmabridge.retry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles deterministic retry policies to the precomputed {@link EBRetrySchedule} table.
+ * <p>
+ * Besides existing policies, the schedule can be described in a short text form, segments
+ * separated by commas, optionally prefixed with {@code then}:
+ * </p>
+ * <pre>
+ * 3x immediate, then exp(500ms, x1.5, max 60s), stop after 15m
+ * 2x fixed(1s), then linear(2s, +1s, max 10s), jitter full, stop after 20 attempts
+ * </pre>
+ * <ul>
+ * <li>{@code [Nx] immediate} - N retries without waiting.</li>
+ * <li>{@code [Nx] fixed(D)} or {@code [Nx] D} - N retries waiting D.</li>
+ * <li>{@code [Nx] exp(D, xM, max C)} - waits starting at D, multiplied by M, capped by C.</li>
+ * <li>{@code [Nx] linear(D, +S, max C)} - waits starting at D, increased by S, capped by C.</li>
+ * <li>{@code repeat} - repeats the last wait when the table is exhausted.</li>
+ * <li>{@code stop after D} or {@code stop after N attempts} - maximal elapsed time or number of attempts.</li>
+ * <li>{@code jitter none|proportional [F]|full|equal} - jitter, F is the randomization factor.</li>
+ * <li>{@code seed N} - seed of the random generator.</li>
+ * </ul>
+ * <p>
+ * Durations are numbers with an optional unit {@code ms}, {@code s}, {@code m} or {@code h}, default is ms.
+ * Growing segment without a count is unbounded, it has to be the last one and must have a cap,
+ * the capped wait is then repeated.
+ * </p>
+ */
+public class EBRetryPolicyCompiler {
+    /**
+     * Maximal number of table entries generated for unbounded policies, the last one is repeated.
+     */
+    public static final int MAX_TABLE_SIZE = 1024;
+
+    private static final Pattern COUNT = Pattern.compile("^(?:(\\d+)\\s*x\\s+)?(.+)$");
+    private static final Pattern CALL = Pattern.compile("^(\\w+)\\s*\\((.*)\\)$");
+    private static final Pattern DURATION = Pattern.compile("^(\\d+)\\s*(ms|s|m|h)?$");
+    private static final Pattern STOP = Pattern.compile("^stop\\s+after\\s+(.+?)(\\s+attempts)?$");
+    private static final Pattern JITTER = Pattern.compile("^jitter\\s+(\\w+)(?:\\s+([0-9.]+))?$");
+    private static final Pattern SEED = Pattern.compile("^seed\\s+(-?\\d+)$");
+
+    private EBRetryPolicyCompiler() {
+    }
+
+    /**
+     * Compiles the strategy to the schedule.
+     *
+     * @param strategy simple, backoff or policy backed strategy
+     * @return schedule
+     * @throws IllegalArgumentException if the strategy cannot be compiled
+     */
+    public static EBRetrySchedule compile(EBRetryStrategy strategy) {
+        if (strategy instanceof EBRetryStrategyBackoff) {
+            return compile(((EBRetryStrategyBackoff) strategy).getPolicy());
+
+        } else if (strategy instanceof EBRetryStrategyPolicy) {
+            return compile(((EBRetryStrategyPolicy) strategy).getPolicy());
+
+        } else if (strategy instanceof EBRetryStrategySimple) {
+            return compile(new EBRetryPolicySimple(((EBRetryStrategySimple) strategy).getMaxAttempts()));
+
+        } else {
+            throw new IllegalArgumentException("Strategy cannot be compiled");
+        }
+    }
+
+    /**
+     * Compiles the policy to the schedule.
+     *
+     * @param policy deterministic policy
+     * @return schedule
+     * @throws IllegalArgumentException if the policy cannot be compiled
+     */
+    public static EBRetrySchedule compile(EBRetryPolicy policy) {
+        if (policy instanceof EBRetrySchedule) {
+            return (EBRetrySchedule) policy;
+
+        } else if (policy instanceof EBRetryPolicySimple) {
+            return new EBRetrySchedule.Builder()
+                    .addDelay(0)
+                    .setRepeatLast(true)
+                    .setMaxAttempts(((EBRetryPolicySimple) policy).getMaxAttempts())
+                    .build();
+
+        } else if (policy instanceof EBRetryPolicyBackoff) {
+            return compileBackoff((EBRetryPolicyBackoff) policy);
+
+        } else if (policy instanceof EBRetryPolicyInterval) {
+            return compileInterval((EBRetryPolicyInterval) policy);
+
+        } else {
+            throw new IllegalArgumentException("Policy cannot be compiled");
+        }
+    }
+
+    private static EBRetrySchedule compileBackoff(EBRetryPolicyBackoff policy) {
+        if (policy.getJitter() == EBRetryJitter.DECORRELATED) {
+            throw new IllegalArgumentException("Decorrelated jitter cannot be compiled");
+        }
+
+        final EBRetrySchedule.Builder builder = new EBRetrySchedule.Builder()
+                .setRepeatLast(true)
+                .setMaxAttempts(policy.getMaxAttempts())
+                .setMaxElapsedTimeMillis(policy.getMaxElapsedTimeMillis())
+                .setJitter(policy.getJitter())
+                .setRandomizationFactor(policy.getRandomizationFactor())
+                .setSeed(policy.getSeed());
+
+        // The interval is incremented on each failure before the wait is computed.
+        final EBRetryState state = policy.newState();
+        final int limit = policy.getMaxAttempts() >= 0 ? Math.min(policy.getMaxAttempts(), MAX_TABLE_SIZE) : MAX_TABLE_SIZE;
+        int last = -1;
+        while (builder.getSize() < Math.max(1, limit)) {
+            policy.incrementCurrentInterval(state);
+            if (state.intervalMillis == last) {
+                break;
+            }
+
+            last = state.intervalMillis;
+            builder.addDelay(last);
+        }
+
+        return builder.build();
+    }
+
+    private static EBRetrySchedule compileInterval(EBRetryPolicyInterval policy) {
+        final EBRetrySchedule.Builder builder = new EBRetrySchedule.Builder()
+                .setRepeatLast(true)
+                .setMaxAttempts(policy.getMaxAttempts())
+                .setMaxElapsedTimeMillis(policy.getMaxElapsedTimeMillis())
+                .setJitter(policy.getJitter())
+                .setRandomizationFactor(policy.getRandomizationFactor())
+                .setSeed(policy.getSeed());
+
+        final int limit = policy.getMaxAttempts() >= 0 ? Math.min(policy.getMaxAttempts(), MAX_TABLE_SIZE) : MAX_TABLE_SIZE;
+        for (int failures = 1; failures <= Math.max(1, limit); failures++) {
+            final int delay = policy.getBaseDelayMillis(failures);
+            builder.addDelay(delay);
+            if (delay >= policy.getMaxIntervalMillis() || !policy.isGrowing()) {
+                break;
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Parses the text description of the schedule.
+     *
+     * @param spec description, e.g., {@code "3x immediate, then exp(500ms, x1.5, max 60s), stop after 15m"}
+     * @return schedule
+     * @throws IllegalArgumentException if the description is invalid
+     */
+    public static EBRetrySchedule parse(String spec) {
+        if (spec == null) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        final EBRetrySchedule.Builder builder = new EBRetrySchedule.Builder();
+        boolean open = false;
+        for (String raw : split(spec)) {
+            String segment = raw.trim().toLowerCase(Locale.ROOT);
+            if (segment.startsWith("then ")) {
+                segment = segment.substring(5).trim();
+            }
+
+            if (segment.isEmpty()) {
+                throw invalid(raw);
+            }
+
+            if (parseOption(builder, segment)) {
+                continue;
+            }
+
+            if (open) {
+                throw new IllegalArgumentException("Invalid schedule, segment after unbounded one: " + raw.trim());
+            }
+
+            open = parseDelays(builder, segment, raw);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Parses non-delay segment.
+     * @return true if segment was recognized
+     */
+    private static boolean parseOption(EBRetrySchedule.Builder builder, String segment) {
+        if ("repeat".equals(segment)) {
+            builder.setRepeatLast(true);
+            return true;
+        }
+
+        Matcher m = STOP.matcher(segment);
+        if (m.matches()) {
+            if (m.group(2) != null) {
+                builder.setMaxAttempts(parseInt(m.group(1), segment));
+            } else {
+                builder.setMaxElapsedTimeMillis(toInt(parseDuration(m.group(1), segment)));
+            }
+            return true;
+        }
+
+        m = JITTER.matcher(segment);
+        if (m.matches()) {
+            builder.setJitter(EBRetryJitter.fromName(m.group(1)));
+            if (m.group(2) != null) {
+                builder.setRandomizationFactor(parseDouble(m.group(2), segment));
+            }
+            return true;
+        }
+
+        m = SEED.matcher(segment);
+        if (m.matches()) {
+            try {
+                builder.setSeed(Long.parseLong(m.group(1)));
+            } catch (NumberFormatException e) {
+                throw invalid(segment);
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Parses delay segment.
+     * @return true if the segment is unbounded
+     */
+    private static boolean parseDelays(EBRetrySchedule.Builder builder, String segment, String raw) {
+        final Matcher cm = COUNT.matcher(segment);
+        if (!cm.matches()) {
+            throw invalid(raw);
+        }
+
+        final int count = cm.group(1) != null ? parseInt(cm.group(1), raw) : -1;
+        final String body = cm.group(2).trim();
+
+        if ("immediate".equals(body)) {
+            builder.addDelays(count < 0 ? 1 : count, 0);
+            return false;
+        }
+
+        final Matcher call = CALL.matcher(body);
+        if (!call.matches()) {
+            builder.addDelays(count < 0 ? 1 : count, toInt(parseDuration(body, raw)));
+            return false;
+        }
+
+        final String fn = call.group(1);
+        final String[] args = call.group(2).split(",");
+        if ("fixed".equals(fn)) {
+            if (args.length != 1) {
+                throw invalid(raw);
+            }
+
+            builder.addDelays(count < 0 ? 1 : count, toInt(parseDuration(args[0].trim(), raw)));
+            return false;
+        }
+
+        final boolean exp = "exp".equals(fn);
+        if ((!exp && !"linear".equals(fn)) || args.length < 2 || args.length > 3) {
+            throw invalid(raw);
+        }
+
+        final long start = parseDuration(args[0].trim(), raw);
+        final String stepArg = args[1].trim();
+        if (stepArg.isEmpty() || stepArg.charAt(0) != (exp ? 'x' : '+')) {
+            throw invalid(raw);
+        }
+
+        final double multiplier = exp ? parseDouble(stepArg.substring(1).trim(), raw) : 1.0;
+        final long step = exp ? 0 : parseDuration(stepArg.substring(1).trim(), raw);
+        long cap = Integer.MAX_VALUE;
+        if (args.length == 3) {
+            final String capArg = args[2].trim();
+            if (!capArg.startsWith("max")) {
+                throw invalid(raw);
+            }
+            cap = parseDuration(capArg.substring(3).trim(), raw);
+        }
+
+        if ((exp && multiplier < 1) || cap < start || (count < 0 && args.length < 3)) {
+            throw invalid(raw);
+        }
+
+        // Accumulated as double, truncating each step would stall small delays, e.g., 1 ms x1.5.
+        // Unbounded sequence ends at the cap, or right away if it does not grow.
+        final boolean grows = exp ? multiplier > 1 : step > 0;
+        final int limit = count < 0 ? MAX_TABLE_SIZE : count;
+        double value = start;
+        for (int i = 0; i < limit; i++) {
+            final long current = (long) Math.min(cap, value);
+            builder.addDelay(toInt(current));
+            if (count < 0 && (current >= cap || !grows)) {
+                break;
+            }
+
+            value = exp ? value * multiplier : value + step;
+        }
+
+        if (count < 0) {
+            builder.setRepeatLast(true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Splits the description by commas outside of parentheses.
+     */
+    private static List<String> split(String spec) {
+        final List<String> segments = new ArrayList<String>();
+        int depth = 0;
+        int from = 0;
+        for (int i = 0; i < spec.length(); i++) {
+            final char c = spec.charAt(i);
+            if (c == '(') {
+                depth += 1;
+            } else if (c == ')') {
+                depth -= 1;
+            } else if (c == ',' && depth == 0) {
+                segments.add(spec.substring(from, i));
+                from = i + 1;
+            }
+        }
+
+        segments.add(spec.substring(from));
+        return segments;
+    }
+
+    static long parseDuration(String duration, String segment) {
+        final Matcher m = DURATION.matcher(duration);
+        if (!m.matches()) {
+            throw invalid(segment);
+        }
+
+        final long value = parseLong(m.group(1), segment);
+        final String unit = m.group(2);
+        if (unit == null || "ms".equals(unit)) {
+            return value;
+        } else if ("s".equals(unit)) {
+            return value * 1000L;
+        } else if ("m".equals(unit)) {
+            return value * 60000L;
+        } else {
+            return value * 3600000L;
+        }
+    }
+
+    private static int toInt(long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
+    }
+
+    private static long parseLong(String value, String segment) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw invalid(segment);
+        }
+    }
+
+    private static int parseInt(String value, String segment) {
+        return toInt(parseLong(value, segment));
+    }
+
+    private static double parseDouble(String value, String segment) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw invalid(segment);
+        }
+    }
+
+    private static IllegalArgumentException invalid(String segment) {
+        return new IllegalArgumentException("Invalid schedule segment: " + segment.trim());
+    }
+}
@@ -0,0 +1,294 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable composite policy chaining sub-policies in stages, e.g., two immediate retries,
+ * then exponential backoff for 10 minutes, then a slow fixed poll.
+ * <p>
+ * Each stage but the last one is limited by the number of its failures, by the elapsed time since
+ * the start of the execution, or both. The stage also ends when its policy stops retrying.
+ * The failure exceeding the stage limit is passed to the next stage.
+ * </p>
+ * <p>
+ * State of the stage policy is reset when the stage starts, so the policy's own limits count from
+ * the stage start. The last stage ends the execution when its policy stops, e.g., after the default
+ * maximal elapsed time of 15 minutes of interval and backoff policies. Raise it for a long-running poll.
+ * </p>
+ */
+public class EBRetryPolicyComposite implements EBRetryPolicy {
+    public static final String NAME = "composite";
+
+    protected static final String FIELD_STAGES = "stages";
+    protected static final String FIELD_ATTEMPTS = "attempts";
+    protected static final String FIELD_ELAPSED_MILLIS = "elapsedMillis";
+
+    private final Stage[] stages;
+
+    public EBRetryPolicyComposite(JSONObject json) {
+        this(new Builder().setJSON(json));
+    }
+
+    protected EBRetryPolicyComposite(Builder builder) {
+        stages = builder.stages.toArray(new Stage[builder.stages.size()]);
+        if (stages.length == 0) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        for (int i = 0; i < stages.length - 1; i++) {
+            if (stages[i].attempts < 0 && stages[i].elapsedMillis < 0) {
+                throw new IllegalArgumentException("Only the last stage can be unbounded");
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public EBRetryState newState() {
+        final State state = new State(stages.length);
+        for (int i = 0; i < stages.length; i++) {
+            state.states[i] = stages[i].policy.newState();
+        }
+
+        reset(state);
+        return state;
+    }
+
+    @Override
+    public void reset(EBRetryState state) {
+        final State st = (State) state;
+        st.reset(0);
+        st.stage = 0;
+        stages[0].policy.reset(st.states[0]);
+    }
+
+    @Override
+    public void onFail(EBRetryState state) {
+        final State st = (State) state;
+        st.attempts += 1;
+        if (st.stage < stages.length - 1 && isExhausted(st)) {
+            st.stage += 1;
+            stages[st.stage].policy.reset(st.states[st.stage]);
+        }
+
+        stages[st.stage].policy.onFail(st.states[st.stage]);
+    }
+
+    @Override
+    public void onSuccess(EBRetryState state) {
+        final State st = (State) state;
+        stages[st.stage].policy.onSuccess(st.states[st.stage]);
+    }
+
+    @Override
+    public boolean shouldContinue(EBRetryState state) {
+        final State st = (State) state;
+        return st.stage < stages.length - 1 || !isExhausted(st);
+    }
+
+    @Override
+    public boolean shouldStart() {
+        final Stage first = stages[0];
+        return stages.length > 1 || (first.attempts != 0 && first.elapsedMillis != 0 && first.policy.shouldStart());
+    }
+
+    @Override
+    public long getWaitMilli(EBRetryState state) {
+        final State st = (State) state;
+        final EBRetryState sub = st.states[st.stage];
+        st.intervalMillis = sub.intervalMillis;
+        return stages[st.stage].policy.getWaitMilli(sub);
+    }
+
+    /**
+     * Stage is exhausted if its limit is reached or its policy stops retrying.
+     */
+    private boolean isExhausted(State st) {
+        final Stage stage = stages[st.stage];
+        final EBRetryState sub = st.states[st.stage];
+        if (stage.attempts >= 0 && sub.attempts >= stage.attempts) {
+            return true;
+        }
+
+        if (stage.elapsedMillis >= 0 && st.getElapsedTimeMillis() >= stage.elapsedMillis) {
+            return true;
+        }
+
+        return !stage.policy.shouldContinue(sub);
+    }
+
+    @Override
+    public JSONObject toJSON(JSONObject json) {
+        if (json == null) {
+            json = new JSONObject();
+        }
+
+        final JSONArray arr = new JSONArray();
+        for (Stage stage : stages) {
+            final JSONObject stageJson = EBRetryStrategyFactory.toJSON(stage.policy, null);
+            if (stage.attempts >= 0) {
+                stageJson.put(FIELD_ATTEMPTS, stage.attempts);
+            }
+            if (stage.elapsedMillis >= 0) {
+                stageJson.put(FIELD_ELAPSED_MILLIS, stage.elapsedMillis);
+            }
+            arr.put(stageJson);
+        }
+
+        json.put(FIELD_STAGES, arr);
+        return json;
+    }
+
+    public int getStageCount() {
+        return stages.length;
+    }
+
+    public EBRetryPolicy getStagePolicy(int idx) {
+        return stages[idx].policy;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("EBRetryPolicyComposite{stages=[");
+        for (int i = 0; i < stages.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(stages[i].policy)
+                    .append(" attempts=").append(stages[i].attempts)
+                    .append(" elapsedMillis=").append(stages[i].elapsedMillis);
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * Stage of the composite policy.
+     */
+    protected static class Stage {
+        final EBRetryPolicy policy;
+        final int attempts;
+        final long elapsedMillis;
+
+        Stage(EBRetryPolicy policy, int attempts, long elapsedMillis) {
+            this.policy = policy;
+            this.attempts = attempts;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    /**
+     * Execution state of the composite policy, holds states of all stages.
+     */
+    protected static class State extends EBRetryState {
+        final EBRetryState[] states;
+        int stage;
+
+        State(int stages) {
+            this.states = new EBRetryState[stages];
+        }
+
+        public int getStage() {
+            return stage;
+        }
+
+        @Override
+        public String toString() {
+            return "EBRetryPolicyComposite.State{" +
+                    "attempts=" + attempts +
+                    ", stage=" + stage +
+                    ", stageState=" + states[stage] +
+                    '}';
+        }
+    }
+
+    /**
+     * Builder for {@link EBRetryPolicyComposite}.
+     */
+    public static class Builder {
+        final List<Stage> stages = new ArrayList<Stage>();
+
+        public Builder() {
+        }
+
+        public EBRetryPolicyComposite build() {
+            return new EBRetryPolicyComposite(this);
+        }
+
+        /**
+         * Adds stage limited by the number of failures, the elapsed time, or both.
+         *
+         * @param policy policy of the stage
+         * @param attempts maximal number of failures handled by the stage, negative for no limit
+         * @param elapsedMillis stage ends when this time elapsed since the start of the execution, negative for no limit
+         * @return this
+         */
+        public Builder addStage(EBRetryPolicy policy, int attempts, long elapsedMillis) {
+            if (policy == null) {
+                throw new IllegalArgumentException("Invalid input arguments");
+            }
+
+            stages.add(new Stage(policy, attempts, elapsedMillis));
+            return this;
+        }
+
+        /**
+         * Adds stage handling the given number of failures.
+         * @param policy policy of the stage
+         * @param attempts number of failures
+         * @return this
+         */
+        public Builder addStageAttempts(EBRetryPolicy policy, int attempts) {
+            return addStage(policy, attempts, -1);
+        }
+
+        /**
+         * Adds stage lasting until the given time elapsed since the start of the execution.
+         * @param policy policy of the stage
+         * @param elapsedMillis milliseconds
+         * @return this
+         */
+        public Builder addStageElapsed(EBRetryPolicy policy, long elapsedMillis) {
+            return addStage(policy, -1, elapsedMillis);
+        }
+
+        /**
+         * Adds the last stage, limited only by its policy.
+         * @param policy policy of the stage
+         * @return this
+         */
+        public Builder addStage(EBRetryPolicy policy) {
+            return addStage(policy, -1, -1);
+        }
+
+        /**
+         * Reads serialized settings from the JSON
+         *
+         * @param json json to use
+         * @return this
+         */
+        public Builder setJSON(JSONObject json) {
+            if (json == null || !json.has(FIELD_STAGES)) {
+                return this;
+            }
+
+            final JSONArray arr = json.getJSONArray(FIELD_STAGES);
+            for (int i = 0, len = arr.length(); i < len; i++) {
+                final JSONObject stageJson = arr.getJSONObject(i);
+                final EBRetryPolicy policy = EBRetryStrategyFactory.policyFromJSON(stageJson);
+                final int attempts = stageJson.has(FIELD_ATTEMPTS) ? EBUtils.getAsInteger(stageJson, FIELD_ATTEMPTS, 10) : -1;
+                final long elapsed = stageJson.has(FIELD_ELAPSED_MILLIS) ? EBUtils.getAsLong(stageJson, FIELD_ELAPSED_MILLIS, 10) : -1;
+                addStage(policy, attempts, elapsed);
+            }
+
+            return this;
+        }
+    }
+}
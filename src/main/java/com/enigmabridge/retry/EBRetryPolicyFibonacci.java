@@ -0,0 +1,55 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Immutable Fibonacci policy, the wait after n-th failure is {@code initial * fib(n)}, i.e.,
+ * 1, 1, 2, 3, 5, 8, ... multiples of the initial interval.
+ * Multiples below the cap are precomputed, the wait is a table lookup.
+ */
+public class EBRetryPolicyFibonacci extends EBRetryPolicyInterval {
+    public static final String NAME = "fibonacci";
+
+    private final long[] delays;
+
+    public EBRetryPolicyFibonacci(JSONObject json) {
+        this(new Builder().setJSON(json));
+    }
+
+    protected EBRetryPolicyFibonacci(Builder builder) {
+        super(builder);
+        if (initialIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        long[] table = new long[16];
+        int size = 0;
+        long prev = 0;
+        long cur = 1;
+        while (size == 0 || table[size - 1] < maxIntervalMillis) {
+            if (size == table.length) {
+                table = Arrays.copyOf(table, size * 2);
+            }
+
+            table[size++] = cur * initialIntervalMillis;
+
+            final long next = prev + cur;
+            prev = cur;
+            cur = next;
+        }
+
+        delays = Arrays.copyOf(table, size);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected long computeDelayMillis(int failures) {
+        return failures <= delays.length ? delays[failures - 1] : maxIntervalMillis;
+    }
+}
@@ -0,0 +1,39 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+/**
+ * Immutable fixed interval policy, waits the initial interval before each retry.
+ * The interval is not capped by the maximal interval, e.g., a 5 minute poll needs no cap change.
+ */
+public class EBRetryPolicyFixed extends EBRetryPolicyInterval {
+    public static final String NAME = "fixed";
+
+    public EBRetryPolicyFixed(JSONObject json) {
+        this(new Builder().setJSON(json));
+    }
+
+    protected EBRetryPolicyFixed(Builder builder) {
+        super(builder);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected boolean isCapped() {
+        return false;
+    }
+
+    @Override
+    protected boolean isGrowing() {
+        return false;
+    }
+
+    @Override
+    protected long computeDelayMillis(int failures) {
+        return initialIntervalMillis;
+    }
+}
@@ -0,0 +1,416 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Base of the immutable policies computing the wait from the number of failures,
+ * capped by the maximal interval. Jitter is applied on top of the base wait.
+ * <p>
+ * Subclasses: {@link EBRetryPolicyFixed}, {@link EBRetryPolicyLinear}, {@link EBRetryPolicyFibonacci}
+ * and {@link EBRetryPolicyPolynomial}, all built by {@link Builder}.
+ * </p>
+ */
+public abstract class EBRetryPolicyInterval implements EBRetryPolicy {
+    /**
+     * The default initial retry interval in milliseconds.
+     */
+    public static final int DEFAULT_INITIAL_INTERVAL_MILLIS = EBRetryStrategyBackoff.DEFAULT_INITIAL_INTERVAL_MILLIS;
+    /**
+     * The default maximum back off time in milliseconds.
+     */
+    public static final int DEFAULT_MAX_INTERVAL_MILLIS = EBRetryStrategyBackoff.DEFAULT_MAX_INTERVAL_MILLIS;
+    /**
+     * The default maximum elapsed time in milliseconds.
+     */
+    public static final int DEFAULT_MAX_ELAPSED_TIME_MILLIS = EBRetryStrategyBackoff.DEFAULT_MAX_ELAPSED_TIME_MILLIS;
+    /**
+     * The default maximum number of attempts, no limit.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = EBRetryStrategyBackoff.DEFAULT_MAX_ATTEMPTS;
+    /**
+     * The default jitter.
+     */
+    public static final EBRetryJitter DEFAULT_JITTER = EBRetryStrategyBackoff.DEFAULT_JITTER;
+    /**
+     * The default randomization factor.
+     */
+    public static final double DEFAULT_RANDOMIZATION_FACTOR = EBRetryStrategyBackoff.DEFAULT_RANDOMIZATION_FACTOR;
+    /**
+     * The default increment of the linear policy in milliseconds.
+     */
+    public static final int DEFAULT_INCREMENT_MILLIS = 500;
+    /**
+     * The default exponent of the polynomial policy.
+     */
+    public static final double DEFAULT_EXPONENT = 2.0;
+
+    protected static final String FIELD_INCREMENT_MILLIS = "incMillis";
+    protected static final String FIELD_EXPONENT = "exp";
+
+    protected final int initialIntervalMillis;
+    protected final int maxIntervalMillis;
+    protected final int maxAttempts;
+    protected final int maxElapsedTimeMillis;
+    protected final EBRetryJitter jitter;
+    protected final double randomizationFactor;
+    protected final Long seed;
+    protected final EBRetryRandomSource randomSource;
+
+    protected EBRetryPolicyInterval(Builder builder) {
+        initialIntervalMillis = builder.initialIntervalMillis;
+        maxIntervalMillis = builder.maxIntervalMillis;
+        maxAttempts = builder.maxAttempts;
+        maxElapsedTimeMillis = builder.maxElapsedTimeMillis;
+        jitter = builder.jitter;
+        randomizationFactor = builder.randomizationFactor;
+        seed = builder.seed;
+        randomSource = seed != null ? new EBRetryRandomSource(seed) : null;
+        if (jitter == null
+                || jitter == EBRetryJitter.DECORRELATED
+                || initialIntervalMillis < 0
+                || (isCapped() && maxIntervalMillis < initialIntervalMillis)
+                || (0 > randomizationFactor || randomizationFactor >= 1)
+                || maxElapsedTimeMillis <= 0) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+    }
+
+    /**
+     * Computes the base wait, before capping.
+     *
+     * @param failures number of failed attempts, {@code >= 1}
+     * @return wait in milliseconds
+     */
+    protected abstract long computeDelayMillis(int failures);
+
+    /**
+     * @return false if the wait is not capped by the maximal interval
+     */
+    protected boolean isCapped() {
+        return true;
+    }
+
+    /**
+     * @return false if the base wait is the same after each failure
+     */
+    protected boolean isGrowing() {
+        return true;
+    }
+
+    /**
+     * Returns base wait (without jitter) after the given number of failures, capped by the maximal interval if capped.
+     *
+     * @param failures number of failed attempts
+     * @return wait in milliseconds
+     */
+    public int getBaseDelayMillis(int failures) {
+        final long delay = computeDelayMillis(Math.max(1, failures));
+        return (int) (isCapped() ? Math.min(maxIntervalMillis, delay) : delay);
+    }
+
+    @Override
+    public EBRetryState newState() {
+        final EBRetryState state = new EBRetryState();
+        reset(state);
+        return state;
+    }
+
+    @Override
+    public void reset(EBRetryState state) {
+        state.reset(initialIntervalMillis);
+        if (randomSource != null) {
+            randomSource.assign(state);
+        }
+    }
+
+    @Override
+    public void onFail(EBRetryState state) {
+        state.attempts += 1;
+    }
+
+    @Override
+    public void onSuccess(EBRetryState state) {
+
+    }
+
+    @Override
+    public boolean shouldContinue(EBRetryState state) {
+        if (state.getElapsedTimeMillis() > maxElapsedTimeMillis) {
+            return false;
+        }
+
+        return maxAttempts < 0 || state.attempts < maxAttempts;
+    }
+
+    @Override
+    public boolean shouldStart() {
+        return maxAttempts != 0;
+    }
+
+    @Override
+    public long getWaitMilli(EBRetryState state) {
+        if (state.getElapsedTimeMillis() > maxElapsedTimeMillis) {
+            return BackOff.STOP;
+        }
+
+        final int base = getBaseDelayMillis(state.attempts);
+        state.intervalMillis = base;
+        if (jitter == EBRetryJitter.NONE) {
+            return base;
+        }
+
+        final SplittableRandom random = state.random;
+        return jitter.apply(base, randomizationFactor,
+                random != null ? random.nextDouble() : ThreadLocalRandom.current().nextDouble());
+    }
+
+    @Override
+    public JSONObject toJSON(JSONObject json) {
+        if (json == null) {
+            json = new JSONObject();
+        }
+
+        if (initialIntervalMillis != DEFAULT_INITIAL_INTERVAL_MILLIS) {
+            json.put(EBRetryStrategyBackoff.FIELD_INITIAL_INTERVAL_MILLIS, initialIntervalMillis);
+        }
+
+        if (maxIntervalMillis != DEFAULT_MAX_INTERVAL_MILLIS) {
+            json.put(EBRetryStrategyBackoff.FIELD_MAX_INTERVAL_MILLIS, maxIntervalMillis);
+        }
+
+        if (maxAttempts != DEFAULT_MAX_ATTEMPTS) {
+            json.put(EBRetryStrategyBackoff.FIELD_MAX_ATTEMPTS, maxAttempts);
+        }
+
+        if (maxElapsedTimeMillis != DEFAULT_MAX_ELAPSED_TIME_MILLIS) {
+            json.put(EBRetryStrategyBackoff.FIELD_MAX_ELAPSED_TIME_MILLIS, maxElapsedTimeMillis);
+        }
+
+        if (jitter != DEFAULT_JITTER) {
+            json.put(EBRetryStrategyBackoff.FIELD_JITTER, jitter.getName());
+        }
+
+        if (randomizationFactor != DEFAULT_RANDOMIZATION_FACTOR) {
+            json.put(EBRetryStrategyBackoff.FIELD_RANDOMIZATION_FACTOR, randomizationFactor);
+        }
+
+        if (seed != null) {
+            json.put(EBRetryStrategyBackoff.FIELD_SEED, seed.longValue());
+        }
+
+        return json;
+    }
+
+    public int getInitialIntervalMillis() {
+        return initialIntervalMillis;
+    }
+
+    public int getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public int getMaxElapsedTimeMillis() {
+        return maxElapsedTimeMillis;
+    }
+
+    public EBRetryJitter getJitter() {
+        return jitter;
+    }
+
+    public double getRandomizationFactor() {
+        return randomizationFactor;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "initialIntervalMillis=" + initialIntervalMillis +
+                ", maxIntervalMillis=" + maxIntervalMillis +
+                ", maxAttempts=" + maxAttempts +
+                ", maxElapsedTimeMillis=" + maxElapsedTimeMillis +
+                ", jitter=" + jitter +
+                ", randomizationFactor=" + randomizationFactor +
+                ", seed=" + seed +
+                '}';
+    }
+
+    /**
+     * Builder for the {@link EBRetryPolicyInterval} policies.
+     */
+    public static class Builder {
+        int initialIntervalMillis = DEFAULT_INITIAL_INTERVAL_MILLIS;
+        int maxIntervalMillis = DEFAULT_MAX_INTERVAL_MILLIS;
+        int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        int maxElapsedTimeMillis = DEFAULT_MAX_ELAPSED_TIME_MILLIS;
+        EBRetryJitter jitter = DEFAULT_JITTER;
+        double randomizationFactor = DEFAULT_RANDOMIZATION_FACTOR;
+        Long seed;
+        int incrementMillis = DEFAULT_INCREMENT_MILLIS;
+        double exponent = DEFAULT_EXPONENT;
+
+        public Builder() {
+        }
+
+        public EBRetryPolicyFixed buildFixed() {
+            return new EBRetryPolicyFixed(this);
+        }
+
+        public EBRetryPolicyLinear buildLinear() {
+            return new EBRetryPolicyLinear(this);
+        }
+
+        public EBRetryPolicyFibonacci buildFibonacci() {
+            return new EBRetryPolicyFibonacci(this);
+        }
+
+        public EBRetryPolicyPolynomial buildPolynomial() {
+            return new EBRetryPolicyPolynomial(this);
+        }
+
+        /**
+         * Sets the initial interval, the fixed interval for {@link EBRetryPolicyFixed}.
+         * The default value is {@link #DEFAULT_INITIAL_INTERVAL_MILLIS}.
+         * @param initialIntervalMillis milliseconds
+         * @return this
+         */
+        public Builder setInitialIntervalMillis(int initialIntervalMillis) {
+            this.initialIntervalMillis = initialIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Sets the cap of the wait. The default value is {@link #DEFAULT_MAX_INTERVAL_MILLIS}.
+         * Not used by the fixed policy, its interval is never capped.
+         * @param maxIntervalMillis milliseconds
+         * @return this
+         */
+        public Builder setMaxIntervalMillis(int maxIntervalMillis) {
+            this.maxIntervalMillis = maxIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Sets the maximal number of attempts. The default value is {@link #DEFAULT_MAX_ATTEMPTS}, i.e., no limit.
+         * @param maxAttempts maximal number of attempts
+         * @return this
+         */
+        public Builder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the maximal elapsed time. The default value is {@link #DEFAULT_MAX_ELAPSED_TIME_MILLIS}.
+         * @param maxElapsedTimeMillis milliseconds
+         * @return this
+         */
+        public Builder setMaxElapsedTimeMillis(int maxElapsedTimeMillis) {
+            this.maxElapsedTimeMillis = maxElapsedTimeMillis;
+            return this;
+        }
+
+        /**
+         * Sets the jitter, {@link EBRetryJitter#DECORRELATED} is not supported.
+         * The default value is {@link #DEFAULT_JITTER}.
+         * @param jitter jitter
+         * @return this
+         */
+        public Builder setJitter(EBRetryJitter jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Sets randomization factor of the {@link EBRetryJitter#PROPORTIONAL} jitter.
+         * The default value is {@link #DEFAULT_RANDOMIZATION_FACTOR}.
+         * @param randomizationFactor factor, {@code 0 <= factor < 1}
+         * @return this
+         */
+        public Builder setRandomizationFactor(double randomizationFactor) {
+            this.randomizationFactor = randomizationFactor;
+            return this;
+        }
+
+        /**
+         * Seeds the per-execution random generator, null for {@link ThreadLocalRandom}.
+         * @param seed seed or null
+         * @return this
+         */
+        public Builder setSeed(Long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the increment of the {@link EBRetryPolicyLinear}. The default value is {@link #DEFAULT_INCREMENT_MILLIS}.
+         * @param incrementMillis milliseconds
+         * @return this
+         */
+        public Builder setIncrementMillis(int incrementMillis) {
+            this.incrementMillis = incrementMillis;
+            return this;
+        }
+
+        /**
+         * Sets the exponent of the {@link EBRetryPolicyPolynomial}. The default value is {@link #DEFAULT_EXPONENT}.
+         * @param exponent exponent
+         * @return this
+         */
+        public Builder setExponent(double exponent) {
+            this.exponent = exponent;
+            return this;
+        }
+
+        /**
+         * Reads serialized settings from the JSON
+         *
+         * @param json json to use
+         * @return this
+         */
+        public Builder setJSON(JSONObject json) {
+            if (json == null) {
+                return this;
+            }
+            if (json.has(EBRetryStrategyBackoff.FIELD_INITIAL_INTERVAL_MILLIS)) {
+                initialIntervalMillis = EBUtils.getAsInteger(json, EBRetryStrategyBackoff.FIELD_INITIAL_INTERVAL_MILLIS, 10);
+            }
+            if (json.has(EBRetryStrategyBackoff.FIELD_MAX_INTERVAL_MILLIS)) {
+                maxIntervalMillis = EBUtils.getAsInteger(json, EBRetryStrategyBackoff.FIELD_MAX_INTERVAL_MILLIS, 10);
+            }
+            if (json.has(EBRetryStrategyBackoff.FIELD_MAX_ATTEMPTS)) {
+                maxAttempts = EBUtils.getAsInteger(json, EBRetryStrategyBackoff.FIELD_MAX_ATTEMPTS, 10);
+            }
+            if (json.has(EBRetryStrategyBackoff.FIELD_MAX_ELAPSED_TIME_MILLIS)) {
+                maxElapsedTimeMillis = EBUtils.getAsInteger(json, EBRetryStrategyBackoff.FIELD_MAX_ELAPSED_TIME_MILLIS, 10);
+            }
+            if (json.has(EBRetryStrategyBackoff.FIELD_JITTER)) {
+                jitter = EBRetryJitter.fromName(json.getString(EBRetryStrategyBackoff.FIELD_JITTER));
+            }
+            if (json.has(EBRetryStrategyBackoff.FIELD_RANDOMIZATION_FACTOR)) {
+                randomizationFactor = EBUtils.getAsDouble(json, EBRetryStrategyBackoff.FIELD_RANDOMIZATION_FACTOR);
+            }
+            if (json.has(EBRetryStrategyBackoff.FIELD_SEED)) {
+                seed = EBUtils.getAsLong(json, EBRetryStrategyBackoff.FIELD_SEED, 10);
+            }
+            if (json.has(FIELD_INCREMENT_MILLIS)) {
+                incrementMillis = EBUtils.getAsInteger(json, FIELD_INCREMENT_MILLIS, 10);
+            }
+            if (json.has(FIELD_EXPONENT)) {
+                exponent = EBUtils.getAsDouble(json, FIELD_EXPONENT);
+            }
+
+            return this;
+        }
+    }
+}
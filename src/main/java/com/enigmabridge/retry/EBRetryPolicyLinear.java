@@ -0,0 +1,52 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+/**
+ * Immutable linear policy, the wait after n-th failure is {@code initial + (n - 1) * increment}.
+ */
+public class EBRetryPolicyLinear extends EBRetryPolicyInterval {
+    public static final String NAME = "linear";
+
+    private final int incrementMillis;
+
+    public EBRetryPolicyLinear(JSONObject json) {
+        this(new Builder().setJSON(json));
+    }
+
+    protected EBRetryPolicyLinear(Builder builder) {
+        super(builder);
+        incrementMillis = builder.incrementMillis;
+        if (incrementMillis < 0) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected boolean isGrowing() {
+        return incrementMillis > 0;
+    }
+
+    @Override
+    protected long computeDelayMillis(int failures) {
+        return initialIntervalMillis + (long) (failures - 1) * incrementMillis;
+    }
+
+    @Override
+    public JSONObject toJSON(JSONObject json) {
+        json = super.toJSON(json);
+        if (incrementMillis != DEFAULT_INCREMENT_MILLIS) {
+            json.put(FIELD_INCREMENT_MILLIS, incrementMillis);
+        }
+        return json;
+    }
+
+    public int getIncrementMillis() {
+        return incrementMillis;
+    }
+}
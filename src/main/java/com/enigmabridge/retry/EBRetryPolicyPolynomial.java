@@ -0,0 +1,53 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+/**
+ * Immutable polynomial policy, the wait after n-th failure is {@code initial * n^exponent}.
+ */
+public class EBRetryPolicyPolynomial extends EBRetryPolicyInterval {
+    public static final String NAME = "polynomial";
+
+    private final double exponent;
+
+    public EBRetryPolicyPolynomial(JSONObject json) {
+        this(new Builder().setJSON(json));
+    }
+
+    protected EBRetryPolicyPolynomial(Builder builder) {
+        super(builder);
+        exponent = builder.exponent;
+        if (exponent < 0 || Double.isNaN(exponent) || Double.isInfinite(exponent)) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected boolean isGrowing() {
+        return exponent > 0 && initialIntervalMillis > 0;
+    }
+
+    @Override
+    protected long computeDelayMillis(int failures) {
+        final double delay = initialIntervalMillis * Math.pow(failures, exponent);
+        return delay >= maxIntervalMillis ? maxIntervalMillis : (long) delay;
+    }
+
+    @Override
+    public JSONObject toJSON(JSONObject json) {
+        json = super.toJSON(json);
+        if (exponent != DEFAULT_EXPONENT) {
+            json.put(FIELD_EXPONENT, exponent);
+        }
+        return json;
+    }
+
+    public double getExponent() {
+        return exponent;
+    }
+}
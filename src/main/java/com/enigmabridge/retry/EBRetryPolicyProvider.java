@@ -0,0 +1,55 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Provider of a strategy backed by the immutable {@link EBRetryPolicy},
+ * strategies are created as {@link EBRetryStrategyPolicy}.
+ */
+public abstract class EBRetryPolicyProvider implements EBRetryStrategyProvider {
+    @Override
+    public abstract EBRetryPolicy policyFromJSON(JSONObject config);
+
+    @Override
+    public EBRetryStrategy fromJSON(JSONObject config) {
+        return new EBRetryStrategyPolicy(policyFromJSON(config));
+    }
+
+    @Override
+    public boolean writeBinary(EBRetryStrategy strategy, DataOutput out) throws IOException {
+        final EBRetryPolicy policy = EBRetryBinaryCodec.policyOf(strategy);
+        return policy != null && writePolicy(policy, out);
+    }
+
+    @Override
+    public EBRetryStrategy readBinary(DataInput in) throws IOException {
+        return fromPolicy(readPolicy(in));
+    }
+
+    /**
+     * Writes the policy configuration in the binary form.
+     *
+     * @param policy policy
+     * @param out output
+     * @return false if not supported
+     * @throws IOException on write error
+     */
+    protected boolean writePolicy(EBRetryPolicy policy, DataOutput out) throws IOException {
+        return false;
+    }
+
+    /**
+     * Reads the policy written by {@link #writePolicy(EBRetryPolicy, DataOutput)}.
+     *
+     * @param in input
+     * @return policy
+     * @throws IOException if the data is malformed
+     */
+    protected EBRetryPolicy readPolicy(DataInput in) throws IOException {
+        throw new IOException("Binary configuration is not supported by " + getName());
+    }
+}
@@ -0,0 +1,354 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of named immutable retry policies, loaded from a JSON configuration and optionally
+ * reloaded when the configuration file changes.
+ * <p>
+ * Configuration maps the policy name to the policy, either in the {@link EBRetryStrategyFactory}
+ * format or as a schedule description parsed by {@link EBRetryPolicyCompiler#parse(String)}:
+ * </p>
+ * <pre>{@code
+ * {
+ *   "payments": {"name": "backoff", "data": {"initialMillis": 200, "maxAttempts": 5}},
+ *   "polling": "3x immediate, then exp(500ms, x1.5, max 60s), stop after 15m"
+ * }
+ * }</pre>
+ * <p>
+ * The whole configuration is parsed to a new immutable map which replaces the current one atomically,
+ * an invalid configuration is rejected as a whole and the current policies are kept.
+ * Lookups read a volatile reference, without locking. Retries already running keep their policy,
+ * new strategies obtained by {@link #getStrategy(String)} use the new one.
+ * </p>
+ */
+public class EBRetryPolicyRegistry implements Closeable {
+    /**
+     * Time without further changes after which the changed file is reloaded.
+     */
+    public static final long SETTLE_MILLIS = 100;
+
+    /**
+     * Maximal time {@link #close()} waits for the watcher thread.
+     */
+    private static final long CLOSE_WAIT_MILLIS = 5000;
+
+    private volatile Map<String, EBRetryPolicy> policies = Collections.emptyMap();
+    private volatile long version;
+    private final Object swapLock = new Object();
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private volatile WatchService watchService;
+    private volatile Thread watcher;
+
+    /**
+     * Listener of the configuration reloads.
+     */
+    public interface Listener {
+        /**
+         * Called after new policies were installed.
+         * @param registry registry
+         */
+        void onReload(EBRetryPolicyRegistry registry);
+
+        /**
+         * Called when the configuration could not be loaded, current policies are kept.
+         * @param registry registry
+         * @param error cause
+         */
+        void onReloadFailed(EBRetryPolicyRegistry registry, Exception error);
+    }
+
+    public EBRetryPolicyRegistry() {
+    }
+
+    public EBRetryPolicyRegistry(JSONObject json) {
+        load(json);
+    }
+
+    /**
+     * Returns policy by its name.
+     *
+     * @param name policy name
+     * @return policy or null if there is none
+     */
+    public EBRetryPolicy get(String name) {
+        return policies.get(name);
+    }
+
+    /**
+     * Returns a new strategy for one retry, backed by the current policy.
+     *
+     * @param name policy name
+     * @return strategy
+     * @throws IllegalArgumentException if there is no such policy
+     */
+    public EBRetryStrategy getStrategy(String name) {
+        final EBRetryPolicy policy = policies.get(name);
+        if (policy == null) {
+            throw new IllegalArgumentException("Unknown policy: " + name);
+        }
+        return new EBRetryStrategyPolicy(policy);
+    }
+
+    /**
+     * @return immutable snapshot of the current policies
+     */
+    public Map<String, EBRetryPolicy> getPolicies() {
+        return policies;
+    }
+
+    /**
+     * @return number of successful loads
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Parses the configuration and replaces all policies.
+     *
+     * @param json configuration
+     * @throws IllegalArgumentException if the configuration is invalid, current policies are kept
+     */
+    public void load(JSONObject json) {
+        if (json == null) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        final Map<String, EBRetryPolicy> parsed = new HashMap<String, EBRetryPolicy>();
+        final Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            final String name = keys.next();
+            try {
+                parsed.put(name, parsePolicy(json.get(name)));
+            } catch (JSONException e) {
+                throw new IllegalArgumentException("Invalid policy " + name, e);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid policy " + name + ": " + e.getMessage(), e);
+            }
+        }
+
+        swap(Collections.unmodifiableMap(parsed));
+    }
+
+    /**
+     * Reads the configuration file and replaces all policies.
+     *
+     * @param file configuration file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the configuration is invalid, current policies are kept
+     */
+    public void load(Path file) throws IOException {
+        final String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        try {
+            load(new JSONObject(content));
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Invalid configuration " + file, e);
+        }
+    }
+
+    /**
+     * Loads the configuration file and reloads it on each change.
+     * The file is watched by a daemon thread until {@link #close()}.
+     * A symlinked file is reloaded also when its link target changes, e.g., Kubernetes ConfigMap
+     * volume swapping its {@code ..data} directory link.
+     *
+     * @param file configuration file
+     * @throws IOException if the file cannot be read or watched
+     */
+    public synchronized void watch(final Path file) throws IOException {
+        if (watcher != null) {
+            throw new IllegalStateException("Already watching");
+        }
+
+        final Path absolute = file.toAbsolutePath();
+        final Path dir = absolute.getParent();
+
+        // Register before the initial load, a change made in between is not missed.
+        final WatchService service = FileSystems.getDefault().newWatchService();
+        final Path realPath;
+        try {
+            dir.register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+
+            realPath = realPath(absolute);
+            load(absolute);
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        } catch (RuntimeException e) {
+            service.close();
+            throw e;
+        }
+
+        watchService = service;
+        watcher = new EBRetrySchedulerExecutor.DaemonThreadFactory("EBRetry-policy-watcher-").newThread(new Runnable() {
+            @Override
+            public void run() {
+                watchLoop(service, absolute, realPath);
+            }
+        });
+        watcher.start();
+    }
+
+    /**
+     * Stops watching the configuration file and waits for the watcher thread to finish.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        final WatchService service = watchService;
+        final Thread thread = watcher;
+        watchService = null;
+        watcher = null;
+        if (service != null) {
+            service.close();
+        }
+
+        // Listener may close the registry from the watcher thread itself.
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(CLOSE_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void watchLoop(WatchService service, Path file, Path realPath) {
+        final Path fileName = file.getFileName();
+        try {
+            for (;;) {
+                WatchKey key = service.take();
+                boolean changed = false;
+
+                // Editors write in several steps, coalesce events until the file settles.
+                while (key != null) {
+                    changed |= isChanged(key, fileName);
+                    if (!key.reset()) {
+                        return;
+                    }
+                    key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                // Symlink swap of a parent link produces no event naming the file, compare the link target.
+                final Path current = realPath(file);
+                if (changed || (current != null && !current.equals(realPath))) {
+                    realPath = current;
+                    reload(file);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed by close().
+        }
+    }
+
+    private static boolean isChanged(WatchKey key, Path fileName) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static Path realPath(Path file) {
+        try {
+            return file.toRealPath();
+        } catch (IOException e) {
+            // Missing during the swap.
+            return null;
+        }
+    }
+
+    private void reload(Path file) {
+        try {
+            load(file);
+        } catch (Exception e) {
+            notifyReloadFailed(e);
+        }
+    }
+
+    private void swap(Map<String, EBRetryPolicy> next) {
+        synchronized (swapLock) {
+            policies = next;
+            version += 1;
+        }
+
+        notifyReload();
+    }
+
+    /**
+     * Each listener is isolated, failing listener neither fails the load nor stops the watcher.
+     */
+    private void notifyReload() {
+        for (Listener listener : listeners) {
+            try {
+                listener.onReload(this);
+            } catch (RuntimeException e) {
+                // Listener failure does not affect the installed policies.
+            }
+        }
+    }
+
+    private void notifyReloadFailed(Exception error) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onReloadFailed(this, error);
+            } catch (RuntimeException e) {
+                // Keep watching.
+            }
+        }
+    }
+
+    private static EBRetryPolicy parsePolicy(Object value) {
+        if (value instanceof String) {
+            return EBRetryPolicyCompiler.parse((String) value);
+        }
+
+        if (value instanceof JSONObject) {
+            return EBRetryStrategyFactory.policyFromJSON((JSONObject) value);
+        }
+
+        throw new IllegalArgumentException("Policy has to be an object or a schedule description");
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryPolicyRegistry{" +
+                "policies=" + policies.keySet() +
+                ", version=" + version +
+                '}';
+    }
+}
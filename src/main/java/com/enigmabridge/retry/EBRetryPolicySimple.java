@@ -0,0 +1,86 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+/**
+ * Immutable simple retry policy, with threshold, no waiting.
+ */
+public class EBRetryPolicySimple implements EBRetryPolicy {
+    private final int maxAttempts;
+
+    /**
+     * @param maxAttempts maximal number of attempts, negative for no limit
+     */
+    public EBRetryPolicySimple(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public EBRetryPolicySimple(JSONObject json) {
+        this(json != null && json.has(EBRetryStrategySimple.FIELD_MAX_ATTEMPTS)
+                ? EBUtils.getAsInteger(json, EBRetryStrategySimple.FIELD_MAX_ATTEMPTS, 10)
+                : 0);
+    }
+
+    @Override
+    public String getName() {
+        return EBRetryStrategySimple.NAME;
+    }
+
+    @Override
+    public EBRetryState newState() {
+        final EBRetryState state = new EBRetryState();
+        reset(state);
+        return state;
+    }
+
+    @Override
+    public void reset(EBRetryState state) {
+        state.reset(0);
+    }
+
+    @Override
+    public void onFail(EBRetryState state) {
+        state.attempts += 1;
+    }
+
+    @Override
+    public void onSuccess(EBRetryState state) {
+
+    }
+
+    @Override
+    public boolean shouldContinue(EBRetryState state) {
+        return maxAttempts < 0 || state.attempts < maxAttempts;
+    }
+
+    @Override
+    public boolean shouldStart() {
+        return maxAttempts != 0;
+    }
+
+    @Override
+    public long getWaitMilli(EBRetryState state) {
+        return EBRetryStrategySimple.NOWAIT;
+    }
+
+    @Override
+    public JSONObject toJSON(JSONObject json) {
+        if (json == null) {
+            json = new JSONObject();
+        }
+
+        json.put(EBRetryStrategySimple.FIELD_MAX_ATTEMPTS, maxAttempts);
+        return json;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryPolicySimple{" +
+                "maxAttempts=" + maxAttempts +
+                '}';
+    }
+}
@@ -0,0 +1,118 @@
+package com.enigmabridge.retry;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of reusable {@link EBRetry} instances for high-rate call sites.
+ * <p>
+ * Each thread keeps one released retry in its own slot, further retries are kept in a shared bounded queue.
+ * Retries over the pool size are dropped and left for the garbage collector. Pooled retry keeps its strategy,
+ * {@link EBRetry#reset()} restores the strategy state in place.
+ * </p>
+ * <p>
+ * Retry can be released only when finished, releasing a running retry or releasing it twice
+ * throws {@link IllegalStateException}, as does starting a run on a released retry.
+ * Listeners and configuration are kept, set them up in {@link #create()}.
+ * </p>
+ */
+public class EBRetryPool<Result, Error> {
+    /**
+     * The default maximal number of retries in the shared queue.
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private final EBRetryStrategy strategy;
+    private final int maxSize;
+    private final Queue<EBRetry<Result, Error>> shared = new ConcurrentLinkedQueue<EBRetry<Result, Error>>();
+    private final AtomicInteger sharedSize = new AtomicInteger();
+    private final ThreadLocal<EBRetry<Result, Error>> local = new ThreadLocal<EBRetry<Result, Error>>();
+
+    public EBRetryPool(EBRetryStrategy strategy) {
+        this(strategy, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param strategy strategy prototype, each pooled retry gets its own copy
+     * @param maxSize maximal number of retries in the shared queue
+     */
+    public EBRetryPool(EBRetryStrategy strategy, int maxSize) {
+        if (strategy == null || maxSize < 0){
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        this.strategy = strategy;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns pooled retry or creates a new one.
+     * @return idle retry
+     */
+    public EBRetry<Result, Error> acquire() {
+        EBRetry<Result, Error> retry = local.get();
+        if (retry != null){
+            local.set(null);
+        } else {
+            retry = shared.poll();
+            if (retry != null){
+                sharedSize.decrementAndGet();
+            } else {
+                retry = create();
+            }
+        }
+
+        retry.released = false;
+        return retry;
+    }
+
+    /**
+     * Returns finished retry to the pool.
+     *
+     * @param retry retry to release
+     * @throws IllegalStateException if the retry is running or already released
+     */
+    public void release(EBRetry<Result, Error> retry) {
+        if (retry.released){
+            throw new IllegalStateException("Retry already released");
+        }
+
+        retry.reset();
+        retry.setJob(null);
+        retry.released = true;
+
+        if (local.get() == null){
+            local.set(retry);
+            return;
+        }
+
+        for (;;) {
+            final int size = sharedSize.get();
+            if (size >= maxSize){
+                return;
+            }
+            if (sharedSize.compareAndSet(size, size + 1)){
+                break;
+            }
+        }
+
+        shared.offer(retry);
+    }
+
+    /**
+     * Creates new retry, override to configure it, e.g., scheduler, limiter, listeners.
+     * @return new retry
+     */
+    protected EBRetry<Result, Error> create() {
+        return new EBRetry<Result, Error>(strategy.copy());
+    }
+
+    public EBRetryStrategy getStrategy() {
+        return strategy;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
@@ -0,0 +1,29 @@
+package com.enigmabridge.retry;
+
+import java.util.SplittableRandom;
+
+/**
+ * Seeded root random generator of a policy, splits an independent generator for each execution state.
+ * Runs are reproducible for the seed, yet concurrent retries do not draw the same jitter sequence.
+ */
+final class EBRetryRandomSource {
+    private final SplittableRandom root;
+
+    EBRetryRandomSource(long seed) {
+        root = new SplittableRandom(seed);
+    }
+
+    /**
+     * Sets a generator split from the root to the state, unless it already has one from a previous run.
+     * @param state state being reset
+     */
+    void assign(EBRetryState state) {
+        if (state.random == null) {
+            state.random = split();
+        }
+    }
+
+    private synchronized SplittableRandom split() {
+        return root.split();
+    }
+}
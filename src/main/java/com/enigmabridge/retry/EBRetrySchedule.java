@@ -0,0 +1,427 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable precomputed retry schedule, a compiled form of the deterministic retry policy.
+ * <p>
+ * Base wait before each retry is stored in a table, computing the wait costs one array lookup
+ * and one random draw for the jitter. The table is built by {@link EBRetryPolicyCompiler}, either from
+ * an existing policy or from the text description.
+ * </p>
+ * <p>
+ * The wait after the n-th failure is {@code delays[n - 1]}. When the table is exhausted the last wait
+ * is repeated if {@code repeatLast} is set, otherwise retrying stops.
+ * </p>
+ */
+public class EBRetrySchedule implements EBRetryPolicy {
+    public static final String NAME = "schedule";
+
+    /**
+     * The default maximal number of attempts, no limit.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = -1;
+    /**
+     * The default maximal elapsed time, no limit.
+     */
+    public static final int DEFAULT_MAX_ELAPSED_TIME_MILLIS = -1;
+    /**
+     * The default jitter, no randomization.
+     */
+    public static final EBRetryJitter DEFAULT_JITTER = EBRetryJitter.NONE;
+
+    protected static final String FIELD_DELAYS = "delays";
+    protected static final String FIELD_REPEAT_LAST = "repeatLast";
+    protected static final String FIELD_MAX_ATTEMPTS = "maxAttempts";
+    protected static final String FIELD_MAX_ELAPSED_TIME_MILLIS = "maxElapsedMillis";
+    protected static final String FIELD_JITTER = "jitter";
+    protected static final String FIELD_RANDOMIZATION_FACTOR = "randFact";
+    protected static final String FIELD_SEED = "seed";
+
+    private final int[] delays;
+    private final long[] elapsed;
+    private final boolean repeatLast;
+    private final int maxAttempts;
+    private final int maxElapsedTimeMillis;
+    private final EBRetryJitter jitter;
+    private final double randomizationFactor;
+    private final Long seed;
+    private final EBRetryRandomSource randomSource;
+
+    public EBRetrySchedule(JSONObject json) {
+        this(new Builder().setJSON(json));
+    }
+
+    protected EBRetrySchedule(Builder builder) {
+        delays = Arrays.copyOf(builder.delays, builder.size);
+        repeatLast = builder.repeatLast;
+        maxAttempts = builder.maxAttempts;
+        maxElapsedTimeMillis = builder.maxElapsedTimeMillis;
+        jitter = builder.jitter;
+        randomizationFactor = builder.randomizationFactor;
+        seed = builder.seed;
+        randomSource = seed != null ? new EBRetryRandomSource(seed) : null;
+        if (jitter == null
+                || jitter == EBRetryJitter.DECORRELATED
+                || (0 > randomizationFactor || randomizationFactor >= 1)
+                || (repeatLast && delays.length == 0)) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        elapsed = new long[delays.length];
+        long sum = 0;
+        for (int i = 0; i < delays.length; i++) {
+            if (delays[i] < 0) {
+                throw new IllegalArgumentException("Invalid input arguments");
+            }
+
+            sum += delays[i];
+            elapsed[i] = sum;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public EBRetryState newState() {
+        final EBRetryState state = new EBRetryState();
+        reset(state);
+        return state;
+    }
+
+    @Override
+    public void reset(EBRetryState state) {
+        state.reset(delays.length == 0 ? 0 : delays[0]);
+        if (randomSource != null) {
+            randomSource.assign(state);
+        }
+    }
+
+    @Override
+    public void onFail(EBRetryState state) {
+        state.attempts += 1;
+    }
+
+    @Override
+    public void onSuccess(EBRetryState state) {
+
+    }
+
+    @Override
+    public boolean shouldContinue(EBRetryState state) {
+        if (maxAttempts >= 0 && state.attempts >= maxAttempts) {
+            return false;
+        }
+
+        if (!repeatLast && state.attempts > delays.length) {
+            return false;
+        }
+
+        return maxElapsedTimeMillis < 0 || state.getElapsedTimeMillis() <= maxElapsedTimeMillis;
+    }
+
+    @Override
+    public boolean shouldStart() {
+        return maxAttempts != 0;
+    }
+
+    @Override
+    public long getWaitMilli(EBRetryState state) {
+        final int base = getBaseDelayMillis(state.attempts);
+        if (base < 0) {
+            return BackOff.STOP;
+        }
+
+        state.intervalMillis = base;
+        if (jitter == EBRetryJitter.NONE) {
+            return base;
+        }
+
+        final SplittableRandom random = state.random;
+        return jitter.apply(base, randomizationFactor,
+                random != null ? random.nextDouble() : ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Returns base wait (without jitter) after the given number of failures.
+     *
+     * @param failures number of failed attempts, {@code >= 1}
+     * @return base wait in milliseconds, -1 if there is no more retry
+     */
+    public int getBaseDelayMillis(int failures) {
+        if (failures <= 0 || delays.length == 0) {
+            return 0;
+        }
+
+        if (failures <= delays.length) {
+            return delays[failures - 1];
+        }
+
+        return repeatLast ? delays[delays.length - 1] : -1;
+    }
+
+    /**
+     * Returns cumulative base wait before the retry after the given number of failures.
+     * Lower bound of the elapsed time without jitter and without duration of the attempts.
+     *
+     * @param failures number of failed attempts, {@code >= 1}
+     * @return cumulative base wait in milliseconds, -1 if there is no more retry
+     */
+    public long getElapsedBoundMillis(int failures) {
+        if (failures <= 0 || delays.length == 0) {
+            return 0;
+        }
+
+        if (failures <= delays.length) {
+            return elapsed[failures - 1];
+        }
+
+        if (!repeatLast) {
+            return -1;
+        }
+
+        return elapsed[delays.length - 1] + (long) (failures - delays.length) * delays[delays.length - 1];
+    }
+
+    @Override
+    public JSONObject toJSON(JSONObject json) {
+        if (json == null) {
+            json = new JSONObject();
+        }
+
+        final JSONArray arr = new JSONArray();
+        for (int delay : delays) {
+            arr.put(delay);
+        }
+
+        json.put(FIELD_DELAYS, arr);
+        if (repeatLast) {
+            json.put(FIELD_REPEAT_LAST, true);
+        }
+
+        if (maxAttempts != DEFAULT_MAX_ATTEMPTS) {
+            json.put(FIELD_MAX_ATTEMPTS, maxAttempts);
+        }
+
+        if (maxElapsedTimeMillis != DEFAULT_MAX_ELAPSED_TIME_MILLIS) {
+            json.put(FIELD_MAX_ELAPSED_TIME_MILLIS, maxElapsedTimeMillis);
+        }
+
+        if (jitter != DEFAULT_JITTER) {
+            json.put(FIELD_JITTER, jitter.getName());
+            json.put(FIELD_RANDOMIZATION_FACTOR, randomizationFactor);
+        }
+
+        if (seed != null) {
+            json.put(FIELD_SEED, seed.longValue());
+        }
+
+        return json;
+    }
+
+    /**
+     * @return number of entries in the table
+     */
+    public int getSize() {
+        return delays.length;
+    }
+
+    public boolean isRepeatLast() {
+        return repeatLast;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public int getMaxElapsedTimeMillis() {
+        return maxElapsedTimeMillis;
+    }
+
+    public EBRetryJitter getJitter() {
+        return jitter;
+    }
+
+    public double getRandomizationFactor() {
+        return randomizationFactor;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetrySchedule{" +
+                "delays=" + Arrays.toString(delays) +
+                ", repeatLast=" + repeatLast +
+                ", maxAttempts=" + maxAttempts +
+                ", maxElapsedTimeMillis=" + maxElapsedTimeMillis +
+                ", jitter=" + jitter +
+                ", randomizationFactor=" + randomizationFactor +
+                ", seed=" + seed +
+                '}';
+    }
+
+    /**
+     * Builder for {@link EBRetrySchedule}.
+     */
+    public static class Builder {
+        int[] delays = new int[8];
+        int size;
+        boolean repeatLast;
+        int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        int maxElapsedTimeMillis = DEFAULT_MAX_ELAPSED_TIME_MILLIS;
+        EBRetryJitter jitter = DEFAULT_JITTER;
+        double randomizationFactor = EBRetryStrategyBackoff.DEFAULT_RANDOMIZATION_FACTOR;
+        Long seed;
+
+        public Builder() {
+        }
+
+        public EBRetrySchedule build() {
+            return new EBRetrySchedule(this);
+        }
+
+        /**
+         * Appends the base wait of the next retry.
+         * @param delayMillis wait in milliseconds
+         * @return this
+         */
+        public Builder addDelay(int delayMillis) {
+            if (size == delays.length) {
+                delays = Arrays.copyOf(delays, size * 2);
+            }
+
+            delays[size++] = delayMillis;
+            return this;
+        }
+
+        /**
+         * Appends the same base wait for the given number of retries.
+         * @param count number of retries
+         * @param delayMillis wait in milliseconds
+         * @return this
+         */
+        public Builder addDelays(int count, int delayMillis) {
+            for (int i = 0; i < count; i++) {
+                addDelay(delayMillis);
+            }
+            return this;
+        }
+
+        /**
+         * @return number of entries added so far
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * If set, the last wait is repeated when the table is exhausted, otherwise retrying stops.
+         * @param repeatLast repeat the last wait
+         * @return this
+         */
+        public Builder setRepeatLast(boolean repeatLast) {
+            this.repeatLast = repeatLast;
+            return this;
+        }
+
+        /**
+         * Sets maximal number of attempts. The default value is {@link #DEFAULT_MAX_ATTEMPTS}, i.e., no limit.
+         * @param maxAttempts maximal number of attempts
+         * @return this
+         */
+        public Builder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets maximal elapsed time. The default value is {@link #DEFAULT_MAX_ELAPSED_TIME_MILLIS}, i.e., no limit.
+         * @param maxElapsedTimeMillis milliseconds
+         * @return this
+         */
+        public Builder setMaxElapsedTimeMillis(int maxElapsedTimeMillis) {
+            this.maxElapsedTimeMillis = maxElapsedTimeMillis;
+            return this;
+        }
+
+        /**
+         * Sets the jitter algorithm, {@link EBRetryJitter#DECORRELATED} is not supported.
+         * The default value is {@link #DEFAULT_JITTER}.
+         * @param jitter jitter
+         * @return this
+         */
+        public Builder setJitter(EBRetryJitter jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Sets randomization factor of the {@link EBRetryJitter#PROPORTIONAL} jitter.
+         * @param randomizationFactor factor, {@code 0 <= factor < 1}
+         * @return this
+         */
+        public Builder setRandomizationFactor(double randomizationFactor) {
+            this.randomizationFactor = randomizationFactor;
+            return this;
+        }
+
+        /**
+         * Seeds the per-execution random generator, null for {@link ThreadLocalRandom}.
+         * @param seed seed or null
+         * @return this
+         */
+        public Builder setSeed(Long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Reads serialized settings from the JSON
+         *
+         * @param json json to use
+         * @return this
+         */
+        public Builder setJSON(JSONObject json) {
+            if (json == null) {
+                return this;
+            }
+            if (json.has(FIELD_DELAYS)) {
+                final JSONArray arr = json.getJSONArray(FIELD_DELAYS);
+                for (int i = 0, len = arr.length(); i < len; i++) {
+                    addDelay(arr.getInt(i));
+                }
+            }
+            if (json.has(FIELD_REPEAT_LAST)) {
+                repeatLast = json.getBoolean(FIELD_REPEAT_LAST);
+            }
+            if (json.has(FIELD_MAX_ATTEMPTS)) {
+                maxAttempts = EBUtils.getAsInteger(json, FIELD_MAX_ATTEMPTS, 10);
+            }
+            if (json.has(FIELD_MAX_ELAPSED_TIME_MILLIS)) {
+                maxElapsedTimeMillis = EBUtils.getAsInteger(json, FIELD_MAX_ELAPSED_TIME_MILLIS, 10);
+            }
+            if (json.has(FIELD_JITTER)) {
+                jitter = EBRetryJitter.fromName(json.getString(FIELD_JITTER));
+            }
+            if (json.has(FIELD_RANDOMIZATION_FACTOR)) {
+                randomizationFactor = EBUtils.getAsDouble(json, FIELD_RANDOMIZATION_FACTOR);
+            }
+            if (json.has(FIELD_SEED)) {
+                seed = EBUtils.getAsLong(json, FIELD_SEED, 10);
+            }
+
+            return this;
+        }
+    }
+}
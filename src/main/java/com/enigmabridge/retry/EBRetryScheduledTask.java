@@ -0,0 +1,19 @@
+package com.enigmabridge.retry;
+
+/**
+ * Handle of the task scheduled by {@link EBRetryScheduler}.
+ */
+public interface EBRetryScheduledTask {
+    /**
+     * Cancels the task if it was not executed yet.
+     *
+     * @return true if task was cancelled and will not be executed, false if it has already been started or cancelled
+     */
+    boolean cancel();
+
+    /**
+     * Returns true if the task was either executed or cancelled.
+     * @return true if done
+     */
+    boolean isDone();
+}
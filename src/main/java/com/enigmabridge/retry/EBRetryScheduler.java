@@ -0,0 +1,16 @@
+package com.enigmabridge.retry;
+
+/**
+ * Scheduler used by the retry mechanism to wait out backoff intervals in async runs.
+ * One scheduler instance is meant to be shared by many {@link EBRetry} instances.
+ */
+public interface EBRetryScheduler {
+    /**
+     * Schedules the task to be executed after the given delay.
+     *
+     * @param task task to execute
+     * @param delayMilli delay in milliseconds, task is executed as soon as possible if {@code <= 0}
+     * @return handle of the scheduled task
+     */
+    EBRetryScheduledTask schedule(Runnable task, long delayMilli);
+}
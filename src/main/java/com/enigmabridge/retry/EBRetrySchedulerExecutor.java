@@ -0,0 +1,110 @@
+package com.enigmabridge.retry;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retry scheduler backed by {@link ScheduledThreadPoolExecutor}.
+ * Uses a small fixed pool of daemon threads for all pending backoff waits.
+ */
+public class EBRetrySchedulerExecutor implements EBRetryScheduler {
+    /**
+     * Number of threads in the default shared scheduler.
+     */
+    public static final int DEFAULT_POOL_SIZE = 2;
+
+    protected final ScheduledThreadPoolExecutor executor;
+
+    public EBRetrySchedulerExecutor() {
+        this(DEFAULT_POOL_SIZE);
+    }
+
+    public EBRetrySchedulerExecutor(int poolSize) {
+        this(new ScheduledThreadPoolExecutor(poolSize, new DaemonThreadFactory()));
+    }
+
+    public EBRetrySchedulerExecutor(ScheduledThreadPoolExecutor executor) {
+        this.executor = executor;
+        // Cancelled backoff waits would otherwise stay in the queue until their delay elapses.
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Returns shared scheduler instance, created lazily on first use.
+     * @return shared scheduler
+     */
+    public static EBRetrySchedulerExecutor getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    @Override
+    public EBRetryScheduledTask schedule(Runnable task, long delayMilli) {
+        return new Task(executor.schedule(task, Math.max(0, delayMilli), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Stops the underlying executor. Pending tasks are not executed.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public ScheduledThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Lazy initialization holder for the shared instance.
+     */
+    private static class DefaultHolder {
+        static final EBRetrySchedulerExecutor INSTANCE = new EBRetrySchedulerExecutor();
+    }
+
+    /**
+     * Scheduled task handle wrapping {@link ScheduledFuture}.
+     */
+    protected static class Task implements EBRetryScheduledTask {
+        protected final ScheduledFuture<?> future;
+
+        public Task(ScheduledFuture<?> future) {
+            this.future = future;
+        }
+
+        @Override
+        public boolean cancel() {
+            return future.cancel(false);
+        }
+
+        @Override
+        public boolean isDone() {
+            return future.isDone();
+        }
+    }
+
+    /**
+     * Creates named daemon threads so pending retries do not prevent JVM exit.
+     */
+    protected static class DaemonThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger(1);
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String prefix;
+
+        public DaemonThreadFactory() {
+            this("EBRetry-scheduler-" + POOL_NUMBER.getAndIncrement() + "-");
+        }
+
+        public DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, prefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
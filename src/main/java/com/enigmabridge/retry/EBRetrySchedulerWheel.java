@@ -0,0 +1,434 @@
+package com.enigmabridge.retry;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Retry scheduler based on a hierarchical hashed timing wheel.
+ * <p>
+ * Suitable for very large number of pending retries. Scheduling and cancellation is O(1),
+ * scheduling threads only enqueue the task to a lock-free queue, the wheel itself is maintained
+ * by a single worker thread. All tasks expiring in the same tick are expired in one batch.
+ * </p>
+ * <p>
+ * The wheel has {@code levels} levels, each with {@code 2^wheelBits} buckets. Level {@code k} bucket
+ * spans {@code 2^(k*wheelBits)} ticks, entries are cascaded to the lower level when the lower wheel
+ * wraps around. Precision of the scheduler is one tick.
+ * </p>
+ * <p>
+ * Expired tasks are executed on the worker thread unless an executor is provided, so tasks
+ * should be short or an executor should be used.
+ * </p>
+ */
+public class EBRetrySchedulerWheel implements EBRetryScheduler {
+    /**
+     * The default tick duration in milliseconds.
+     */
+    public static final long DEFAULT_TICK_MILLI = 10;
+    /**
+     * The default number of bits of the wheel size, 256 buckets per level.
+     */
+    public static final int DEFAULT_WHEEL_BITS = 8;
+    /**
+     * The default number of wheel levels. With default tick and wheel size it covers ~497 days.
+     */
+    public static final int DEFAULT_LEVELS = 4;
+
+    /**
+     * Maximum number of scheduled and cancelled tasks the worker takes over in one tick,
+     * so the wheel keeps ticking while producers outpace the worker.
+     */
+    private static final int MAX_PENDING_PER_TICK = 100000;
+
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+
+    private static final AtomicIntegerFieldUpdater<EBRetrySchedulerWheel> WORKER_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(EBRetrySchedulerWheel.class, "workerState");
+    private static final AtomicLongFieldUpdater<EBRetrySchedulerWheel> START_NANOS_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EBRetrySchedulerWheel.class, "startNanos");
+
+    private final long tickNanos;
+    private final int wheelBits;
+    private final int wheelMask;
+    private final int levels;
+    private final Bucket[][] wheels;
+    private final Executor executor;
+    private final Thread worker;
+
+    private final Queue<Timeout> pendingAdds = new ConcurrentLinkedQueue<Timeout>();
+    private final Queue<Timeout> pendingCancels = new ConcurrentLinkedQueue<Timeout>();
+
+    private volatile int workerState = WORKER_INIT;
+    private volatile boolean workerIdle = false;
+    // Wheel time origin, 0 = not set. Set before the worker state is published as started.
+    private volatile long startNanos;
+
+    // Worker thread only.
+    private long tick;
+    private long size;
+
+    public EBRetrySchedulerWheel() {
+        this(DEFAULT_TICK_MILLI, DEFAULT_WHEEL_BITS, DEFAULT_LEVELS, null);
+    }
+
+    public EBRetrySchedulerWheel(long tickMilli) {
+        this(tickMilli, DEFAULT_WHEEL_BITS, DEFAULT_LEVELS, null);
+    }
+
+    public EBRetrySchedulerWheel(long tickMilli, Executor executor) {
+        this(tickMilli, DEFAULT_WHEEL_BITS, DEFAULT_LEVELS, executor);
+    }
+
+    /**
+     * @param tickMilli tick duration (resolution) in milliseconds
+     * @param wheelBits number of bits of the wheel size, each level has 2^wheelBits buckets
+     * @param levels number of wheel levels
+     * @param executor executor to run expired tasks on, if null tasks are run on the worker thread
+     */
+    public EBRetrySchedulerWheel(long tickMilli, int wheelBits, int levels, Executor executor) {
+        this(tickMilli, wheelBits, levels, executor,
+                new EBRetrySchedulerExecutor.DaemonThreadFactory("EBRetry-wheel-"));
+    }
+
+    public EBRetrySchedulerWheel(long tickMilli, int wheelBits, int levels, Executor executor, ThreadFactory threadFactory) {
+        if (tickMilli <= 0
+                || wheelBits <= 0
+                || levels <= 0
+                || wheelBits * levels >= 62) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        this.tickNanos = tickMilli * 1000000L;
+        this.wheelBits = wheelBits;
+        this.wheelMask = (1 << wheelBits) - 1;
+        this.levels = levels;
+        this.executor = executor;
+        this.wheels = new Bucket[levels][1 << wheelBits];
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+
+        this.worker = threadFactory.newThread(new Worker());
+    }
+
+    @Override
+    public EBRetryScheduledTask schedule(Runnable task, long delayMilli) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+
+        start();
+        final long deadline = System.nanoTime() + Math.max(0, delayMilli) * 1000000L - startNanos;
+        final Timeout timeout = new Timeout(this, task, deadline);
+        pendingAdds.add(timeout);
+
+        if (workerIdle) {
+            LockSupport.unpark(worker);
+        }
+        return timeout;
+    }
+
+    /**
+     * Starts the worker thread. Called automatically on the first schedule.
+     */
+    public void start() {
+        switch (WORKER_STATE_UPDATER.get(this)) {
+            case WORKER_INIT:
+                // Time origin has to be visible to every caller observing the started state.
+                final long now = System.nanoTime();
+                START_NANOS_UPDATER.compareAndSet(this, 0, now == 0 ? 1 : now);
+                if (WORKER_STATE_UPDATER.compareAndSet(this, WORKER_INIT, WORKER_STARTED)) {
+                    worker.start();
+                }
+                break;
+            case WORKER_STARTED:
+                break;
+            case WORKER_SHUTDOWN:
+                throw new IllegalStateException("Scheduler has been shut down");
+            default:
+                throw new Error("Invalid worker state");
+        }
+    }
+
+    /**
+     * Stops the worker thread. Pending tasks are not executed.
+     */
+    public void shutdown() {
+        if (WORKER_STATE_UPDATER.getAndSet(this, WORKER_SHUTDOWN) == WORKER_STARTED) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    public long getTickMilli() {
+        return tickNanos / 1000000L;
+    }
+
+    /**
+     * Worker loop, advances the wheel one tick at a time.
+     */
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            while (WORKER_STATE_UPDATER.get(EBRetrySchedulerWheel.this) == WORKER_STARTED) {
+                if (!waitForNextTick()) {
+                    continue;
+                }
+
+                processCancelled();
+                transferAdds();
+                processTick();
+                tick += 1;
+            }
+        }
+    }
+
+    /**
+     * Waits until the current tick ends.
+     * If the wheel is empty, worker parks until a new task is scheduled.
+     *
+     * @return true if tick should be processed
+     */
+    private boolean waitForNextTick() {
+        if (size == 0 && pendingAdds.isEmpty()) {
+            workerIdle = true;
+            if (pendingAdds.isEmpty()) {
+                LockSupport.park(this);
+            }
+            workerIdle = false;
+
+            // Wheel is empty, no need to process ticks elapsed while idle.
+            tick = Math.max(tick, (System.nanoTime() - startNanos) / tickNanos);
+            return false;
+        }
+
+        final long deadline = (tick + 1) * tickNanos;
+        final long sleepNanos = deadline - (System.nanoTime() - startNanos);
+        if (sleepNanos > 0) {
+            LockSupport.parkNanos(this, sleepNanos);
+            return false;
+        }
+
+        return true;
+    }
+
+    private void processCancelled() {
+        for (int i = 0; i < MAX_PENDING_PER_TICK; i++) {
+            final Timeout timeout = pendingCancels.poll();
+            if (timeout == null) {
+                break;
+            }
+
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+                size -= 1;
+            }
+        }
+    }
+
+    private void transferAdds() {
+        for (int i = 0; i < MAX_PENDING_PER_TICK; i++) {
+            final Timeout timeout = pendingAdds.poll();
+            if (timeout == null) {
+                break;
+            }
+
+            if (timeout.state != Timeout.ST_INIT) {
+                continue;
+            }
+
+            place(timeout);
+            size += 1;
+
+            // Cancelled before seeing the placed flag, the cancel was not queued.
+            timeout.placed = true;
+            if (timeout.state != Timeout.ST_INIT && timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+                size -= 1;
+            }
+        }
+    }
+
+    /**
+     * Places timeout to the bucket, relative to the current tick.
+     *
+     * @param timeout timeout to place
+     */
+    private void place(Timeout timeout) {
+        final long expires = Math.max(tick, (timeout.deadline + tickNanos - 1) / tickNanos - 1);
+        long delta = expires - tick;
+        long placed = expires;
+
+        for (int level = 0; level < levels; level++) {
+            final int shift = wheelBits * (level + 1);
+            if (delta < (1L << shift) || level == levels - 1) {
+                if (delta >= (1L << shift)) {
+                    // Beyond the horizon, park it in the last top level bucket, re-placed on cascade.
+                    placed = tick + (1L << shift) - 1;
+                }
+
+                final int idx = (int) ((placed >>> (wheelBits * level)) & wheelMask);
+                wheels[level][idx].add(timeout);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Cascades higher levels if lower ones wrapped around and expires the current bucket.
+     */
+    private void processTick() {
+        for (int level = 1; level < levels; level++) {
+            if ((tick & ((1L << (wheelBits * level)) - 1)) != 0) {
+                break;
+            }
+
+            final int idx = (int) ((tick >>> (wheelBits * level)) & wheelMask);
+            Timeout timeout = wheels[level][idx].clear();
+            while (timeout != null) {
+                final Timeout next = timeout.next;
+                timeout.next = null;
+                place(timeout);
+                timeout = next;
+            }
+        }
+
+        // Batch expiry - detach whole bucket and run all entries.
+        Timeout timeout = wheels[0][(int) (tick & wheelMask)].clear();
+        while (timeout != null) {
+            final Timeout next = timeout.next;
+            timeout.next = null;
+            size -= 1;
+            timeout.expire();
+            timeout = next;
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            if (executor != null) {
+                executor.execute(task);
+            } else {
+                task.run();
+            }
+        } catch (Throwable t) {
+            // Keep worker alive, report to the handler.
+            final Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, t);
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts. Accessed only from the worker thread.
+     */
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.next = null;
+            timeout.prev = tail;
+            if (tail == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * Detaches all entries, returns head of the singly linked chain (via next).
+         * @return head or null
+         */
+        Timeout clear() {
+            final Timeout first = head;
+            for (Timeout cur = first; cur != null; cur = cur.next) {
+                cur.prev = null;
+                cur.bucket = null;
+            }
+
+            head = tail = null;
+            return first;
+        }
+    }
+
+    /**
+     * Scheduled task handle.
+     */
+    private static class Timeout implements EBRetryScheduledTask {
+        static final int ST_INIT = 0;
+        static final int ST_CANCELLED = 1;
+        static final int ST_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        final EBRetrySchedulerWheel wheel;
+        final Runnable task;
+        final long deadline;
+        volatile int state = ST_INIT;
+        // Set by the worker once placed to a bucket, only placed timeouts need the worker to cancel.
+        volatile boolean placed;
+
+        // Worker thread only.
+        Timeout next;
+        Timeout prev;
+        Bucket bucket;
+
+        Timeout(EBRetrySchedulerWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+
+            if (placed) {
+                wheel.pendingCancels.add(this);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isDone() {
+            return state != ST_INIT;
+        }
+
+        void expire() {
+            if (STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                wheel.runTask(task);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.enigmabridge.retry;
+
+import java.util.SplittableRandom;
+
+/**
+ * Per-execution state of the {@link EBRetryPolicy}.
+ * Policy is immutable and shared, the state is owned by one retry run and is not thread-safe.
+ */
+public class EBRetryState {
+    /**
+     * Number of failed attempts.
+     */
+    protected int attempts;
+    /**
+     * Current retry interval in milliseconds, policy specific.
+     */
+    protected int intervalMillis;
+    /**
+     * Start of the execution, {@link System#nanoTime()}.
+     */
+    protected long startNanos;
+    /**
+     * Previous wait in milliseconds, used by the decorrelated jitter.
+     */
+    protected long prevWaitMillis;
+    /**
+     * Random generator of this execution, only if the policy is seeded. Null means
+     * {@link java.util.concurrent.ThreadLocalRandom} is used.
+     */
+    protected SplittableRandom random;
+
+    public EBRetryState() {
+    }
+
+    /**
+     * Resets the state to the start of a new execution.
+     * @param intervalMillis initial interval
+     */
+    public void reset(int intervalMillis) {
+        this.attempts = 0;
+        this.intervalMillis = intervalMillis;
+        this.startNanos = System.nanoTime();
+        this.prevWaitMillis = intervalMillis;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public int getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public void setIntervalMillis(int intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public void setStartNanos(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    public long getPrevWaitMillis() {
+        return prevWaitMillis;
+    }
+
+    public void setPrevWaitMillis(long prevWaitMillis) {
+        this.prevWaitMillis = prevWaitMillis;
+    }
+
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
+    public void setRandom(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * @return milliseconds elapsed since the start of the execution
+     */
+    public long getElapsedTimeMillis() {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryState{" +
+                "attempts=" + attempts +
+                ", intervalMillis=" + intervalMillis +
+                ", elapsedMillis=" + getElapsedTimeMillis() +
+                '}';
+    }
+}
@@ -16,6 +16,26 @@ public interface EBRetryStrategy {
     boolean shouldContinue();
     long getWaitMilli();
 
+    /**
+     * Called before each attempt is executed, including speculative hedges,
+     * after local checks such as the deadline and the concurrency limiter passed.
+     * If false is returned, the attempt is failed fast without running the job,
+     * with {@link EBRetryAttemptRejectedException} as the job error.
+     *
+     * @return true if the attempt is permitted
+     */
+    default boolean onAttempt() {
+        return true;
+    }
+
+    /**
+     * Called when an attempt permitted by {@link #onAttempt()} ends without its outcome being reported
+     * by {@link #onSuccess()} or {@link #onFail()}, e.g., losing hedge or attempt of a cancelled retry.
+     */
+    default void onAttemptAbandoned() {
+        // Nothing to release.
+    }
+
     EBRetryStrategy copy();
     JSONObject toJSON(JSONObject json);
 }
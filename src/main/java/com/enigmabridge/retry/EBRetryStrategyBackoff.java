@@ -39,6 +39,11 @@ import java.io.IOException;
  * </p>
  * <p>
  * <p>
+ * This is the default {@link EBRetryJitter#PROPORTIONAL} jitter, other algorithms can be set by
+ * {@link Builder#setJitter(EBRetryJitter)}.
+ * </p>
+ * <p>
+ * <p>
  * <b>Note:</b> max_interval caps the retry_interval and not the randomized_interval.
  * </p>
  * <p>
@@ -70,7 +75,8 @@ import java.io.IOException;
  * </pre>
  * <p>
  * <p>
- * Implementation is not thread-safe.
+ * Implementation is not thread-safe. Configuration is kept in the immutable {@link EBRetryPolicyBackoff}
+ * shared by all copies, {@link #copy()} allocates only a new {@link EBRetryState}.
  * </p>
  *
  * @author Ravi Mistry
@@ -103,56 +109,27 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
      * The default maximum number of attempts.
      */
     public static final int DEFAULT_MAX_ATTEMPTS = -1;
+
+    /**
+     * The default jitter, proportional to the randomization factor.
+     */
+    public static final EBRetryJitter DEFAULT_JITTER = EBRetryJitter.PROPORTIONAL;
     protected static final String FIELD_INITIAL_INTERVAL_MILLIS = "initialMillis";
     protected static final String FIELD_RANDOMIZATION_FACTOR = "randFact";
     protected static final String FIELD_MULTIPLIER = "mult";
     protected static final String FIELD_MAX_INTERVAL_MILLIS = "maxIntMillis";
     protected static final String FIELD_MAX_ELAPSED_TIME_MILLIS = "maxElapsedMillis";
     protected static final String FIELD_MAX_ATTEMPTS = "maxAttempts";
+    protected static final String FIELD_JITTER = "jitter";
+    protected static final String FIELD_SEED = "seed";
     /**
-     * The initial retry interval in milliseconds.
-     */
-    private final int initialIntervalMillis;
-    /**
-     * The randomization factor to use for creating a range around the retry interval.
-     * <p>
-     * <p>
-     * A randomization factor of 0.5 results in a random period ranging between 50% below and 50%
-     * above the retry interval.
-     * </p>
-     */
-    private final double randomizationFactor;
-    /**
-     * The value to multiply the current interval with for each retry attempt.
-     */
-    private final double multiplier;
-    /**
-     * The maximum value of the back off period in milliseconds. Once the retry interval reaches this
-     * value it stops increasing.
+     * Immutable configuration, shared by all copies.
      */
-    private final int maxIntervalMillis;
+    private final EBRetryPolicyBackoff policy;
     /**
-     * The maximum value of attempts before failing.
-     */
-    private final int maxAttempts;
-    /**
-     * The maximum elapsed time after instantiating {@link EBRetryStrategyBackoff} or calling
-     * {@link #reset()} after which {@link #nextBackOffMillis()} returns {@link BackOff#STOP}.
-     */
-    private final int maxElapsedTimeMillis;
-    /**
-     * The current retry interval in milliseconds.
-     */
-    private int currentIntervalMillis;
-    /**
-     * The current number of attempts
-     */
-    private int currentAttempts = 0;
-    /**
-     * The system time in nanoseconds. It is calculated when an ExponentialBackOffPolicy instance is
-     * created and is reset when {@link #reset()} is called.
+     * Current interval, number of attempts and the start time of this instance.
      */
-    private long startTimeNanos;
+    private final EBRetryState state;
 
     /**
      * Creates an instance of ExponentialBackOffPolicy using default values.
@@ -174,28 +151,32 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
         this(new Builder());
     }
 
+    /**
+     * Strategy from the serialized configuration, the policy is shared via {@link EBRetryPolicyCache}.
+     * @param json configuration
+     */
     public EBRetryStrategyBackoff(JSONObject json) {
-        this(new Builder().setJSON(json));
+        this((EBRetryPolicyBackoff) EBRetryPolicyCache.getDefault().get(EBRetryStrategyRegistry.BACKOFF, json));
     }
 
     /**
      * @param builder builder
      */
     protected EBRetryStrategyBackoff(Builder builder) {
-        initialIntervalMillis = builder.initialIntervalMillis;
-        randomizationFactor = builder.randomizationFactor;
-        multiplier = builder.multiplier;
-        maxIntervalMillis = builder.maxIntervalMillis;
-        maxElapsedTimeMillis = builder.maxElapsedTimeMillis;
-        maxAttempts = builder.maxAttempts;
-        if (initialIntervalMillis <= 0
-                || (0 > randomizationFactor || randomizationFactor >= 1)
-                || multiplier < 1
-                || maxIntervalMillis < initialIntervalMillis
-                || maxElapsedTimeMillis <= 0) {
+        this(builder.buildPolicy());
+    }
+
+    /**
+     * Strategy backed by the shared immutable policy, only the small state object is allocated.
+     * @param policy policy
+     */
+    public EBRetryStrategyBackoff(EBRetryPolicyBackoff policy) {
+        if (policy == null) {
             throw new IllegalArgumentException("Invalid input arguments");
         }
-        reset();
+
+        this.policy = policy;
+        this.state = policy.newState();
     }
 
     /**
@@ -239,18 +220,25 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
     }
 
     public long nextBackOffMillis(boolean inc) throws IOException {
-        // Make sure we have not gone over the maximum elapsed time.
-        if (getElapsedTimeMillis() > maxElapsedTimeMillis) {
-            return STOP;
-        }
-        int randomizedInterval =
-                getRandomValueFromInterval(randomizationFactor, Math.random(), currentIntervalMillis);
+        return policy.nextBackOffMillis(state, inc);
+    }
 
-        if (inc) {
-            incrementCurrentInterval();
-        }
+    /**
+     * Returns the execution state of this strategy.
+     *
+     * @return state
+     */
+    EBRetryState getState() {
+        return state;
+    }
 
-        return randomizedInterval;
+    /**
+     * Returns the shared immutable policy of this strategy.
+     *
+     * @return policy
+     */
+    public final EBRetryPolicyBackoff getPolicy() {
+        return policy;
     }
 
     /**
@@ -259,7 +247,7 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
      * @return int
      */
     public final int getInitialIntervalMillis() {
-        return initialIntervalMillis;
+        return policy.getInitialIntervalMillis();
     }
 
     /**
@@ -273,7 +261,16 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
      * @return double
      */
     public final double getRandomizationFactor() {
-        return randomizationFactor;
+        return policy.getRandomizationFactor();
+    }
+
+    /**
+     * Returns the jitter algorithm.
+     *
+     * @return jitter
+     */
+    public final EBRetryJitter getJitter() {
+        return policy.getJitter();
     }
 
     /**
@@ -282,7 +279,7 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
      * @return int
      */
     public final int getCurrentIntervalMillis() {
-        return currentIntervalMillis;
+        return state.getIntervalMillis();
     }
 
     /**
@@ -291,7 +288,7 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
      * @return double
      */
     public final double getMultiplier() {
-        return multiplier;
+        return policy.getMultiplier();
     }
 
     /**
@@ -301,7 +298,7 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
      * @return int
      */
     public final int getMaxIntervalMillis() {
-        return maxIntervalMillis;
+        return policy.getMaxIntervalMillis();
     }
 
     /**
@@ -310,7 +307,7 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
      * @return int
      */
     public final int getMaxAttempts() {
-        return maxAttempts;
+        return policy.getMaxAttempts();
     }
 
     /**
@@ -325,7 +322,7 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
      * @return int
      */
     public final int getMaxElapsedTimeMillis() {
-        return maxElapsedTimeMillis;
+        return policy.getMaxElapsedTimeMillis();
     }
 
     /**
@@ -339,111 +336,54 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
      * @return long
      */
     public final long getElapsedTimeMillis() {
-        return (System.nanoTime() - startTimeNanos) / 1000000;
-    }
-
-    /**
-     * Increments the current interval by multiplying it with the multiplier.
-     */
-    private void incrementCurrentInterval() {
-        // Check for overflow, if overflow is detected set the current interval to the max interval.
-        if (currentIntervalMillis >= maxIntervalMillis / multiplier) {
-            currentIntervalMillis = maxIntervalMillis;
-        } else {
-            currentIntervalMillis *= multiplier;
-        }
+        return state.getElapsedTimeMillis();
     }
 
     @Override
     public String getName() {
-        return "backoff";
+        return NAME;
     }
 
     @Override
     public void onFail() {
-        currentAttempts += 1;
-        incrementCurrentInterval();
+        policy.onFail(state);
     }
 
     @Override
     public void onSuccess() {
-
+        policy.onSuccess(state);
     }
 
     /**
      * Sets the interval back to the initial retry interval and restarts the timer.
      */
     public final void reset() {
-        currentIntervalMillis = initialIntervalMillis;
-        currentAttempts = 0;
-        startTimeNanos = System.nanoTime();
+        policy.reset(state);
     }
 
     @Override
     public boolean shouldContinue() {
-        if (getElapsedTimeMillis() > maxElapsedTimeMillis) {
-            return false;
-        }
-
-        if (maxAttempts >= 0 && currentAttempts >= maxAttempts) {
-            return false;
-        }
-
-        return true;
+        return policy.shouldContinue(state);
     }
 
     @Override
     public long getWaitMilli() {
-        try {
-            return nextBackOffMillis(false);
-        } catch (IOException e) {
-            return STOP;
-        }
+        return policy.getWaitMilli(state);
     }
 
+    /**
+     * Returns a new strategy sharing the immutable policy, with fresh state.
+     *
+     * @return copy
+     */
     @Override
     public EBRetryStrategy copy() {
-        return new EBRetryStrategyBackoff.Builder()
-                .setInitialIntervalMillis(getInitialIntervalMillis())
-                .setMaxAttempts(getMaxAttempts())
-                .setMaxElapsedTimeMillis(getMaxElapsedTimeMillis())
-                .setMaxIntervalMillis(getMaxIntervalMillis())
-                .setMultiplier(getMultiplier())
-                .setRandomizationFactor(getRandomizationFactor())
-                .build();
+        return new EBRetryStrategyBackoff(policy);
     }
 
     @Override
     public JSONObject toJSON(JSONObject json) {
-        if (json == null) {
-            json = new JSONObject();
-        }
-
-        if (getMaxAttempts() != DEFAULT_MAX_ATTEMPTS) {
-            json.put(FIELD_MAX_ATTEMPTS, getMaxAttempts());
-        }
-
-        if (getMaxElapsedTimeMillis() != DEFAULT_MAX_ELAPSED_TIME_MILLIS) {
-            json.put(FIELD_MAX_ELAPSED_TIME_MILLIS, getMaxElapsedTimeMillis());
-        }
-
-        if (getMaxIntervalMillis() != DEFAULT_MAX_INTERVAL_MILLIS) {
-            json.put(FIELD_MAX_INTERVAL_MILLIS, getMaxIntervalMillis());
-        }
-
-        if (getMultiplier() != DEFAULT_MULTIPLIER) {
-            json.put(FIELD_MULTIPLIER, getMultiplier());
-        }
-
-        if (getRandomizationFactor() != DEFAULT_RANDOMIZATION_FACTOR) {
-            json.put(FIELD_RANDOMIZATION_FACTOR, getRandomizationFactor());
-        }
-
-        if (getInitialIntervalMillis() != DEFAULT_INITIAL_INTERVAL_MILLIS) {
-            json.put(FIELD_INITIAL_INTERVAL_MILLIS, getInitialIntervalMillis());
-        }
-
-        return json;
+        return policy.toJSON(json);
     }
 
     /**
@@ -493,6 +433,16 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
          */
         int maxElapsedTimeMillis = DEFAULT_MAX_ELAPSED_TIME_MILLIS;
 
+        /**
+         * Jitter algorithm.
+         */
+        EBRetryJitter jitter = DEFAULT_JITTER;
+
+        /**
+         * Seed of the per-execution random generator, null for unseeded {@link java.util.concurrent.ThreadLocalRandom}.
+         */
+        Long seed;
+
         public Builder() {
         }
 
@@ -505,6 +455,15 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
             return new EBRetryStrategyBackoff(this);
         }
 
+        /**
+         * Builds a new immutable shareable policy, see {@link EBRetryPolicyBackoff}.
+         *
+         * @return new instance of EBRetryPolicyBackoff
+         */
+        public EBRetryPolicyBackoff buildPolicy() {
+            return new EBRetryPolicyBackoff(this);
+        }
+
         /**
          * Returns the initial retry interval in milliseconds. The default value is
          * {@link #DEFAULT_INITIAL_INTERVAL_MILLIS}.
@@ -691,6 +650,31 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
             return this;
         }
 
+        /**
+         * Sets the jitter algorithm. The default value is {@link #DEFAULT_JITTER}.
+         * The randomization factor is used only by {@link EBRetryJitter#PROPORTIONAL}.
+         *
+         * @param jitter jitter algorithm
+         * @return this
+         */
+        public Builder setJitter(EBRetryJitter jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Seeds the random generator so the waits are reproducible, e.g., for load tests.
+         * Each execution gets its own generator split from the seeded root, so concurrent retries do not wait in sync.
+         * Null to use {@link java.util.concurrent.ThreadLocalRandom}.
+         *
+         * @param seed seed or null
+         * @return this
+         */
+        public Builder setSeed(Long seed) {
+            this.seed = seed;
+            return this;
+        }
+
         /**
          * Reads serialized settings from the JSON
          *
@@ -698,6 +682,9 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
          * @return this
          */
         public Builder setJSON(JSONObject json) {
+            if (json == null) {
+                return this;
+            }
             if (json.has(FIELD_MAX_ATTEMPTS)) {
                 maxAttempts = EBUtils.getAsInteger(json, FIELD_MAX_ATTEMPTS, 10);
             }
@@ -716,6 +703,12 @@ public class EBRetryStrategyBackoff implements BackOff, EBRetryStrategy {
             if (json.has(FIELD_MULTIPLIER)) {
                 multiplier = EBUtils.getAsDouble(json, FIELD_MULTIPLIER);
             }
+            if (json.has(FIELD_JITTER)) {
+                jitter = EBRetryJitter.fromName(json.getString(FIELD_JITTER));
+            }
+            if (json.has(FIELD_SEED)) {
+                seed = EBUtils.getAsLong(json, FIELD_SEED, 10);
+            }
 
             return this;
         }
@@ -0,0 +1,164 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retry strategy composing any other retry strategy with a shared {@link EBCircuitBreaker}.
+ * <p>
+ * Retry decisions and waiting are delegated to the underlying strategy. Before each attempt the breaker
+ * is asked for a permission, while the circuit is open the attempt fails fast without invoking the job.
+ * Outcomes and durations of permitted attempts are recorded to the breaker.
+ * </p>
+ * <p>
+ * Breaker is shared by all copies of the strategy, the strategy itself keeps only the per-retry state.
+ * </p>
+ */
+public class EBRetryStrategyCircuitBreaker implements EBRetryStrategy {
+    public static final String NAME = "circuitBreaker";
+    protected static final String FIELD_DELEGATE = "delegate";
+    protected static final String FIELD_BREAKER = "breaker";
+
+    protected final EBRetryStrategy delegate;
+    protected final EBCircuitBreaker breaker;
+
+    // Per-retry state: breaker permits held by attempts in flight, more than one with hedging.
+    protected final AtomicInteger permits = new AtomicInteger();
+    protected volatile long attemptStartNanos;
+
+    public EBRetryStrategyCircuitBreaker(EBRetryStrategy delegate, EBCircuitBreaker breaker) {
+        if (delegate == null || breaker == null) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    public EBRetryStrategyCircuitBreaker(JSONObject json) {
+        this(delegateFromJSON(json), EBCircuitBreaker.getOrCreate(new EBCircuitBreaker.Builder()
+                .setJSON(json == null || !json.has(FIELD_BREAKER) ? null : json.getJSONObject(FIELD_BREAKER))));
+    }
+
+    private static EBRetryStrategy delegateFromJSON(JSONObject json) {
+        final EBRetryStrategy strategy = json == null || !json.has(FIELD_DELEGATE)
+                ? null
+                : EBRetryStrategyFactory.fromJSON(json.getJSONObject(FIELD_DELEGATE));
+        return strategy == null ? new EBRetryStrategySimple(0) : strategy;
+    }
+
+    @Override
+    public boolean onAttempt() {
+        if (!delegate.onAttempt()) {
+            return false;
+        }
+        if (!breaker.tryAcquirePermission()) {
+            delegate.onAttemptAbandoned();
+            return false;
+        }
+
+        permits.incrementAndGet();
+        attemptStartNanos = System.nanoTime();
+        return true;
+    }
+
+    @Override
+    public void onFail() {
+        // Rejected attempts hold no permit and are not recorded as failures.
+        if (takePermit()) {
+            breaker.onError(System.nanoTime() - attemptStartNanos);
+        }
+        delegate.onFail();
+    }
+
+    @Override
+    public void onSuccess() {
+        if (takePermit()) {
+            breaker.onSuccess(System.nanoTime() - attemptStartNanos);
+        }
+        delegate.onSuccess();
+    }
+
+    @Override
+    public void onAttemptAbandoned() {
+        if (takePermit()) {
+            breaker.releasePermission();
+        }
+        delegate.onAttemptAbandoned();
+    }
+
+    /**
+     * Resets the per-retry state, permits of attempts still in flight are returned to the breaker.
+     */
+    @Override
+    public void reset() {
+        while (takePermit()) {
+            breaker.releasePermission();
+        }
+        delegate.reset();
+    }
+
+    /**
+     * Takes one held permit, if any.
+     * @return true if permit was taken
+     */
+    protected boolean takePermit() {
+        for (;;) {
+            final int held = permits.get();
+            if (held <= 0) {
+                return false;
+            }
+            if (permits.compareAndSet(held, held - 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean shouldContinue() {
+        return delegate.shouldContinue();
+    }
+
+    @Override
+    public long getWaitMilli() {
+        return delegate.getWaitMilli();
+    }
+
+    @Override
+    public EBRetryStrategy copy() {
+        return new EBRetryStrategyCircuitBreaker(delegate.copy(), breaker);
+    }
+
+    @Override
+    public JSONObject toJSON(JSONObject json) {
+        if (json == null) {
+            json = new JSONObject();
+        }
+
+        json.put(FIELD_DELEGATE, EBRetryStrategyFactory.toJSON(delegate, null));
+        json.put(FIELD_BREAKER, breaker.toJSON(null));
+        return json;
+    }
+
+    public EBRetryStrategy getDelegate() {
+        return delegate;
+    }
+
+    public EBCircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryStrategyCircuitBreaker{" +
+                "delegate=" + delegate +
+                ", breaker=" + breaker +
+                '}';
+    }
+}
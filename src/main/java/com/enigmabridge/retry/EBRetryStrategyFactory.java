@@ -15,16 +15,51 @@ public class EBRetryStrategyFactory {
         return getByName(name, null);
     }
 
+    /**
+     * Creates strategy by its name, see {@link EBRetryStrategyRegistry#getDefault()}.
+     *
+     * @param name strategy name
+     * @param config strategy configuration
+     * @return strategy
+     * @throws IllegalArgumentException if the name is unknown
+     */
     public static EBRetryStrategy getByName(String name, JSONObject config) {
-        if (EBRetryStrategyBackoff.NAME.equals(name)) {
-            return new EBRetryStrategyBackoff(config);
+        return EBRetryStrategyRegistry.getDefault().fromJSON(name, config);
+    }
 
-        } else if (EBRetryStrategySimple.NAME.equals(name)) {
-            return new EBRetryStrategySimple(config);
+    /**
+     * Returns immutable policy by its name, see {@link EBRetryStrategyRegistry#getDefault()}.
+     *
+     * @param name policy name
+     * @param config policy configuration
+     * @return policy
+     * @throws IllegalArgumentException if the name is unknown or the strategy is not backed by a policy
+     */
+    public static EBRetryPolicy getPolicyByName(String name, JSONObject config) {
+        return EBRetryStrategyRegistry.getDefault().policyFromJSON(name, config);
+    }
 
-        } else {
-            throw new IllegalArgumentException("Unknown strategy type");
+    public static EBRetryPolicy policyFromJSON(JSONObject json) {
+        if (!json.has(FIELD_RETRY_NAME)) {
+            throw new IllegalArgumentException("Policy name missing");
         }
+
+        final JSONObject config = json.has(FIELD_RETRY_DATA) ? json.getJSONObject(FIELD_RETRY_DATA) : null;
+        return getPolicyByName(json.getString(FIELD_RETRY_NAME), config);
+    }
+
+    public static JSONObject toJSON(EBRetryPolicy policy, JSONObject json) {
+        if (policy == null) {
+            return json;
+        }
+
+        if (json == null) {
+            json = new JSONObject();
+        }
+
+        json.put(FIELD_RETRY_NAME, policy.getName());
+        json.put(FIELD_RETRY_DATA, policy.toJSON(null));
+        return json;
     }
 
     public static EBRetryStrategy fromJSON(JSONObject json) {
@@ -46,7 +81,7 @@ public class EBRetryStrategyFactory {
         }
 
         json.put(FIELD_RETRY_NAME, strategy.getName());
-        json.put(FIELD_RETRY_DATA, strategy.toJSON(null));
+        json.put(FIELD_RETRY_DATA, EBRetryStrategyRegistry.getDefault().toJSON(strategy, null));
         return json;
     }
 
@@ -0,0 +1,77 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+/**
+ * Retry strategy backed by the shared immutable {@link EBRetryPolicy} and its own {@link EBRetryState}.
+ * Copy shares the policy, only a new state is created.
+ */
+public class EBRetryStrategyPolicy implements EBRetryStrategy {
+    protected final EBRetryPolicy policy;
+    protected final EBRetryState state;
+
+    public EBRetryStrategyPolicy(EBRetryPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        this.policy = policy;
+        this.state = policy.newState();
+    }
+
+    @Override
+    public String getName() {
+        return policy.getName();
+    }
+
+    @Override
+    public void onFail() {
+        policy.onFail(state);
+    }
+
+    @Override
+    public void onSuccess() {
+        policy.onSuccess(state);
+    }
+
+    @Override
+    public void reset() {
+        policy.reset(state);
+    }
+
+    @Override
+    public boolean shouldContinue() {
+        return policy.shouldContinue(state);
+    }
+
+    @Override
+    public long getWaitMilli() {
+        return policy.getWaitMilli(state);
+    }
+
+    @Override
+    public EBRetryStrategy copy() {
+        return new EBRetryStrategyPolicy(policy);
+    }
+
+    @Override
+    public JSONObject toJSON(JSONObject json) {
+        return policy.toJSON(json);
+    }
+
+    public EBRetryPolicy getPolicy() {
+        return policy;
+    }
+
+    public EBRetryState getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return "EBRetryStrategyPolicy{" +
+                "policy=" + policy +
+                ", state=" + state +
+                '}';
+    }
+}
@@ -0,0 +1,84 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Provider of a retry strategy type, constructs the strategy from its serialized configuration.
+ * <p>
+ * Custom providers are discovered by {@link java.util.ServiceLoader}, list them in
+ * {@code META-INF/services/com.enigmabridge.retry.EBRetryStrategyProvider}, or register them
+ * by {@link EBRetryStrategyRegistry#register(EBRetryStrategyProvider)}.
+ * </p>
+ */
+public interface EBRetryStrategyProvider {
+    /**
+     * @return strategy name, the same as {@link EBRetryStrategy#getName()} of the created strategies
+     */
+    String getName();
+
+    /**
+     * Creates a new strategy from the configuration.
+     *
+     * @param config configuration serialized by {@link #toJSON(EBRetryStrategy, JSONObject)}, may be null
+     * @return new strategy
+     */
+    EBRetryStrategy fromJSON(JSONObject config);
+
+    /**
+     * Serializes configuration of the strategy.
+     *
+     * @param strategy strategy of this provider
+     * @param json json to write to, may be null
+     * @return json
+     */
+    default JSONObject toJSON(EBRetryStrategy strategy, JSONObject json) {
+        return strategy.toJSON(json);
+    }
+
+    /**
+     * Creates a new immutable policy from the configuration, used, e.g., by {@link EBRetryPolicyComposite}.
+     *
+     * @param config configuration, may be null
+     * @return policy or null if the strategy is not backed by a policy
+     */
+    default EBRetryPolicy policyFromJSON(JSONObject config) {
+        return null;
+    }
+
+    /**
+     * Creates a new strategy backed by the policy created by {@link #policyFromJSON(JSONObject)}.
+     *
+     * @param policy shared policy
+     * @return new strategy
+     */
+    default EBRetryStrategy fromPolicy(EBRetryPolicy policy) {
+        return new EBRetryStrategyPolicy(policy);
+    }
+
+    /**
+     * Writes configuration of the strategy in the compact binary form, see {@link EBRetryBinaryCodec}.
+     *
+     * @param strategy strategy of this provider
+     * @param out output
+     * @return false if the binary form is not supported, JSON form is used instead
+     * @throws IOException on write error
+     */
+    default boolean writeBinary(EBRetryStrategy strategy, DataOutput out) throws IOException {
+        return false;
+    }
+
+    /**
+     * Creates a new strategy from the configuration written by {@link #writeBinary(EBRetryStrategy, DataOutput)}.
+     *
+     * @param in input
+     * @return new strategy
+     * @throws IOException if the data is malformed
+     */
+    default EBRetryStrategy readBinary(DataInput in) throws IOException {
+        throw new IOException("Binary configuration is not supported by " + getName());
+    }
+}
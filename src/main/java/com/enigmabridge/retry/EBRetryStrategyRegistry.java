@@ -0,0 +1,476 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of retry strategy providers, maps the strategy name to its provider.
+ * <p>
+ * The default registry contains built-in strategies and providers found by {@link ServiceLoader}.
+ * Built-in providers are not replaced by discovered ones, explicit {@link #register(EBRetryStrategyProvider)}
+ * replaces any provider.
+ * </p>
+ * <p>
+ * Policies parsed from the configuration are interned in {@link EBRetryPolicyCache}.
+ * </p>
+ */
+public class EBRetryStrategyRegistry {
+    // Maximum number of broken providers skipped by one service lookup.
+    protected static final int MAX_SERVICE_FAILURES = 64;
+
+    // Built-in providers, shared with the policy cache.
+    static final EBRetryStrategyProvider BACKOFF = new EBRetryStrategyProvider() {
+        @Override
+        public String getName() {
+            return EBRetryStrategyBackoff.NAME;
+        }
+
+        @Override
+        public EBRetryStrategy fromJSON(JSONObject config) {
+            return new EBRetryStrategyBackoff(config);
+        }
+
+        @Override
+        public EBRetryPolicy policyFromJSON(JSONObject config) {
+            return new EBRetryPolicyBackoff(config);
+        }
+
+        @Override
+        public EBRetryStrategy fromPolicy(EBRetryPolicy policy) {
+            return new EBRetryStrategyBackoff((EBRetryPolicyBackoff) policy);
+        }
+
+        @Override
+        public boolean writeBinary(EBRetryStrategy strategy, DataOutput out) throws IOException {
+            final EBRetryPolicy policy = EBRetryBinaryCodec.policyOf(strategy);
+            if (!(policy instanceof EBRetryPolicyBackoff)) {
+                return false;
+            }
+
+            EBRetryBinaryCodec.writeBackoff(out, (EBRetryPolicyBackoff) policy);
+            return true;
+        }
+
+        @Override
+        public EBRetryStrategy readBinary(DataInput in) throws IOException {
+            return fromPolicy(EBRetryBinaryCodec.readBackoff(in));
+        }
+    };
+
+    static final EBRetryStrategyProvider SIMPLE = new EBRetryStrategyProvider() {
+        @Override
+        public String getName() {
+            return EBRetryStrategySimple.NAME;
+        }
+
+        @Override
+        public EBRetryStrategy fromJSON(JSONObject config) {
+            return new EBRetryStrategySimple(config);
+        }
+
+        @Override
+        public EBRetryPolicy policyFromJSON(JSONObject config) {
+            return new EBRetryPolicySimple(config);
+        }
+
+        @Override
+        public EBRetryStrategy fromPolicy(EBRetryPolicy policy) {
+            return new EBRetryStrategySimple(((EBRetryPolicySimple) policy).getMaxAttempts());
+        }
+
+        @Override
+        public boolean writeBinary(EBRetryStrategy strategy, DataOutput out) throws IOException {
+            final EBRetryPolicy policy = EBRetryBinaryCodec.policyOf(strategy);
+            if (strategy instanceof EBRetryStrategySimple) {
+                EBRetryBinaryCodec.writeSimple(out, ((EBRetryStrategySimple) strategy).getMaxAttempts());
+                return true;
+            } else if (policy instanceof EBRetryPolicySimple) {
+                EBRetryBinaryCodec.writeSimple(out, ((EBRetryPolicySimple) policy).getMaxAttempts());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public EBRetryStrategy readBinary(DataInput in) throws IOException {
+            return new EBRetryStrategySimple(EBRetryBinaryCodec.readSimple(in));
+        }
+    };
+
+    static final EBRetryStrategyProvider CIRCUIT_BREAKER = new EBRetryStrategyProvider() {
+        @Override
+        public String getName() {
+            return EBRetryStrategyCircuitBreaker.NAME;
+        }
+
+        @Override
+        public EBRetryStrategy fromJSON(JSONObject config) {
+            return new EBRetryStrategyCircuitBreaker(config);
+        }
+    };
+
+    static final EBRetryStrategyProvider SCHEDULE = new EBRetryPolicyProvider() {
+        @Override
+        public String getName() {
+            return EBRetrySchedule.NAME;
+        }
+
+        @Override
+        public EBRetryPolicy policyFromJSON(JSONObject config) {
+            return new EBRetrySchedule(config);
+        }
+
+        @Override
+        protected boolean writePolicy(EBRetryPolicy policy, DataOutput out) throws IOException {
+            if (!(policy instanceof EBRetrySchedule)) {
+                return false;
+            }
+
+            EBRetryBinaryCodec.writeSchedule(out, (EBRetrySchedule) policy);
+            return true;
+        }
+
+        @Override
+        protected EBRetryPolicy readPolicy(DataInput in) throws IOException {
+            return EBRetryBinaryCodec.readSchedule(in);
+        }
+    };
+
+    static final EBRetryStrategyProvider FIXED = new EBRetryPolicyProvider() {
+        @Override
+        public String getName() {
+            return EBRetryPolicyFixed.NAME;
+        }
+
+        @Override
+        public EBRetryPolicy policyFromJSON(JSONObject config) {
+            return new EBRetryPolicyFixed(config);
+        }
+
+        @Override
+        protected boolean writePolicy(EBRetryPolicy policy, DataOutput out) throws IOException {
+            if (!(policy instanceof EBRetryPolicyFixed)) {
+                return false;
+            }
+
+            EBRetryBinaryCodec.writeInterval(out, (EBRetryPolicyInterval) policy);
+            return true;
+        }
+
+        @Override
+        protected EBRetryPolicy readPolicy(DataInput in) throws IOException {
+            return EBRetryBinaryCodec.readInterval(in, false).buildFixed();
+        }
+    };
+
+    static final EBRetryStrategyProvider LINEAR = new EBRetryPolicyProvider() {
+        @Override
+        public String getName() {
+            return EBRetryPolicyLinear.NAME;
+        }
+
+        @Override
+        public EBRetryPolicy policyFromJSON(JSONObject config) {
+            return new EBRetryPolicyLinear(config);
+        }
+
+        @Override
+        protected boolean writePolicy(EBRetryPolicy policy, DataOutput out) throws IOException {
+            if (!(policy instanceof EBRetryPolicyLinear)) {
+                return false;
+            }
+
+            EBRetryBinaryCodec.writeInterval(out, (EBRetryPolicyInterval) policy);
+            return true;
+        }
+
+        @Override
+        protected EBRetryPolicy readPolicy(DataInput in) throws IOException {
+            return EBRetryBinaryCodec.readInterval(in, true).buildLinear();
+        }
+    };
+
+    static final EBRetryStrategyProvider FIBONACCI = new EBRetryPolicyProvider() {
+        @Override
+        public String getName() {
+            return EBRetryPolicyFibonacci.NAME;
+        }
+
+        @Override
+        public EBRetryPolicy policyFromJSON(JSONObject config) {
+            return new EBRetryPolicyFibonacci(config);
+        }
+
+        @Override
+        protected boolean writePolicy(EBRetryPolicy policy, DataOutput out) throws IOException {
+            if (!(policy instanceof EBRetryPolicyFibonacci)) {
+                return false;
+            }
+
+            EBRetryBinaryCodec.writeInterval(out, (EBRetryPolicyInterval) policy);
+            return true;
+        }
+
+        @Override
+        protected EBRetryPolicy readPolicy(DataInput in) throws IOException {
+            return EBRetryBinaryCodec.readInterval(in, false).buildFibonacci();
+        }
+    };
+
+    static final EBRetryStrategyProvider POLYNOMIAL = new EBRetryPolicyProvider() {
+        @Override
+        public String getName() {
+            return EBRetryPolicyPolynomial.NAME;
+        }
+
+        @Override
+        public EBRetryPolicy policyFromJSON(JSONObject config) {
+            return new EBRetryPolicyPolynomial(config);
+        }
+
+        @Override
+        protected boolean writePolicy(EBRetryPolicy policy, DataOutput out) throws IOException {
+            if (!(policy instanceof EBRetryPolicyPolynomial)) {
+                return false;
+            }
+
+            EBRetryBinaryCodec.writeInterval(out, (EBRetryPolicyInterval) policy);
+            return true;
+        }
+
+        @Override
+        protected EBRetryPolicy readPolicy(DataInput in) throws IOException {
+            return EBRetryBinaryCodec.readInterval(in, false).buildPolynomial();
+        }
+    };
+
+    static final EBRetryStrategyProvider COMPOSITE = new EBRetryPolicyProvider() {
+        @Override
+        public String getName() {
+            return EBRetryPolicyComposite.NAME;
+        }
+
+        @Override
+        public EBRetryPolicy policyFromJSON(JSONObject config) {
+            return new EBRetryPolicyComposite(config);
+        }
+    };
+
+    private final ConcurrentMap<String, EBRetryStrategyProvider> providers =
+            new ConcurrentHashMap<String, EBRetryStrategyProvider>();
+    private final EBRetryPolicyCache cache;
+
+    /**
+     * Lazy holder of the default registry.
+     */
+    private static class DefaultHolder {
+        static final EBRetryStrategyRegistry INSTANCE = createDefault();
+    }
+
+    /**
+     * Creates an empty registry using the default policy cache.
+     */
+    public EBRetryStrategyRegistry() {
+        this(EBRetryPolicyCache.getDefault());
+    }
+
+    /**
+     * Creates an empty registry.
+     * @param cache cache of parsed policies, null to parse each time
+     */
+    public EBRetryStrategyRegistry(EBRetryPolicyCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the shared registry with built-in and discovered providers.
+     * @return default registry
+     */
+    public static EBRetryStrategyRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static EBRetryStrategyRegistry createDefault() {
+        final EBRetryStrategyRegistry registry = new EBRetryStrategyRegistry();
+        registry.registerBuiltIn();
+        registry.loadServices(EBRetryStrategyRegistry.class.getClassLoader());
+
+        final ClassLoader context = Thread.currentThread().getContextClassLoader();
+        if (context != null && context != EBRetryStrategyRegistry.class.getClassLoader()) {
+            registry.loadServices(context);
+        }
+        return registry;
+    }
+
+    /**
+     * Registers the provider, replaces existing one with the same name.
+     *
+     * @param provider provider
+     * @return previous provider or null
+     */
+    public EBRetryStrategyProvider register(EBRetryStrategyProvider provider) {
+        if (provider == null || provider.getName() == null) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        return providers.put(provider.getName(), provider);
+    }
+
+    /**
+     * Registers the provider if there is none with the same name.
+     *
+     * @param provider provider
+     * @return true if registered
+     */
+    public boolean registerIfAbsent(EBRetryStrategyProvider provider) {
+        if (provider == null || provider.getName() == null) {
+            throw new IllegalArgumentException("Invalid input arguments");
+        }
+
+        return providers.putIfAbsent(provider.getName(), provider) == null;
+    }
+
+    public EBRetryStrategyProvider unregister(String name) {
+        return providers.remove(name);
+    }
+
+    /**
+     * Registers providers found by {@link ServiceLoader}, existing providers are kept.
+     * Providers failing to load are skipped, the remaining ones are still loaded.
+     *
+     * @param classLoader class loader to search
+     * @return number of newly registered providers
+     */
+    public int loadServices(ClassLoader classLoader) {
+        final Iterator<EBRetryStrategyProvider> it = ServiceLoader.load(EBRetryStrategyProvider.class, classLoader).iterator();
+        int loaded = 0;
+        int failures = 0;
+
+        // Failures are bounded, iterator failing repeatedly at the same position must not loop forever.
+        while (failures < MAX_SERVICE_FAILURES) {
+            try {
+                if (!it.hasNext()) {
+                    break;
+                }
+            } catch (ServiceConfigurationError e) {
+                // Broken configuration file, skip it.
+                failures += 1;
+                continue;
+            }
+
+            final EBRetryStrategyProvider provider;
+            try {
+                provider = it.next();
+            } catch (ServiceConfigurationError e) {
+                // Provider class cannot be loaded or instantiated, skip it.
+                failures += 1;
+                continue;
+            }
+
+            if (provider.getName() != null && registerIfAbsent(provider)) {
+                loaded += 1;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns provider by the strategy name.
+     * @param name strategy name
+     * @return provider or null
+     */
+    public EBRetryStrategyProvider get(String name) {
+        return name == null ? null : providers.get(name);
+    }
+
+    /**
+     * @return cache of parsed policies, null if policies are parsed each time
+     */
+    public EBRetryPolicyCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return names of registered strategies
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(providers.keySet());
+    }
+
+    /**
+     * Creates strategy by its name.
+     *
+     * @param name strategy name
+     * @param config configuration, may be null
+     * @return strategy
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public EBRetryStrategy fromJSON(String name, JSONObject config) {
+        final EBRetryStrategyProvider provider = getProvider(name);
+        final EBRetryPolicy policy = cache != null ? cache.get(provider, config) : null;
+        return policy != null ? provider.fromPolicy(policy) : provider.fromJSON(config);
+    }
+
+    /**
+     * Creates immutable policy by its name.
+     *
+     * @param name policy name
+     * @param config configuration, may be null
+     * @return policy
+     * @throws IllegalArgumentException if the name is unknown or the strategy is not backed by a policy
+     */
+    public EBRetryPolicy policyFromJSON(String name, JSONObject config) {
+        final EBRetryStrategyProvider provider = getProvider(name);
+        final EBRetryPolicy policy = cache != null ? cache.get(provider, config) : provider.policyFromJSON(config);
+        if (policy == null) {
+            throw new IllegalArgumentException("Strategy is not a policy");
+        }
+        return policy;
+    }
+
+    /**
+     * Serializes strategy configuration by its provider, or by the strategy itself if there is no provider.
+     *
+     * @param strategy strategy
+     * @param json json to write to, may be null
+     * @return json
+     */
+    public JSONObject toJSON(EBRetryStrategy strategy, JSONObject json) {
+        final EBRetryStrategyProvider provider = get(strategy.getName());
+        return provider != null ? provider.toJSON(strategy, json) : strategy.toJSON(json);
+    }
+
+    private EBRetryStrategyProvider getProvider(String name) {
+        final EBRetryStrategyProvider provider = get(name);
+        if (provider == null) {
+            throw new IllegalArgumentException("Unknown strategy type");
+        }
+        return provider;
+    }
+
+    /**
+     * Registers built-in strategies.
+     */
+    protected void registerBuiltIn() {
+        register(BACKOFF);
+        register(SIMPLE);
+        register(CIRCUIT_BREAKER);
+        register(SCHEDULE);
+        register(FIXED);
+        register(LINEAR);
+        register(FIBONACCI);
+        register(POLYNOMIAL);
+        register(COMPOSITE);
+    }
+}
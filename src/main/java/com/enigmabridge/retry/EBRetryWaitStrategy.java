@@ -0,0 +1,44 @@
+package com.enigmabridge.retry;
+
+/**
+ * Strategy used by the blocking {@link EBRetry#runSync()} to wait for the job result
+ * and for the backoff interval to pass.
+ * <p>
+ * Implementations trade the latency of the wake-up for the CPU consumed while waiting.
+ * See {@link EBRetryWaitStrategyPark}, {@link EBRetryWaitStrategySpinYield}, {@link EBRetryWaitStrategyBusySpin}.
+ * </p>
+ */
+public interface EBRetryWaitStrategy {
+    /**
+     * Blocks the calling thread until the condition is met.
+     *
+     * @param condition condition to wait for
+     * @throws InterruptedException if waiting thread was interrupted
+     */
+    void await(Condition condition) throws InterruptedException;
+
+    /**
+     * Wakes up the waiting thread after the condition may have changed.
+     *
+     * @param waiter thread blocked in {@link #await(Condition)}
+     */
+    void signal(Thread waiter);
+
+    /**
+     * Condition the waiting thread waits for.
+     */
+    interface Condition {
+        /**
+         * @return true if the waiting should end
+         */
+        boolean isMet();
+
+        /**
+         * Maximal time to block before the condition has to be re-evaluated, in nanoseconds.
+         * Negative value means there is no time limit and the waiter relies on the signal.
+         *
+         * @return nanoseconds to block or negative value
+         */
+        long getWaitNanos();
+    }
+}
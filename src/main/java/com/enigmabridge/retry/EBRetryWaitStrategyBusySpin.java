@@ -0,0 +1,23 @@
+package com.enigmabridge.retry;
+
+/**
+ * Wait strategy spinning on the condition. Lowest wake-up latency, burns one CPU core while waiting.
+ * Use only if the number of concurrent blocking calls does not exceed the number of cores.
+ */
+public class EBRetryWaitStrategyBusySpin implements EBRetryWaitStrategy {
+    public static final EBRetryWaitStrategyBusySpin INSTANCE = new EBRetryWaitStrategyBusySpin();
+
+    @Override
+    public void await(Condition condition) throws InterruptedException {
+        while (!condition.isMet()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    @Override
+    public void signal(Thread waiter) {
+        // Waiter is spinning, nothing to do.
+    }
+}
@@ -0,0 +1,32 @@
+package com.enigmabridge.retry;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Wait strategy parking the waiting thread with {@link LockSupport}, woken up by the signal.
+ * No CPU is consumed while waiting. Default wait strategy.
+ */
+public class EBRetryWaitStrategyPark implements EBRetryWaitStrategy {
+    public static final EBRetryWaitStrategyPark INSTANCE = new EBRetryWaitStrategyPark();
+
+    @Override
+    public void await(Condition condition) throws InterruptedException {
+        while (!condition.isMet()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            final long waitNanos = condition.getWaitNanos();
+            if (waitNanos < 0) {
+                LockSupport.park(this);
+            } else if (waitNanos > 0) {
+                LockSupport.parkNanos(this, waitNanos);
+            }
+        }
+    }
+
+    @Override
+    public void signal(Thread waiter) {
+        LockSupport.unpark(waiter);
+    }
+}
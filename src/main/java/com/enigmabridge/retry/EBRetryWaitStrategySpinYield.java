@@ -0,0 +1,48 @@
+package com.enigmabridge.retry;
+
+/**
+ * Wait strategy spinning on the condition for a given number of iterations,
+ * then yielding the CPU with {@link Thread#yield()} between the checks.
+ */
+public class EBRetryWaitStrategySpinYield implements EBRetryWaitStrategy {
+    /**
+     * The default number of spins before yielding.
+     */
+    public static final int DEFAULT_SPIN_TRIES = 100;
+    public static final EBRetryWaitStrategySpinYield INSTANCE = new EBRetryWaitStrategySpinYield();
+
+    protected final int spinTries;
+
+    public EBRetryWaitStrategySpinYield() {
+        this(DEFAULT_SPIN_TRIES);
+    }
+
+    public EBRetryWaitStrategySpinYield(int spinTries) {
+        this.spinTries = spinTries;
+    }
+
+    @Override
+    public void await(Condition condition) throws InterruptedException {
+        int counter = spinTries;
+        while (!condition.isMet()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (counter > 0) {
+                counter -= 1;
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Override
+    public void signal(Thread waiter) {
+        // Waiter is spinning, nothing to do.
+    }
+
+    public int getSpinTries() {
+        return spinTries;
+    }
+}
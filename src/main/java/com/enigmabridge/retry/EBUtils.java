@@ -37,11 +37,7 @@ public class EBUtils {
             }
         }
 
-        try {
-            return obj instanceof Number ? ((Number) obj).intValue() : (int) json.getDouble(key);
-        } catch(Exception e){
-            return null;
-        }
+        return obj instanceof Number ? ((Number) obj).intValue() : null;
     }
 
     public static int getAsInteger(JSONObject json, String key, int radix) throws JSONException {
@@ -72,11 +68,7 @@ public class EBUtils {
             }
         }
 
-        try {
-            return obj instanceof Number ? ((Number) obj).longValue() : (long) json.getDouble(key);
-        } catch(Exception e){
-            return null;
-        }
+        return obj instanceof Number ? ((Number) obj).longValue() : null;
     }
 
     public static long getAsLong(JSONObject json, String key, int radix) throws JSONException {
@@ -106,11 +98,7 @@ public class EBUtils {
             }
         }
 
-        try {
-            return obj instanceof Number ? ((Number) obj).doubleValue() : json.getDouble(key);
-        } catch(Exception e){
-            return null;
-        }
+        return obj instanceof Number ? ((Number) obj).doubleValue() : null;
     }
 
     public static double getAsDouble(JSONObject json, String key) throws JSONException {
@@ -0,0 +1,188 @@
+package com.enigmabridge.retry;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EBCircuitBreakerTest {
+    private static final int OPEN_MILLIS = 50;
+
+    private static EBCircuitBreaker newBreaker() {
+        return new EBCircuitBreaker.Builder()
+                .setWindowSize(10)
+                .setMinimumCalls(4)
+                .setFailureRateThreshold(50)
+                .setOpenDurationMillis(OPEN_MILLIS)
+                .setHalfOpenCalls(2)
+                .build();
+    }
+
+    private static EBCircuitBreaker openBreaker() {
+        final EBCircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onError(0);
+        }
+        assertEquals(EBCircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static EBCircuitBreaker halfOpenBreaker() throws InterruptedException {
+        final EBCircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_MILLIS + 20);
+        return breaker;
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        final EBCircuitBreaker breaker = newBreaker();
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        breaker.onError(0);
+        assertEquals(EBCircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onError(0);
+        assertEquals(EBCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        assertTrue(breaker.getRemainingOpenMillis() > 0);
+    }
+
+    @Test
+    public void testHalfOpenPermitsAreLimited() throws Exception {
+        final EBCircuitBreaker breaker = halfOpenBreaker();
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(EBCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void testHalfOpenClosesAfterSuccesses() throws Exception {
+        final EBCircuitBreaker breaker = halfOpenBreaker();
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess(0);
+        assertEquals(EBCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onSuccess(0);
+        assertEquals(EBCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenReopensOnFailure() throws Exception {
+        final EBCircuitBreaker breaker = halfOpenBreaker();
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onError(0);
+        assertEquals(EBCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void testReleasedPermitAllowsAnotherTrial() throws Exception {
+        final EBCircuitBreaker breaker = halfOpenBreaker();
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.releasePermission();
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void testReleaseDoesNotReturnConfirmedPermits() throws Exception {
+        final EBCircuitBreaker breaker = new EBCircuitBreaker.Builder()
+                .setWindowSize(10)
+                .setMinimumCalls(4)
+                .setOpenDurationMillis(OPEN_MILLIS)
+                .setHalfOpenCalls(3)
+                .build();
+        for (int i = 0; i < 4; i++) {
+            breaker.onError(0);
+        }
+        Thread.sleep(OPEN_MILLIS + 20);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess(0);
+
+        // Permit of the succeeded trial is not returned by a stray release.
+        breaker.releasePermission();
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void testStrategyAbandonedAttemptReleasesPermit() throws Exception {
+        final EBCircuitBreaker breaker = halfOpenBreaker();
+        final EBRetryStrategy strategy = new EBRetryStrategyCircuitBreaker(new EBRetryStrategySimple(5), breaker);
+
+        assertTrue(strategy.onAttempt());
+        assertTrue(strategy.onAttempt());
+        assertFalse(strategy.onAttempt());
+
+        strategy.onAttemptAbandoned();
+        assertTrue(strategy.onAttempt());
+
+        // Reset returns all permits held by the retry.
+        strategy.reset();
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void testRejectedAttemptIsNotRecorded() throws Exception {
+        final EBCircuitBreaker breaker = openBreaker();
+        final EBRetryStrategy strategy = new EBRetryStrategyCircuitBreaker(new EBRetryStrategySimple(5), breaker);
+        Thread.sleep(OPEN_MILLIS + 20);
+
+        final EBCircuitBreaker other = newBreaker();
+        final EBRetryStrategy rejected = new EBRetryStrategyCircuitBreaker(new EBRetryStrategySimple(5), other);
+
+        // Failure without a permit, e.g., local deadline rejection, does not reach the breaker.
+        for (int i = 0; i < 4; i++) {
+            rejected.onFail();
+        }
+        assertEquals(EBCircuitBreaker.State.CLOSED, other.getState());
+
+        assertTrue(strategy.onAttempt());
+        strategy.onSuccess();
+        assertTrue(strategy.onAttempt());
+        strategy.onSuccess();
+        assertEquals(EBCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testCancelledRetryReleasesHalfOpenPermit() throws Exception {
+        final EBCircuitBreaker breaker = halfOpenBreaker();
+        final AtomicInteger attempts = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final EBRetry<Integer, Object> retry = new EBRetry<Integer, Object>(
+                new EBRetryStrategyCircuitBreaker(new EBRetryStrategySimple(3), breaker));
+        retry.setExecutionMode(EBRetryExecutionMode.DIRECT);
+        retry.runAsync(new EBRetryJobSimple<Integer, Object>() {
+            @Override
+            public void runAsync(EBCallback<Integer, Object> callback) {
+                // Never completes.
+                attempts.incrementAndGet();
+                started.countDown();
+            }
+        });
+
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        retry.cancel();
+
+        // Both half-open trial permits available again.
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(1, attempts.get());
+    }
+}
@@ -0,0 +1,102 @@
+package com.enigmabridge.retry;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class EBConcurrencyLimiterTest {
+    private static EBConcurrencyLimiter newLimiter(int queueSize) {
+        return new EBConcurrencyLimiter.Builder()
+                .setInitialLimit(1)
+                .setMinLimit(1)
+                .setMaxLimit(1)
+                .setMaxQueueSize(queueSize)
+                .build();
+    }
+
+    @Test
+    public void testQueueFullRejects() {
+        final EBConcurrencyLimiter limiter = newLimiter(1);
+        assertTrue(limiter.tryAcquire());
+
+        final Runnable nop = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        assertTrue(limiter.execute(nop));
+        assertFalse(limiter.execute(nop));
+        assertEquals(1, limiter.getQueued());
+
+        assertTrue(limiter.remove(nop));
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    public void testQueuedAttemptRunsOnExecutor() throws Exception {
+        final EBConcurrencyLimiter limiter = newLimiter(10);
+        final AtomicReference<Thread> ranOn = new AtomicReference<Thread>();
+        final CountDownLatch ran = new CountDownLatch(1);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.execute(new Runnable() {
+            @Override
+            public void run() {
+                ranOn.set(Thread.currentThread());
+                ran.countDown();
+                limiter.releaseUnused();
+            }
+        }));
+
+        // Releasing thread does not run the queued attempt.
+        limiter.releaseUnused();
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), ranOn.get());
+    }
+
+    @Test
+    public void testQueueTimeIsBounded() throws Exception {
+        final EBConcurrencyLimiter limiter = newLimiter(10);
+        assertTrue(limiter.tryAcquire());
+
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final EBRetry<Integer, Object> retry = new EBRetry<Integer, Object>(new EBRetryStrategySimple(1));
+        retry.setLimiter(limiter);
+        retry.setAttemptTimeoutMillis(100);
+        retry.addListener(new EBRetryListener<Integer, Object>() {
+            @Override
+            public void onSuccess(Integer result, EBRetry<Integer, Object> retry) {
+                done.countDown();
+            }
+
+            @Override
+            public void onFail(EBRetryJobError<Object> error, EBRetry<Integer, Object> retry) {
+                failure.set(error.getThrowable());
+                done.countDown();
+            }
+        });
+
+        final long start = System.nanoTime();
+        retry.runAsync(new EBRetryJobSimple<Integer, Object>() {
+            @Override
+            public void runAsync(EBCallback<Integer, Object> callback) {
+                callback.onSuccess(1);
+            }
+        });
+
+        // Permit is never released, the attempt times out in the queue and leaves it.
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof EBRetryAttemptTimeoutException);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(0, limiter.getQueued());
+        assertEquals(1, limiter.getInFlight());
+    }
+}
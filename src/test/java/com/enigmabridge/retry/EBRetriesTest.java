@@ -0,0 +1,156 @@
+package com.enigmabridge.retry;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EBRetriesTest {
+    private static final int WARMUP = 50000;
+    private static final int CALLS = 10000;
+
+    private static final Integer RESULT = 42;
+    private static final Callable<Integer> SUCCESS = new Callable<Integer>() {
+        @Override
+        public Integer call() {
+            return RESULT;
+        }
+    };
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(sunBean.isThreadAllocatedMemorySupported());
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+        return sunBean;
+    }
+
+    private static long allocatedBytes(com.sun.management.ThreadMXBean bean, EBRetryStrategy strategy) throws Exception {
+        final long threadId = Thread.currentThread().getId();
+        final long before = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < CALLS; i++) {
+            EBRetries.call(strategy, SUCCESS);
+        }
+        return bean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    @Test
+    public void testFastPathDoesNotAllocate() throws Exception {
+        final com.sun.management.ThreadMXBean bean = threadBean();
+        final EBRetryStrategy strategy = new EBRetryStrategyBackoff.Builder().setMaxAttempts(3).build();
+        for (int i = 0; i < WARMUP; i++) {
+            EBRetries.call(strategy, SUCCESS);
+        }
+
+        // Less than a byte per call leaves room for the measurement itself, one allocating call would exceed it.
+        long allocated = allocatedBytes(bean, strategy);
+        for (int i = 0; i < 3 && allocated >= CALLS; i++) {
+            allocated = allocatedBytes(bean, strategy);
+        }
+        assertTrue("allocated " + allocated + " bytes in " + CALLS + " calls", allocated < CALLS);
+    }
+
+    @Test
+    public void testRetriesUntilSuccess() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final Integer result = EBRetries.call(new EBRetryStrategySimple(3), new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new Exception("fail");
+                }
+                return RESULT;
+            }
+        });
+
+        assertEquals(RESULT, result);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testPerAttemptPermissionCoversFirstAttempt() throws Exception {
+        final AtomicInteger permissions = new AtomicInteger();
+        final EBRetryStrategy strategy = new EBRetryStrategySimple(2) {
+            @Override
+            public boolean onAttempt() {
+                permissions.incrementAndGet();
+                return false;
+            }
+
+            @Override
+            public EBRetryStrategy copy() {
+                return this;
+            }
+        };
+
+        assertTrue(EBRetries.hasPerAttemptPermission(strategy));
+        try {
+            EBRetries.call(strategy, SUCCESS);
+            fail("rejected attempt succeeded");
+        } catch (EBRetryException e) {
+            assertTrue(e.getCause() instanceof EBRetryAttemptRejectedException);
+        }
+        assertEquals(2, permissions.get());
+    }
+
+    @Test
+    public void testNoAttemptAllowed() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final Callable<Integer> callable = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                calls.incrementAndGet();
+                return RESULT;
+            }
+        };
+        final Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                calls.incrementAndGet();
+            }
+        };
+        final EBRetryPolicy policy = new EBRetryPolicyInterval.Builder().setMaxAttempts(0).buildFixed();
+
+        try {
+            EBRetries.call(new EBRetryStrategySimple(0), callable);
+            fail("strategy without attempts called");
+        } catch (EBRetryFailedException e) {
+            // Expected.
+        }
+        try {
+            EBRetries.run(new EBRetryStrategyBackoff.Builder().setMaxAttempts(0).build(), runnable);
+            fail("strategy without attempts called");
+        } catch (EBRetryFailedException e) {
+            // Expected.
+        }
+        try {
+            EBRetries.call(policy, callable);
+            fail("policy without attempts called");
+        } catch (EBRetryFailedException e) {
+            // Expected.
+        }
+        try {
+            EBRetries.run(policy, runnable);
+            fail("policy without attempts called");
+        } catch (EBRetryFailedException e) {
+            // Expected.
+        }
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void testDefaultPermissionTakesFastPath() {
+        assertTrue(!EBRetries.hasPerAttemptPermission(new EBRetryStrategySimple(2)));
+        assertTrue(!EBRetries.hasPerAttemptPermission(new EBRetryStrategyBackoff.Builder().build()));
+        assertTrue(EBRetries.hasPerAttemptPermission(
+                new EBRetryStrategyCircuitBreaker(new EBRetryStrategySimple(2), new EBCircuitBreaker.Builder().build())));
+    }
+}
@@ -0,0 +1,96 @@
+package com.enigmabridge.retry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of a strategy through a reused {@link ByteBuffer},
+ * byte arrays and the {@link java.io.DataOutput} / {@link java.io.DataInput} streams.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EBRetryBinaryCodecBenchmark {
+    @Param({"backoff", "policy", "breaker"})
+    public String strategy;
+
+    private EBRetryStrategy instance;
+    private ByteBuffer writeBuffer;
+    private ByteBuffer readBuffer;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("backoff".equals(strategy)) {
+            instance = new EBRetryStrategyBackoff.Builder().setMaxAttempts(10).build();
+        } else if ("policy".equals(strategy)) {
+            instance = new EBRetryStrategyPolicy(
+                    EBRetryPolicyCompiler.parse("3x immediate, then exp(500ms, x1.5, max 60s), stop after 15m"));
+        } else {
+            instance = new EBRetryStrategyCircuitBreaker(new EBRetryStrategySimple(5),
+                    new EBCircuitBreaker.Builder().setName("codec-benchmark").getOrCreate());
+        }
+
+        instance.onFail();
+        instance.onFail();
+        bytes = EBRetryBinaryCodec.toBytes(instance);
+        writeBuffer = ByteBuffer.allocate(4096);
+        readBuffer = ByteBuffer.wrap(bytes);
+    }
+
+    @Benchmark
+    public ByteBuffer writeBuffer() {
+        writeBuffer.clear();
+        EBRetryBinaryCodec.write(instance, writeBuffer);
+        return writeBuffer;
+    }
+
+    @Benchmark
+    public EBRetryStrategy readBuffer() throws IOException {
+        readBuffer.clear();
+        return EBRetryBinaryCodec.read(readBuffer);
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return EBRetryBinaryCodec.toBytes(instance);
+    }
+
+    @Benchmark
+    public EBRetryStrategy fromBytes() throws IOException {
+        return EBRetryBinaryCodec.fromBytes(bytes);
+    }
+
+    @Benchmark
+    public byte[] writeStream() throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+        EBRetryBinaryCodec.write(instance, new DataOutputStream(bos));
+        return bos.toByteArray();
+    }
+
+    @Benchmark
+    public EBRetryStrategy readStream() throws IOException {
+        return EBRetryBinaryCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
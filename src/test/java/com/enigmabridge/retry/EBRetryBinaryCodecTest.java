@@ -0,0 +1,304 @@
+package com.enigmabridge.retry;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EBRetryBinaryCodecTest {
+    private static EBRetryStrategy roundTrip(EBRetryStrategy strategy) throws IOException {
+        return EBRetryBinaryCodec.fromBytes(EBRetryBinaryCodec.toBytes(strategy));
+    }
+
+    private static EBRetryStrategy failed(EBRetryStrategy strategy, int failures) {
+        for (int i = 0; i < failures; i++) {
+            strategy.onFail();
+        }
+        return strategy;
+    }
+
+    /**
+     * Asserts both strategies give the same waits until they stop.
+     */
+    private static void assertSameCourse(EBRetryStrategy expected, EBRetryStrategy actual) {
+        for (int i = 0; i < 50 && expected.shouldContinue(); i++) {
+            assertTrue(actual.shouldContinue());
+            expected.onFail();
+            actual.onFail();
+            assertEquals(expected.getWaitMilli(), actual.getWaitMilli());
+        }
+        assertEquals(expected.shouldContinue(), actual.shouldContinue());
+    }
+
+    @Test
+    public void testBackoffRoundTrip() throws IOException {
+        final EBRetryStrategy strategy = new EBRetryStrategyBackoff.Builder()
+                .setInitialIntervalMillis(150)
+                .setMultiplier(3.0)
+                .setMaxAttempts(7)
+                .setJitter(EBRetryJitter.NONE)
+                .build();
+
+        final EBRetryStrategy restored = roundTrip(failed(strategy, 2));
+        assertEquals(strategy.getName(), restored.getName());
+        assertEquals(strategy.toJSON(null).toString(), restored.toJSON(null).toString());
+        assertSameCourse(strategy, restored);
+    }
+
+    @Test
+    public void testPolicyRoundTrips() throws IOException {
+        final EBRetryPolicy[] policies = {
+                EBRetryPolicyCompiler.parse("3x immediate, then exp(500ms, x1.5, max 60s), stop after 15m"),
+                new EBRetryPolicyInterval.Builder().setInitialIntervalMillis(200).setJitter(EBRetryJitter.NONE).buildFixed(),
+                new EBRetryPolicyInterval.Builder().setIncrementMillis(300).setMaxAttempts(9).setJitter(EBRetryJitter.NONE).buildLinear(),
+                new EBRetryPolicyInterval.Builder().setExponent(2.5).setMaxAttempts(6).setJitter(EBRetryJitter.NONE).buildPolynomial(),
+                new EBRetryPolicyInterval.Builder().setMaxAttempts(8).setJitter(EBRetryJitter.NONE).buildFibonacci(),
+        };
+
+        for (EBRetryPolicy policy : policies) {
+            final EBRetryStrategy strategy = failed(new EBRetryStrategyPolicy(policy), 3);
+            final EBRetryStrategy restored = roundTrip(strategy);
+            assertEquals(policy.getName(), restored.getName());
+            assertSameCourse(strategy, restored);
+        }
+    }
+
+    @Test
+    public void testSimpleRoundTrip() throws IOException {
+        final EBRetryStrategy strategy = failed(new EBRetryStrategySimple(5), 3);
+        assertSameCourse(strategy, roundTrip(strategy));
+    }
+
+    @Test
+    public void testCircuitBreakerKeepsDelegateState() throws IOException {
+        final EBCircuitBreaker breaker = new EBCircuitBreaker.Builder().setName("codec-test").getOrCreate();
+        final EBRetryStrategy strategy = failed(new EBRetryStrategyCircuitBreaker(new EBRetryStrategySimple(5), breaker), 4);
+
+        final EBRetryStrategy restored = roundTrip(strategy);
+        assertTrue(restored instanceof EBRetryStrategyCircuitBreaker);
+        assertSame(breaker, ((EBRetryStrategyCircuitBreaker) restored).getBreaker());
+        assertTrue(restored.shouldContinue());
+        restored.onFail();
+        assertFalse(restored.shouldContinue());
+    }
+
+    @Test
+    public void testSequentialBufferDecoding() throws IOException {
+        final EBRetryStrategy[] strategies = new EBRetryStrategy[100];
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < strategies.length; i++) {
+            strategies[i] = failed(new EBRetryStrategyBackoff.Builder()
+                    .setInitialIntervalMillis(100 + i % 3)
+                    .setMaxAttempts(20)
+                    .setJitter(EBRetryJitter.NONE)
+                    .build(), i % 5);
+            EBRetryBinaryCodec.write(strategies[i], buffer);
+        }
+
+        buffer.flip();
+        for (EBRetryStrategy strategy : strategies) {
+            assertSameCourse(strategy, EBRetryBinaryCodec.read(buffer));
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testBufferAndStreamFormsAreEqual() throws IOException {
+        // Binary and JSON configuration, states without the elapsed time to compare the bytes.
+        final EBCircuitBreaker breaker = new EBCircuitBreaker.Builder().setName("codec-test").getOrCreate();
+        final EBRetryStrategy[] strategies = {
+                failed(new EBRetryStrategySimple(5), 2),
+                failed(new EBRetryStrategyCircuitBreaker(new EBRetryStrategySimple(5), breaker), 2),
+        };
+
+        for (EBRetryStrategy strategy : strategies) {
+            final ByteBuffer buffer = ByteBuffer.allocate(512);
+            EBRetryBinaryCodec.write(strategy, buffer);
+
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            EBRetryBinaryCodec.write(strategy, new DataOutputStream(bos));
+            assertArrayEquals(bos.toByteArray(), Arrays.copyOf(buffer.array(), buffer.position()));
+
+            final EBRetryStrategy restored = EBRetryBinaryCodec.read(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+            assertSameCourse(strategy, restored);
+        }
+    }
+
+    @Test
+    public void testDecodedPoliciesAreInterned() throws IOException {
+        final EBRetryStrategyRegistry registry = EBRetryStrategyRegistry.getDefault();
+        final byte[] bytes = EBRetryBinaryCodec.toBytes(new EBRetryStrategyPolicy(EBRetryPolicyCompiler.parse("4x 250ms, 1s")));
+
+        final EBRetryStrategyPolicy first = (EBRetryStrategyPolicy) EBRetryBinaryCodec.read(ByteBuffer.wrap(bytes), registry);
+        final EBRetryStrategyPolicy second = (EBRetryStrategyPolicy) EBRetryBinaryCodec.fromBytes(bytes);
+        final EBRetryStrategyPolicy third = (EBRetryStrategyPolicy) EBRetryBinaryCodec.read(
+                new DataInputStream(new ByteArrayInputStream(bytes)));
+
+        assertNotSame(first, second);
+        assertSame(first.getPolicy(), second.getPolicy());
+        assertSame(first.getPolicy(), third.getPolicy());
+    }
+
+    @Test
+    public void testOverflowKeepsPosition() {
+        final ByteBuffer buffer = ByteBuffer.allocate(6);
+        buffer.put((byte) 1);
+        try {
+            EBRetryBinaryCodec.write(new EBRetryStrategyBackoff.Builder().setMaxAttempts(3).build(), buffer);
+            fail("buffer overflow expected");
+        } catch (BufferOverflowException e) {
+            assertEquals(1, buffer.position());
+        }
+    }
+
+    @Test
+    public void testMalformedKeepsPosition() throws IOException {
+        final byte[] bytes = EBRetryBinaryCodec.toBytes(failed(new EBRetryStrategySimple(5), 1));
+        final ByteBuffer truncated = ByteBuffer.wrap(bytes, 0, bytes.length - 1);
+        try {
+            EBRetryBinaryCodec.read(truncated);
+            fail("truncated data accepted");
+        } catch (IOException e) {
+            assertEquals(0, truncated.position());
+        }
+
+        bytes[0] = (byte) (EBRetryBinaryCodec.VERSION + 1);
+        try {
+            EBRetryBinaryCodec.fromBytes(bytes);
+            fail("unknown version accepted");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testStringLengthBeyondInput() throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bos);
+        out.writeByte(EBRetryBinaryCodec.VERSION);
+        EBRetryBinaryCodec.writeVarLong(out, Integer.MAX_VALUE);
+        out.write(new byte[16]);
+        final byte[] bytes = bos.toByteArray();
+
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            EBRetryBinaryCodec.read(buffer);
+            fail("string longer than the input accepted");
+        } catch (IOException e) {
+            assertEquals(0, buffer.position());
+        }
+
+        // Stream input fails on the end of input, without allocating the declared length.
+        try {
+            EBRetryBinaryCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+            fail("string longer than the input accepted");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testLongStringFromStream() throws IOException {
+        final char[] chars = new char[20000];
+        Arrays.fill(chars, 'x');
+        final String value = new String(chars) + "\u00e9";
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        EBRetryBinaryCodec.writeString(new DataOutputStream(bos), value);
+        final byte[] bytes = bos.toByteArray();
+        assertEquals(value, EBRetryBinaryCodec.readString(new DataInputStream(new ByteArrayInputStream(bytes))));
+        assertEquals(value, EBRetryBinaryCodec.readString(new EBRetryBinaryCodec.ByteBufferInput(ByteBuffer.wrap(bytes))));
+    }
+
+    @Test
+    public void testInvalidCompositeStage() throws IOException {
+        final EBRetryPolicy policy = new EBRetryPolicyComposite.Builder()
+                .addStageAttempts(new EBRetryPolicySimple(-1), 3)
+                .addStage(new EBRetryPolicyInterval.Builder().setJitter(EBRetryJitter.NONE).buildFixed())
+                .build();
+        final EBRetryStrategyPolicy strategy = new EBRetryStrategyPolicy(policy);
+        final EBRetryPolicyComposite.State state = (EBRetryPolicyComposite.State) strategy.getState();
+
+        // Stage is the only difference of the two encodings, unless the elapsed millisecond ticks in between.
+        int offset = -1;
+        byte[] bytes = null;
+        for (int i = 0; i < 100 && offset < 0; i++) {
+            state.stage = 0;
+            bytes = EBRetryBinaryCodec.toBytes(strategy);
+            state.stage = 1;
+            final byte[] other = EBRetryBinaryCodec.toBytes(strategy);
+            if (bytes.length != other.length) {
+                continue;
+            }
+
+            int diffs = 0;
+            for (int j = 0; j < bytes.length; j++) {
+                if (bytes[j] != other[j]) {
+                    diffs += 1;
+                    offset = j;
+                }
+            }
+            if (diffs != 1) {
+                offset = -1;
+            }
+        }
+        assertTrue(offset >= 0);
+
+        // Negative as int, and zero as int.
+        final long[] stages = {0x80000000L, 0x100000000L};
+        for (long stage : stages) {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            bos.write(bytes, 0, offset);
+            EBRetryBinaryCodec.writeVarLong(new DataOutputStream(bos), stage);
+            bos.write(bytes, offset + 1, bytes.length - offset - 1);
+            try {
+                EBRetryBinaryCodec.fromBytes(bos.toByteArray());
+                fail("invalid stage accepted: " + stage);
+            } catch (IOException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testBufferReadLine() throws IOException {
+        final byte[] bytes = "first\nsecond\r\nthird\rlast".getBytes(StandardCharsets.ISO_8859_1);
+        final DataInputStream stream = new DataInputStream(new ByteArrayInputStream(bytes));
+        final EBRetryBinaryCodec.ByteBufferInput buffer = new EBRetryBinaryCodec.ByteBufferInput(ByteBuffer.wrap(bytes));
+
+        // Same lines as DataInputStream, null at the end of input.
+        for (int i = 0; i < 5; i++) {
+            @SuppressWarnings("deprecation")
+            final String expected = stream.readLine();
+            assertEquals(expected, buffer.readLine());
+        }
+        assertEquals(null, buffer.readLine());
+    }
+
+    @Test
+    public void testVarLong() throws IOException {
+        final long[] values = {0, 1, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        for (long value : values) {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            EBRetryBinaryCodec.writeVarLong(new DataOutputStream(bos), EBRetryBinaryCodec.zigZag(value));
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+            assertEquals(value, EBRetryBinaryCodec.unZigZag(EBRetryBinaryCodec.readVarLong(in)));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.enigmabridge.retry;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EBRetryBudgetTest {
+    @Test
+    public void testMinimalRetries() {
+        // 5 retries per second over 10 seconds.
+        final EBRetryBudget budget = new EBRetryBudget(0.0, 5, 10000, 10);
+        for (int i = 0; i < 50; i++) {
+            assertTrue("retry " + i, budget.tryRetry());
+        }
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    public void testRatioOfFirstAttempts() {
+        final EBRetryBudget budget = new EBRetryBudget(0.1, 0, 10000, 10);
+        assertFalse(budget.tryRetry());
+
+        for (int i = 0; i < 100; i++) {
+            budget.onFirstAttempt();
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue("retry " + i, budget.tryRetry());
+        }
+        assertFalse(budget.tryRetry());
+
+        for (int i = 0; i < 10; i++) {
+            budget.onFirstAttempt();
+        }
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    public void testWindowExpires() throws Exception {
+        final EBRetryBudget budget = new EBRetryBudget(0.0, 100, 50, 5);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(budget.tryRetry());
+        }
+        assertFalse(budget.tryRetry());
+
+        // Whole window rotated, withdrawals expired.
+        Thread.sleep(120);
+        assertTrue(budget.tryRetry());
+    }
+
+    @Test
+    public void testConcurrentWithdrawals() throws Exception {
+        final int threads = 8;
+        final EBRetryBudget budget = new EBRetryBudget(0.5, 0, 60000, 10);
+        for (int i = 0; i < 1000; i++) {
+            budget.onFirstAttempt();
+        }
+
+        final AtomicInteger granted = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 1000; i++) {
+                        if (budget.tryRetry()) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Check and withdrawal are not atomic, each thread may overdraw by one.
+        assertTrue("granted " + granted.get(), granted.get() >= 500);
+        assertTrue("granted " + granted.get(), granted.get() <= 500 + threads);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        new EBRetryBudget(0.1, 1, 5, 10);
+    }
+
+    @Test
+    public void testDefaults() {
+        final EBRetryBudget budget = new EBRetryBudget();
+        assertEquals(EBRetryBudget.DEFAULT_RETRY_RATIO, budget.getRetryRatio(), 0.0);
+        assertEquals(EBRetryBudget.DEFAULT_MIN_RETRIES_PER_SECOND, budget.getMinRetriesPerSecond());
+        assertEquals(EBRetryBudget.DEFAULT_WINDOW_MILLIS, budget.getWindowMillis());
+    }
+}
@@ -0,0 +1,68 @@
+package com.enigmabridge.retry;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EBRetryHedgingTest {
+    private static final int ITERATIONS = 100;
+    private static final int MAX_HEDGES = 3;
+
+    /**
+     * Job keeping callbacks of all started attempts, completed by the test.
+     */
+    private static class ManualJob extends EBRetryJobSimple<Integer, Object> implements EBRetryJobCancellable<Integer, Object> {
+        final List<EBCallback<Integer, Object>> started = new CopyOnWriteArrayList<EBCallback<Integer, Object>>();
+        final List<EBCallback<Integer, Object>> cancelled = new CopyOnWriteArrayList<EBCallback<Integer, Object>>();
+
+        @Override
+        public void runAsync(EBCallback<Integer, Object> callback) {
+            started.add(callback);
+        }
+
+        @Override
+        public void cancelAttempt(EBCallback<Integer, Object> callback) {
+            cancelled.add(callback);
+        }
+    }
+
+    private static void awaitStarted(ManualJob job, int attempts) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (job.started.size() < attempts && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(attempts, job.started.size());
+    }
+
+    @Test
+    public void testLosingHedgesAreCancelled() throws Exception {
+        final EBRetryHedging hedging = new EBRetryHedging.Builder()
+                .setDelayMillis(1)
+                .setMaxHedges(MAX_HEDGES)
+                .build();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            final EBRetry<Integer, Object> retry = new EBRetry<Integer, Object>(new EBRetryStrategySimple(1));
+            retry.setHedging(hedging);
+            final ManualJob job = new ManualJob();
+            final EBFuture<Integer, Object> future = retry.runAsync(job);
+
+            awaitStarted(job, MAX_HEDGES + 1);
+            final EBCallback<Integer, Object> winner = job.started.get(i % job.started.size());
+            winner.onSuccess(i);
+
+            assertEquals(Integer.valueOf(i), future.get(1, TimeUnit.SECONDS));
+            assertEquals("every losing attempt is cancelled", MAX_HEDGES, job.cancelled.size());
+            assertFalse(job.cancelled.contains(winner));
+            for (EBCallback<Integer, Object> callback : job.started) {
+                assertTrue(callback == winner || job.cancelled.contains(callback));
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.enigmabridge.retry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EBRetryPolicyCompilerTest {
+    private static int[] delays(EBRetrySchedule schedule) {
+        final int[] delays = new int[schedule.getSize()];
+        for (int i = 0; i < delays.length; i++) {
+            delays[i] = schedule.getBaseDelayMillis(i + 1);
+        }
+        return delays;
+    }
+
+    private static void assertInvalid(String spec) {
+        try {
+            EBRetryPolicyCompiler.parse(spec);
+            fail("accepted: " + spec);
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testSegments() {
+        final EBRetrySchedule schedule = EBRetryPolicyCompiler.parse("3x immediate, then exp(500ms, x2, max 3s), stop after 15m");
+        assertArrayEquals(new int[]{0, 0, 0, 500, 1000, 2000, 3000}, delays(schedule));
+        assertTrue(schedule.isRepeatLast());
+        assertEquals(15 * 60 * 1000, schedule.getMaxElapsedTimeMillis());
+    }
+
+    @Test
+    public void testBoundedSegments() {
+        final EBRetrySchedule schedule = EBRetryPolicyCompiler.parse("2x fixed(1s), 3x linear(2s, +1s, max 10s), 500, stop after 20 attempts");
+        assertArrayEquals(new int[]{1000, 1000, 2000, 3000, 4000, 500}, delays(schedule));
+        assertFalse(schedule.isRepeatLast());
+        assertEquals(20, schedule.getMaxAttempts());
+    }
+
+    @Test
+    public void testSmallExponentialGrows() {
+        // Truncating each step used to stall at 1 ms.
+        final EBRetrySchedule schedule = EBRetryPolicyCompiler.parse("exp(1ms, x1.5, max 60s)");
+        final int[] delays = delays(schedule);
+        assertTrue(delays.length > 20);
+        assertEquals(1, delays[0]);
+        assertEquals(60000, delays[delays.length - 1]);
+        for (int i = 1; i < delays.length; i++) {
+            assertTrue(delays[i] >= delays[i - 1]);
+        }
+    }
+
+    @Test
+    public void testUnboundedSequenceEndsAtCap() {
+        assertArrayEquals(new int[]{100, 200, 400, 800, 1000},
+                delays(EBRetryPolicyCompiler.parse("exp(100ms, x2, max 1s)")));
+        assertArrayEquals(new int[]{100, 350, 600, 700},
+                delays(EBRetryPolicyCompiler.parse("linear(100ms, +250ms, max 700ms)")));
+
+        // Not growing, the single delay is repeated.
+        assertArrayEquals(new int[]{100}, delays(EBRetryPolicyCompiler.parse("exp(100ms, x1, max 1s)")));
+    }
+
+    @Test
+    public void testOptions() {
+        final EBRetrySchedule schedule = EBRetryPolicyCompiler.parse("2x 1s, repeat, jitter full, seed 42");
+        assertTrue(schedule.isRepeatLast());
+        assertEquals(EBRetryJitter.FULL, schedule.getJitter());
+        assertEquals(Long.valueOf(42), schedule.getSeed());
+
+        final EBRetrySchedule proportional = EBRetryPolicyCompiler.parse("1s, jitter proportional 0.25");
+        assertEquals(EBRetryJitter.PROPORTIONAL, proportional.getJitter());
+        assertEquals(0.25, proportional.getRandomizationFactor(), 0.0);
+    }
+
+    @Test
+    public void testUnits() {
+        assertArrayEquals(new int[]{5, 5000, 120000, 3600000},
+                delays(EBRetryPolicyCompiler.parse("5ms, 5s, 2m, 1h")));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertInvalid("");
+        assertInvalid("soon");
+        assertInvalid("exp(1s, x2)");
+        assertInvalid("exp(1s, x0.5, max 10s)");
+        assertInvalid("exp(10s, x2, max 1s)");
+        assertInvalid("exp(1s, +2, max 10s)");
+        assertInvalid("linear(1s, x2, max 10s)");
+        assertInvalid("exp(1s, x2, max 10s), 1s");
+        assertInvalid("fixed(1s, 2s)");
+        assertInvalid("stop after soon");
+    }
+
+    @Test
+    public void testCompiledPolicyMatchesSchedule() {
+        final EBRetryStrategy strategy = new EBRetryStrategyPolicy(EBRetryPolicyCompiler.parse("2x 100ms, 300ms"));
+        strategy.onFail();
+        assertEquals(100, strategy.getWaitMilli());
+        strategy.onFail();
+        assertEquals(100, strategy.getWaitMilli());
+        strategy.onFail();
+        assertEquals(300, strategy.getWaitMilli());
+        assertTrue(strategy.shouldContinue());
+        strategy.onFail();
+        assertFalse(strategy.shouldContinue());
+    }
+}
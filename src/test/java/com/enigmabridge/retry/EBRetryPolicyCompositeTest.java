@@ -0,0 +1,98 @@
+package com.enigmabridge.retry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EBRetryPolicyCompositeTest {
+    private static EBRetryPolicy fixed(int millis) {
+        return new EBRetryPolicyInterval.Builder()
+                .setInitialIntervalMillis(millis)
+                .setJitter(EBRetryJitter.NONE)
+                .buildFixed();
+    }
+
+    private static int stageOf(EBRetryState state) {
+        return ((EBRetryPolicyComposite.State) state).getStage();
+    }
+
+    /**
+     * Fails once, checks the wait and the stage handling the failure.
+     */
+    private static void assertFail(EBRetryPolicy policy, EBRetryState state, long wait, int stage) {
+        policy.onFail(state);
+        assertTrue(policy.shouldContinue(state));
+        assertEquals(wait, policy.getWaitMilli(state));
+        assertEquals(stage, stageOf(state));
+    }
+
+    @Test
+    public void testAttemptBoundedStages() {
+        final EBRetryPolicy policy = new EBRetryPolicyComposite.Builder()
+                .addStageAttempts(new EBRetryPolicySimple(-1), 2)
+                .addStageAttempts(fixed(100), 2)
+                .addStage(fixed(1000))
+                .build();
+        final EBRetryState state = policy.newState();
+
+        assertTrue(policy.shouldContinue(state));
+        assertFail(policy, state, 0, 0);
+        assertFail(policy, state, 0, 0);
+        assertFail(policy, state, 100, 1);
+        assertFail(policy, state, 100, 1);
+        assertFail(policy, state, 1000, 2);
+        assertFail(policy, state, 1000, 2);
+
+        // Reset starts from the first stage again.
+        policy.reset(state);
+        assertFail(policy, state, 0, 0);
+    }
+
+    @Test
+    public void testElapsedBoundedStage() throws InterruptedException {
+        final EBRetryPolicy policy = new EBRetryPolicyComposite.Builder()
+                .addStageElapsed(fixed(10), 50)
+                .addStage(fixed(1000))
+                .build();
+        final EBRetryState state = policy.newState();
+
+        assertFail(policy, state, 10, 0);
+        assertFail(policy, state, 10, 0);
+
+        Thread.sleep(60);
+        assertFail(policy, state, 1000, 1);
+    }
+
+    @Test
+    public void testLastStagePolicyEndsExecution() {
+        final EBRetryPolicy policy = new EBRetryPolicyComposite.Builder()
+                .addStageAttempts(new EBRetryPolicySimple(-1), 1)
+                .addStage(new EBRetryPolicyInterval.Builder().setMaxAttempts(2).setJitter(EBRetryJitter.NONE).buildFixed())
+                .build();
+        final EBRetryState state = policy.newState();
+
+        assertFail(policy, state, 0, 0);
+        policy.onFail(state);
+        assertEquals(1, stageOf(state));
+        assertTrue(policy.shouldContinue(state));
+
+        // Stage policy counts its own failures from the stage start.
+        policy.onFail(state);
+        assertFalse(policy.shouldContinue(state));
+    }
+
+    @Test
+    public void testExhaustedStageIsSkipped() {
+        // Stage policy allowing no attempt passes the failure right to the next stage.
+        final EBRetryPolicy policy = new EBRetryPolicyComposite.Builder()
+                .addStageAttempts(new EBRetryPolicySimple(0), 5)
+                .addStage(fixed(200))
+                .build();
+        final EBRetryState state = policy.newState();
+
+        assertTrue(policy.shouldStart());
+        assertFail(policy, state, 200, 1);
+    }
+}
@@ -0,0 +1,97 @@
+package com.enigmabridge.retry;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EBRetryPolicyIntervalTest {
+    private static int[] delays(EBRetryPolicyInterval policy, int count) {
+        final int[] delays = new int[count];
+        for (int i = 0; i < count; i++) {
+            delays[i] = policy.getBaseDelayMillis(i + 1);
+        }
+        return delays;
+    }
+
+    private static EBRetryPolicyInterval.Builder builder() {
+        return new EBRetryPolicyInterval.Builder()
+                .setInitialIntervalMillis(100)
+                .setMaxIntervalMillis(1000)
+                .setJitter(EBRetryJitter.NONE);
+    }
+
+    @Test
+    public void testFixedIsNotCapped() {
+        final EBRetryPolicy policy = EBRetryStrategyFactory.policyFromJSON(
+                new JSONObject("{\"name\":\"fixed\",\"data\":{\"initialMillis\":300000}}"));
+
+        assertTrue(policy instanceof EBRetryPolicyFixed);
+        assertArrayEquals(new int[]{300000, 300000, 300000}, delays((EBRetryPolicyInterval) policy, 3));
+    }
+
+    @Test
+    public void testLinear() {
+        assertArrayEquals(new int[]{100, 350, 600, 850, 1000, 1000},
+                delays(builder().setIncrementMillis(250).buildLinear(), 6));
+    }
+
+    @Test
+    public void testFibonacciTable() {
+        assertArrayEquals(new int[]{100, 100, 200, 300, 500, 800, 1000, 1000},
+                delays(builder().buildFibonacci(), 8));
+
+        // Beyond the precomputed table the wait stays at the cap.
+        assertEquals(1000, builder().buildFibonacci().getBaseDelayMillis(10000));
+    }
+
+    @Test
+    public void testPolynomialCap() {
+        final EBRetryPolicyInterval policy = builder().setExponent(2).buildPolynomial();
+        assertArrayEquals(new int[]{100, 400, 900, 1000, 1000}, delays(policy, 5));
+        assertEquals(1000, policy.getBaseDelayMillis(Integer.MAX_VALUE));
+
+        // Zero exponent is a constant wait.
+        assertArrayEquals(new int[]{100, 100, 100}, delays(builder().setExponent(0).buildPolynomial(), 3));
+    }
+
+    @Test
+    public void testStopsAfterMaxAttempts() {
+        final EBRetryPolicy policy = builder().setMaxAttempts(2).buildFixed();
+        final EBRetryState state = policy.newState();
+        policy.onFail(state);
+        assertTrue(policy.shouldContinue(state));
+        policy.onFail(state);
+        assertFalse(policy.shouldContinue(state));
+    }
+
+    @Test
+    public void testJSONRoundTrip() {
+        final EBRetryPolicy[] policies = {
+                builder().setMaxAttempts(7).setSeed(5L).buildFixed(),
+                builder().setIncrementMillis(250).setMaxElapsedTimeMillis(5000).buildLinear(),
+                builder().setJitter(EBRetryJitter.FULL).buildFibonacci(),
+                builder().setExponent(1.5).setRandomizationFactor(0.25).setJitter(EBRetryJitter.PROPORTIONAL).buildPolynomial(),
+                new EBRetryStrategyBackoff.Builder().setMultiplier(3.0).setMaxAttempts(4).buildPolicy(),
+                new EBRetryPolicyComposite.Builder()
+                        .addStageAttempts(new EBRetryPolicySimple(-1), 2)
+                        .addStageElapsed(builder().buildLinear(), 60000)
+                        .addStage(builder().setInitialIntervalMillis(300000).buildFixed())
+                        .build(),
+        };
+
+        for (EBRetryPolicy policy : policies) {
+            final JSONObject json = EBRetryStrategyFactory.toJSON(policy, null);
+            final EBRetryPolicy restored = EBRetryStrategyFactory.policyFromJSON(new JSONObject(json.toString()));
+
+            assertEquals(policy.getClass(), restored.getClass());
+            assertEquals(json.toString(), EBRetryStrategyFactory.toJSON(restored, null).toString());
+            if (policy instanceof EBRetryPolicyInterval) {
+                assertArrayEquals(delays((EBRetryPolicyInterval) policy, 10), delays((EBRetryPolicyInterval) restored, 10));
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.enigmabridge.retry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EBRetryPolicyRegistryTest {
+    private static final long WAIT_MILLIS = 10000;
+    private static final String WATCHER_PREFIX = "EBRetry-policy-watcher-";
+
+    private Path dir;
+    private EBRetryPolicyRegistry registry;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ebretry-registry");
+        registry = new EBRetryPolicyRegistry();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        registry.close();
+        delete(dir.toFile());
+    }
+
+    private static void delete(File file) {
+        final File[] children = Files.isSymbolicLink(file.toPath()) ? null : file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static String config(String name, int attempts) {
+        return "{\"" + name + "\": \"" + attempts + "x immediate\"}";
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Waits until the registry loads a configuration newer than the given version.
+     */
+    private void awaitVersion(long version) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (registry.getVersion() <= version) {
+            assertTrue("Configuration was not reloaded", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Set<Thread> watcherThreads() {
+        final Set<Thread> threads = new HashSet<Thread>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(WATCHER_PREFIX)) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    @Test
+    public void testReloadOnModify() throws Exception {
+        final Path file = dir.resolve("policies.json");
+        write(file, config("a", 1));
+        registry.watch(file);
+        assertEquals(1, registry.getVersion());
+        assertNotNull(registry.get("a"));
+
+        write(file, config("b", 2));
+        awaitVersion(1);
+        assertNull(registry.get("a"));
+        assertNotNull(registry.get("b"));
+    }
+
+    @Test
+    public void testReloadOnAtomicRename() throws Exception {
+        final Path file = dir.resolve("policies.json");
+        write(file, config("a", 1));
+        registry.watch(file);
+
+        final Path tmp = dir.resolve("policies.json.tmp");
+        write(tmp, config("b", 2));
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        awaitVersion(1);
+        assertNotNull(registry.get("b"));
+    }
+
+    @Test
+    public void testReloadOnDataSymlinkSwap() throws Exception {
+        // Kubernetes ConfigMap volume layout: file -> ..data/file, ..data -> ..<timestamp>.
+        final Path first = Files.createDirectory(dir.resolve("..2026_10_15_1"));
+        write(first.resolve("policies.json"), config("a", 1));
+        Files.createSymbolicLink(dir.resolve("..data"), first.getFileName());
+        final Path file = Files.createSymbolicLink(dir.resolve("policies.json"),
+                dir.getFileSystem().getPath("..data", "policies.json"));
+        registry.watch(file);
+        assertNotNull(registry.get("a"));
+
+        final Path second = Files.createDirectory(dir.resolve("..2026_10_15_2"));
+        write(second.resolve("policies.json"), config("b", 2));
+        final Path tmpLink = Files.createSymbolicLink(dir.resolve("..data_tmp"), second.getFileName());
+        Files.move(tmpLink, dir.resolve("..data"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        awaitVersion(1);
+        assertNull(registry.get("a"));
+        assertNotNull(registry.get("b"));
+    }
+
+    @Test
+    public void testInvalidReloadKeepsPolicies() throws Exception {
+        final Path file = dir.resolve("policies.json");
+        write(file, config("a", 1));
+
+        final CountDownLatch failed = new CountDownLatch(1);
+        registry.addListener(new EBRetryPolicyRegistry.Listener() {
+            @Override
+            public void onReload(EBRetryPolicyRegistry registry) {
+            }
+
+            @Override
+            public void onReloadFailed(EBRetryPolicyRegistry registry, Exception error) {
+                failed.countDown();
+            }
+        });
+        registry.watch(file);
+        final EBRetryPolicy policy = registry.get("a");
+
+        write(file, "{\"a\": \"not a schedule\", \"b\": \"2x immediate\"}");
+        assertTrue(failed.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(1, registry.getVersion());
+        assertTrue(policy == registry.get("a"));
+        assertNull(registry.get("b"));
+
+        // Watcher keeps running after the failure.
+        write(file, config("c", 3));
+        awaitVersion(1);
+        assertNotNull(registry.get("c"));
+    }
+
+    @Test
+    public void testInvalidInitialLoad() throws Exception {
+        final Path file = dir.resolve("policies.json");
+        write(file, "{");
+        try {
+            registry.watch(file);
+            fail("invalid configuration accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        // Failed watch leaves no watcher behind, the registry can watch again.
+        write(file, config("a", 1));
+        registry.watch(file);
+        assertNotNull(registry.get("a"));
+    }
+
+    @Test
+    public void testCloseStopsWatcher() throws Exception {
+        final Path file = dir.resolve("policies.json");
+        write(file, config("a", 1));
+
+        final Set<Thread> before = watcherThreads();
+        registry.watch(file);
+        final Set<Thread> started = watcherThreads();
+        started.removeAll(before);
+        assertEquals(1, started.size());
+        final Thread watcher = started.iterator().next();
+        assertTrue(watcher.isAlive());
+
+        registry.close();
+        assertFalse(watcher.isAlive());
+
+        // No reload after close.
+        write(file, config("b", 2));
+        Thread.sleep(3 * EBRetryPolicyRegistry.SETTLE_MILLIS);
+        assertEquals(1, registry.getVersion());
+        assertNull(registry.get("b"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.enigmabridge.retry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule and cancel of a backoff wait on the timing wheel against the
+ * {@link java.util.concurrent.ScheduledThreadPoolExecutor} delay queue, with a backlog of pending waits.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EBRetrySchedulerBenchmark {
+    private static final long WAIT_MILLI = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Runnable NOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @Param({"wheel", "executor"})
+    public String scheduler;
+
+    @Param({"0", "100000"})
+    public int backlog;
+
+    private EBRetryScheduler instance;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        instance = "wheel".equals(scheduler) ? new EBRetrySchedulerWheel() : new EBRetrySchedulerExecutor();
+        for (int i = 0; i < backlog; i++) {
+            instance.schedule(NOP, WAIT_MILLI + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (instance instanceof EBRetrySchedulerWheel) {
+            ((EBRetrySchedulerWheel) instance).shutdown();
+        } else {
+            ((EBRetrySchedulerExecutor) instance).shutdown();
+        }
+    }
+
+    @Benchmark
+    public boolean scheduleCancel() {
+        return instance.schedule(NOP, WAIT_MILLI).cancel();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean scheduleCancelContended() {
+        return instance.schedule(NOP, WAIT_MILLI).cancel();
+    }
+}
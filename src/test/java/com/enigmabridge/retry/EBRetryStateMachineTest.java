@@ -0,0 +1,287 @@
+package com.enigmabridge.retry;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Lifecycle state machine of {@link EBRetry}, including stress tests racing two actors
+ * on a barrier and checking the allowed outcomes, in the style of jcstress.
+ */
+public class EBRetryStateMachineTest {
+    private static final int ITERATIONS = 2000;
+
+    /**
+     * Job keeping the callback of the last attempt, completed by the test.
+     */
+    private static class ManualJob extends EBRetryJobSimple<Integer, Object> {
+        final AtomicReference<EBCallback<Integer, Object>> callback = new AtomicReference<EBCallback<Integer, Object>>();
+        final AtomicInteger attempts = new AtomicInteger();
+
+        @Override
+        public void runAsync(EBCallback<Integer, Object> callback) {
+            attempts.incrementAndGet();
+            this.callback.set(callback);
+        }
+    }
+
+    /**
+     * Listener counting terminal notifications.
+     */
+    private static class CountingListener implements EBRetryListener<Integer, Object> {
+        final AtomicInteger successes = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onSuccess(Integer result, EBRetry<Integer, Object> retry) {
+            successes.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void onFail(EBRetryJobError<Object> error, EBRetry<Integer, Object> retry) {
+            failures.incrementAndGet();
+            done.countDown();
+        }
+
+        int total() {
+            return successes.get() + failures.get();
+        }
+    }
+
+    private static EBRetry<Integer, Object> newRetry(EBRetryStrategy strategy, CountingListener listener) {
+        final EBRetry<Integer, Object> retry = new EBRetry<Integer, Object>(strategy);
+        retry.setExecutionMode(EBRetryExecutionMode.DIRECT);
+        retry.addListener(listener);
+        return retry;
+    }
+
+    private static EBRetryStrategy longWait() {
+        return new EBRetryStrategyPolicy(EBRetryPolicyCompiler.parse("3x fixed(1h)"));
+    }
+
+    private static void awaitAttempts(ManualJob job, int attempts) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (job.attempts.get() < attempts && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(attempts, job.attempts.get());
+    }
+
+    private static void race(final Runnable a, final Runnable b) throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    barrier.await();
+                    b.run();
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+
+        other.start();
+        barrier.await();
+        a.run();
+        other.join();
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+    }
+
+    @Test
+    public void testSuccessRacingCancel() throws Exception {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final CountingListener listener = new CountingListener();
+            final EBRetry<Integer, Object> retry = newRetry(new EBRetryStrategySimple(3), listener);
+            final ManualJob job = new ManualJob();
+            final EBFuture<Integer, Object> future = retry.runAsync(job);
+
+            race(new Runnable() {
+                @Override
+                public void run() {
+                    job.callback.get().onSuccess(1);
+                }
+            }, new Runnable() {
+                @Override
+                public void run() {
+                    retry.cancel();
+                }
+            });
+
+            assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+            assertEquals("exactly one terminal notification", 1, listener.total());
+            assertTrue(future.isDone());
+            assertEquals(listener.successes.get() == 1, retry.isSucceeded());
+            assertEquals(listener.failures.get() == 1, retry.isCancelled());
+            assertEquals(retry.isCancelled(), future.isCancelled());
+        }
+    }
+
+    @Test
+    public void testRunNowRacingCancel() throws Exception {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final CountingListener listener = new CountingListener();
+            final EBRetry<Integer, Object> retry = newRetry(longWait(), listener);
+            final ManualJob job = new ManualJob();
+            final EBFuture<Integer, Object> future = retry.runAsync(job);
+
+            job.callback.get().onFail(new EBRetryJobError<Object>(new Exception("first")), false);
+            assertTrue(retry.getWaitingUntilMilli() > 0);
+
+            race(new Runnable() {
+                @Override
+                public void run() {
+                    future.runNow();
+                }
+            }, new Runnable() {
+                @Override
+                public void run() {
+                    future.cancel(false);
+                }
+            });
+
+            // Attempt after the skipped wait starts asynchronously, unless the cancel won.
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!retry.isDone() && job.attempts.get() < 2 && System.nanoTime() < deadline) {
+                Thread.yield();
+            }
+            if (job.attempts.get() == 2) {
+                job.callback.get().onSuccess(2);
+            }
+
+            assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+            assertEquals("exactly one terminal notification", 1, listener.total());
+            assertTrue(job.attempts.get() <= 2);
+            assertTrue(retry.isSucceeded() ^ retry.isCancelled());
+            assertEquals(0, retry.getWaitingUntilMilli());
+        }
+    }
+
+    @Test
+    public void testConcurrentCancel() throws Exception {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final CountingListener listener = new CountingListener();
+            final EBRetry<Integer, Object> retry = newRetry(longWait(), listener);
+            final EBFuture<Integer, Object> future = retry.runAsync(new ManualJob());
+            final AtomicInteger cancelled = new AtomicInteger();
+
+            final Runnable cancel = new Runnable() {
+                @Override
+                public void run() {
+                    if (future.cancel(false)) {
+                        cancelled.incrementAndGet();
+                    }
+                }
+            };
+            race(cancel, cancel);
+
+            assertEquals("exactly one cancel call succeeds", 1, cancelled.get());
+            assertEquals(1, listener.failures.get());
+            assertTrue(retry.isCancelled());
+        }
+    }
+
+    @Test
+    public void testCancelReturnValue() throws Exception {
+        final CountingListener listener = new CountingListener();
+        final EBRetry<Integer, Object> retry = newRetry(longWait(), listener);
+        final ManualJob job = new ManualJob();
+        final EBFuture<Integer, Object> future = retry.runAsync(job);
+        job.callback.get().onFail(new EBRetryJobError<Object>(new Exception("first")), false);
+
+        assertTrue(future.cancel(false));
+        assertFalse(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertEquals(0, retry.getWaitingUntilMilli());
+
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("cancelled future returned a result");
+        } catch (CancellationException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testStaleFutureDoesNotAffectNextRun() throws Exception {
+        final CountingListener listener = new CountingListener();
+        final EBRetry<Integer, Object> retry = newRetry(longWait(), listener);
+        final ManualJob job = new ManualJob();
+
+        final EBFuture<Integer, Object> first = retry.runAsync(job);
+        job.callback.get().onSuccess(1);
+        assertEquals(Integer.valueOf(1), first.get(1, TimeUnit.SECONDS));
+
+        final EBFuture<Integer, Object> second = retry.runAsync(job);
+        job.callback.get().onFail(new EBRetryJobError<Object>(new Exception("first")), false);
+        assertTrue(retry.getWaitingUntilMilli() > 0);
+
+        // Stale future neither cancels nor wakes up the next run.
+        assertFalse(first.cancel(false));
+        first.runNow();
+        assertTrue(second.isRunning());
+        assertEquals(2, job.attempts.get());
+
+        // Skipped wait is rescheduled on the scheduler, the attempt starts asynchronously.
+        second.runNow();
+        awaitAttempts(job, 3);
+        job.callback.get().onSuccess(3);
+        assertEquals(Integer.valueOf(3), second.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testResetClearsPendingWait() throws Exception {
+        final CountingListener listener = new CountingListener();
+        final EBRetry<Integer, Object> retry = newRetry(longWait(), listener);
+        final ManualJob job = new ManualJob();
+        final EBFuture<Integer, Object> future = retry.runAsync(job);
+        job.callback.get().onFail(new EBRetryJobError<Object>(new Exception("first")), false);
+
+        retry.cancel();
+        retry.reset();
+        assertEquals(0, retry.getWaitingUntilMilli());
+        assertFalse(retry.isRunning());
+
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("cancelled future returned a result");
+        } catch (CancellationException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testAbortFailsWithoutRetry() throws Exception {
+        final CountingListener listener = new CountingListener();
+        final EBRetry<Integer, Object> retry = newRetry(longWait(), listener);
+        final ManualJob job = new ManualJob();
+        final EBFuture<Integer, Object> future = retry.runAsync(job);
+        job.callback.get().onFail(new EBRetryJobError<Object>(new Exception("fatal")), true);
+
+        assertEquals(1, job.attempts.get());
+        assertTrue(retry.isAborted());
+        assertEquals(1, listener.failures.get());
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("aborted future returned a result");
+        } catch (ExecutionException e) {
+            // Expected.
+        }
+    }
+}